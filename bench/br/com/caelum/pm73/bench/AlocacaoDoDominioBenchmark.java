@@ -0,0 +1,35 @@
+package br.com.caelum.pm73.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.CacheMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.caelum.pm73.dao.PlanoDeBusca;
+import br.com.caelum.pm73.dominio.Leilao;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dpm73.url=jdbc:hsqldb:mem:benchmark"})
+public class AlocacaoDoDominioBenchmark {
+
+	@Benchmark
+	public Leilao constroiComCemLances(LeilaoComCemLances base) {
+		return LeilaoComCemLances.constroi(base.dono, base.comprador);
+	}
+
+	@Benchmark
+	public Leilao carregaComCemLances(LeilaoComCemLances base, SessaoDeBenchmark s) {
+		s.session.clear();
+		s.session.setCacheMode(CacheMode.IGNORE);
+		return s.leilaoDao.comPlano(PlanoDeBusca.COM_LANCES).porId(base.idDoLeilao);
+	}
+}
@@ -0,0 +1,63 @@
+package br.com.caelum.pm73.bench;
+
+import org.hibernate.Session;
+import org.hibernate.tool.hbm2ddl.SchemaExport;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import br.com.caelum.pm73.builder.GeradorDeDados;
+import br.com.caelum.pm73.dao.CargaEmMassa;
+import br.com.caelum.pm73.dao.CriadorDeSessao;
+import br.com.caelum.pm73.dao.ResumoDaCarga;
+
+@State(Scope.Benchmark)
+public class BaseDeLeiloes {
+
+	@Param({"1000", "10000"})
+	public int leiloes;
+
+	@Param({"10"})
+	public int lancesPorLeilao;
+
+	@Param({"200"})
+	public int usuarios;
+
+	int[] idsDeLeiloes;
+	int[] idsDeUsuarios;
+	String[][] nomesEEmails;
+
+	@Setup
+	public void popula() {
+		CriadorDeSessao criador = new CriadorDeSessao();
+		new SchemaExport(criador.getConfig()).create(false, true);
+
+		GeradorDeDados gerador = new GeradorDeDados(42)
+				.comUsuarios(usuarios)
+				.comLeiloes(leiloes)
+				.comMediaDeLances(lancesPorLeilao);
+
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			ResumoDaCarga resumo = new CargaEmMassa(session).carrega(gerador);
+			session.getTransaction().commit();
+			System.out.println(resumo);
+		} finally {
+			session.close();
+		}
+
+		// o gerador numera usuarios e leiloes a partir de 1, na ordem em que os cria
+		idsDeUsuarios = new int[usuarios];
+		nomesEEmails = new String[usuarios][];
+		for(int i = 0; i < usuarios; i++) {
+			idsDeUsuarios[i] = i + 1;
+			nomesEEmails[i] = new String[] { "Usuario " + i, "usuario" + i + "@email.com" };
+		}
+		idsDeLeiloes = new int[leiloes];
+		for(int i = 0; i < leiloes; i++) {
+			idsDeLeiloes[i] = i + 1;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package br.com.caelum.pm73.bench;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.engine.query.HQLQueryPlan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.caelum.pm73.builder.GeradorDeDados;
+import br.com.caelum.pm73.dao.CargaEmMassa;
+import br.com.caelum.pm73.dao.CriadorDeSessao;
+import br.com.caelum.pm73.dao.LeilaoDao;
+import br.com.caelum.pm73.dao.PoolDeConexoes;
+import br.com.caelum.pm73.dominio.Leilao;
+
+// custo por chamada de interpretar o HQL e de preparar o comando JDBC, com e sem os caches de cada um
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dpm73.url=jdbc:hsqldb:mem:benchmark"})
+@State(Scope.Thread)
+public class ConsultaNomeadaBenchmark {
+
+	static final String CONSULTA = "LeilaoDao.disputadosEntre.RESUMO";
+
+	@Param({"0", "64"})
+	public String comandosPorConexao;
+
+	private CriadorDeSessao criador;
+	private SessionFactoryImplementor fabrica;
+	private String hql;
+	private Session session;
+	private LeilaoDao leilaoDao;
+
+	@Setup(Level.Trial)
+	public void popula() {
+		// o pool le a propriedade quando a fabrica e construida, entao tem que vir antes da primeira sessao
+		criador = new CriadorDeSessao();
+		criador.getConfig().setProperty(PoolDeConexoes.COMANDOS, comandosPorConexao);
+
+		Session carga = criador.getSession();
+		try {
+			carga.beginTransaction();
+			new CargaEmMassa(carga).carrega(new GeradorDeDados(42).comUsuarios(200).comLeiloes(1000));
+			carga.getTransaction().commit();
+			fabrica = (SessionFactoryImplementor) carga.getSessionFactory();
+		} finally {
+			carga.close();
+		}
+		hql = fabrica.getNamedQuery(CONSULTA).getQueryString();
+	}
+
+	@Setup(Level.Iteration)
+	public void abre() {
+		session = criador.getSession();
+		leilaoDao = new LeilaoDao(session);
+	}
+
+	@TearDown(Level.Iteration)
+	public void fecha() {
+		session.close();
+		System.out.println(criador.getEstatisticasDoPool());
+	}
+
+	@Benchmark
+	public HQLQueryPlan interpretaSemCacheDePlanos() {
+		// o que cada createQuery pagaria se o plano nao ficasse guardado
+		return new HQLQueryPlan(hql, false, Collections.emptyMap(), fabrica);
+	}
+
+	@Benchmark
+	@SuppressWarnings("unchecked")
+	public List<Leilao> consultaEmLinha() {
+		session.clear();
+		return session.createQuery(hql)
+				.setParameter("inicio", 100.0)
+				.setParameter("fim", 110.0)
+				.list();
+	}
+
+	@Benchmark
+	public List<Leilao> consultaNomeada() {
+		session.clear();
+		return leilaoDao.disputadosEntre(100.0, 110.0);
+	}
+}
@@ -0,0 +1,30 @@
+package br.com.caelum.pm73.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class ExecutaBenchmarks {
+
+	public static void main(String[] args) throws RunnerException {
+		String filtro = args.length > 0 ? args[0] : "br.com.caelum.pm73.bench.*";
+		int maximoDeThreads = Runtime.getRuntime().availableProcessors();
+
+		for(int threads : new int[] { 1, maximoDeThreads }) {
+			Options opcoes = new OptionsBuilder()
+					.include(filtro)
+					.threads(threads)
+					.addProfiler(GCProfiler.class)
+					.jvmArgsAppend("-Dpm73.pool.maximo=" + (threads + 1))
+					.resultFormat(ResultFormatType.JSON)
+					.result("benchmark-" + threads + "-threads.json")
+					.build();
+
+			new Runner(opcoes).run();
+		}
+	}
+
+}
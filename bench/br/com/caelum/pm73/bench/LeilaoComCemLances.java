@@ -0,0 +1,58 @@
+package br.com.caelum.pm73.bench;
+
+import java.time.Instant;
+
+import org.hibernate.Session;
+import org.hibernate.tool.hbm2ddl.SchemaExport;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import br.com.caelum.pm73.builder.LeilaoBuilder;
+import br.com.caelum.pm73.dao.CriadorDeSessao;
+import br.com.caelum.pm73.dao.LeilaoDao;
+import br.com.caelum.pm73.dao.UsuarioDao;
+import br.com.caelum.pm73.dominio.Lance;
+import br.com.caelum.pm73.dominio.Leilao;
+import br.com.caelum.pm73.dominio.Usuario;
+
+@State(Scope.Benchmark)
+public class LeilaoComCemLances {
+
+	static final int LANCES = 100;
+
+	int idDoLeilao;
+	Usuario dono;
+	Usuario comprador;
+
+	@Setup
+	public void popula() {
+		CriadorDeSessao criador = new CriadorDeSessao();
+		new SchemaExport(criador.getConfig()).create(false, true);
+
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			dono = new Usuario("Dono", "dono@email.com");
+			comprador = new Usuario("Comprador", "comprador@email.com");
+			new UsuarioDao(session).salvar(dono);
+			new UsuarioDao(session).salvar(comprador);
+
+			Leilao leilao = constroi(dono, comprador);
+			new LeilaoDao(session).salvar(leilao);
+			idDoLeilao = leilao.getId();
+
+			session.getTransaction().commit();
+		} finally {
+			session.close();
+		}
+	}
+
+	static Leilao constroi(Usuario dono, Usuario comprador) {
+		LeilaoBuilder builder = new LeilaoBuilder().comDono(dono);
+		for(int i = 0; i < LANCES; i++) {
+			builder.comLance(new Lance(Instant.now(), comprador, 100 + i));
+		}
+		return builder.constroi();
+	}
+}
@@ -0,0 +1,147 @@
+package br.com.caelum.pm73.bench;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.caelum.pm73.builder.LeilaoBuilder;
+import br.com.caelum.pm73.dao.Pagina;
+import br.com.caelum.pm73.dominio.Leilao;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dpm73.url=jdbc:hsqldb:mem:benchmark"})
+public class LeilaoDaoBenchmark {
+
+	@Benchmark
+	public Leilao porId(BaseDeLeiloes base, SessaoDeBenchmark s) {
+		s.session.clear();
+		return s.leilaoDao.porId(s.leilaoQualquer(base));
+	}
+
+	@Benchmark
+	public List<Leilao> novos(SessaoDeBenchmark s) {
+		s.session.clear();
+		return s.leilaoDao.novos();
+	}
+
+	@Benchmark
+	public Pagina<Leilao> paginaDeNovos(SessaoDeBenchmark s) {
+		s.session.clear();
+		return s.leilaoDao.novos(null, 50);
+	}
+
+	@Benchmark
+	public long fluxoDeNovos(SessaoDeBenchmark s) {
+		s.session.clear();
+		try(Stream<Leilao> leiloes = s.leilaoDao.fluxoDeNovos()) {
+			return leiloes.count();
+		}
+	}
+
+	@Benchmark
+	public List<Leilao> antigos(SessaoDeBenchmark s) {
+		s.session.clear();
+		return s.leilaoDao.antigos();
+	}
+
+	@Benchmark
+	public List<Leilao> porPeriodo(SessaoDeBenchmark s) {
+		s.session.clear();
+		Calendar inicio = Calendar.getInstance();
+		inicio.add(Calendar.DAY_OF_MONTH, -10);
+		return s.leilaoDao.porPeriodo(inicio, Calendar.getInstance());
+	}
+
+	@Benchmark
+	public List<Leilao> disputadosEntre(SessaoDeBenchmark s) {
+		s.session.clear();
+		return s.leilaoDao.disputadosEntre(1000.0, 3000.0);
+	}
+
+	@Benchmark
+	public List<Leilao> maisDisputados(SessaoDeBenchmark s) {
+		s.session.clear();
+		return s.leilaoDao.maisDisputados(10);
+	}
+
+	@Benchmark
+	public List<Leilao> comMaioresLances(SessaoDeBenchmark s) {
+		s.session.clear();
+		return s.leilaoDao.comMaioresLances(10);
+	}
+
+	@Benchmark
+	public List<Leilao> comLancesDesde(SessaoDeBenchmark s) {
+		s.session.clear();
+		Calendar ontem = Calendar.getInstance();
+		ontem.add(Calendar.DAY_OF_MONTH, -1);
+		return s.leilaoDao.comLancesDesde(ontem);
+	}
+
+	@Benchmark
+	public Long total(SessaoDeBenchmark s) {
+		s.session.clear();
+		return s.leilaoDao.total();
+	}
+
+	@Benchmark
+	public List<Leilao> listaLeiloesDoUsuario(BaseDeLeiloes base, SessaoDeBenchmark s) {
+		s.session.clear();
+		return s.leilaoDao.listaLeiloesDoUsuario(s.usuarioQualquer(base));
+	}
+
+	@Benchmark
+	public double getValorInicialMedioDoUsuario(BaseDeLeiloes base, SessaoDeBenchmark s) {
+		s.session.clear();
+		return s.leilaoDao.getValorInicialMedioDoUsuario(s.usuarioQualquer(base));
+	}
+
+	@Benchmark
+	public void salvar(BaseDeLeiloes base, SessaoDeBenchmark s) {
+		s.session.clear();
+		s.session.beginTransaction();
+		s.leilaoDao.salvar(new LeilaoBuilder().comDono(s.usuarioQualquer(base)).constroi());
+		s.session.flush();
+		s.session.getTransaction().rollback();
+	}
+
+	@Benchmark
+	public void atualiza(BaseDeLeiloes base, SessaoDeBenchmark s) {
+		s.session.clear();
+		s.session.beginTransaction();
+		Leilao leilao = s.leilaoDao.porId(s.leilaoQualquer(base));
+		leilao.setNome(leilao.getNome() + "*");
+		s.leilaoDao.atualiza(leilao);
+		s.session.flush();
+		s.session.getTransaction().rollback();
+	}
+
+	@Benchmark
+	public void deleta(BaseDeLeiloes base, SessaoDeBenchmark s) {
+		s.session.clear();
+		s.session.beginTransaction();
+		s.leilaoDao.deleta(s.leilaoDao.porId(s.leilaoQualquer(base)));
+		s.session.flush();
+		s.session.getTransaction().rollback();
+	}
+
+	@Benchmark
+	public void deletaEncerrados(SessaoDeBenchmark s) {
+		s.session.clear();
+		s.session.beginTransaction();
+		s.leilaoDao.deletaEncerrados();
+		s.session.getTransaction().rollback();
+	}
+}
@@ -0,0 +1,49 @@
+package br.com.caelum.pm73.bench;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.caelum.pm73.dao.AtualizadorDeLeiloes;
+import br.com.caelum.pm73.dao.CriadorDeSessao;
+import br.com.caelum.pm73.dominio.Lance;
+import br.com.caelum.pm73.dominio.Usuario;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dpm73.url=jdbc:hsqldb:mem:benchmark"})
+public class LeilaoDisputadoBenchmark {
+
+	AtualizadorDeLeiloes atualizador;
+
+	@Setup
+	public void prepara() {
+		atualizador = new AtualizadorDeLeiloes(new CriadorDeSessao(), 1000, 1, 50);
+	}
+
+	@TearDown
+	public void relata(BaseDeLeiloes base) {
+		System.out.println(atualizador.getContencao(base.idsDeLeiloes[0]));
+	}
+
+	@Benchmark
+	public Lance lanceNoMesmoLeilao(BaseDeLeiloes base, SessaoDeBenchmark s) {
+		Usuario comprador = s.usuarioQualquer(base);
+		return atualizador.atualiza(base.idsDeLeiloes[0], leilao ->
+				leilao.adicionaLance(new Lance(Instant.now(), comprador, leilao.getMaiorLance() + 1)));
+	}
+}
@@ -0,0 +1,45 @@
+package br.com.caelum.pm73.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.caelum.pm73.dominio.Leilao;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dpm73.url=jdbc:hsqldb:mem:benchmark"})
+@OperationsPerInvocation(ModoDeLeituraBenchmark.LEILOES)
+public class ModoDeLeituraBenchmark {
+
+	static final int LEILOES = 100;
+
+	@Benchmark
+	public List<Leilao> gerenciados(SessaoDeBenchmark s) {
+		s.session.clear();
+		List<Leilao> leiloes = s.leilaoDao.maisDisputados(LEILOES);
+		s.session.flush();
+		return leiloes;
+	}
+
+	@Benchmark
+	public List<Leilao> somenteLeitura(SessaoDeBenchmark s) {
+		s.sessionSomenteLeitura.clear();
+		return s.leilaoDaoSomenteLeitura.maisDisputados(LEILOES);
+	}
+
+	@Benchmark
+	public List<Leilao> semEstado(SessaoDeBenchmark s) {
+		return s.leilaoDaoSemEstado.maisDisputados(LEILOES);
+	}
+}
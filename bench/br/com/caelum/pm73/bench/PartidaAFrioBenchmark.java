@@ -0,0 +1,70 @@
+package br.com.caelum.pm73.bench;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.caelum.pm73.dao.CriadorDeSessao;
+import br.com.caelum.pm73.dao.LeilaoDao;
+import br.com.caelum.pm73.dao.TemposDeInicializacao;
+
+// cada fork e uma JVM nova: a unica medida e da partida ate a primeira consulta do LeilaoDao
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 10, jvmArgsAppend = {"-Dpm73.url=jdbc:hsqldb:mem:benchmark"})
+@State(Scope.Benchmark)
+public class PartidaAFrioBenchmark {
+
+	@Param({"true", "false"})
+	public String verificaConsultas;
+
+	private CompletableFuture<TemposDeInicializacao> tempos;
+
+	@Setup
+	public void configura() {
+		System.setProperty(CriadorDeSessao.VERIFICA_CONSULTAS, verificaConsultas);
+	}
+
+	@Benchmark
+	public Long comInicia() {
+		CriadorDeSessao criador = new CriadorDeSessao();
+		tempos = criador.inicia();
+		return primeiraConsulta(criador);
+	}
+
+	@Benchmark
+	public Long semInicia() {
+		return primeiraConsulta(new CriadorDeSessao());
+	}
+
+	@TearDown
+	public void relata() {
+		if(tempos != null) {
+			System.out.println(tempos.join());
+		}
+	}
+
+	private Long primeiraConsulta(CriadorDeSessao criador) {
+		Session session = criador.getSession();
+		try {
+			return new LeilaoDao(session).total();
+		} finally {
+			session.close();
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package br.com.caelum.pm73.bench;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import br.com.caelum.pm73.dao.CriadorDeSessao;
+import br.com.caelum.pm73.dao.LeilaoDao;
+import br.com.caelum.pm73.dao.LeilaoDaoSemEstado;
+import br.com.caelum.pm73.dao.UsuarioDao;
+import br.com.caelum.pm73.dominio.Usuario;
+
+@State(Scope.Thread)
+public class SessaoDeBenchmark {
+
+	Session session;
+	LeilaoDao leilaoDao;
+	UsuarioDao usuarioDao;
+	Session sessionSomenteLeitura;
+	LeilaoDao leilaoDaoSomenteLeitura;
+	StatelessSession sessionSemEstado;
+	LeilaoDaoSemEstado leilaoDaoSemEstado;
+
+	@Setup(Level.Iteration)
+	public void abre() {
+		CriadorDeSessao criador = new CriadorDeSessao();
+		session = criador.getSession();
+		leilaoDao = new LeilaoDao(session);
+		usuarioDao = new UsuarioDao(session);
+		sessionSomenteLeitura = criador.getSessionSomenteLeitura();
+		leilaoDaoSomenteLeitura = new LeilaoDao(sessionSomenteLeitura);
+		sessionSemEstado = criador.getStatelessSession();
+		leilaoDaoSemEstado = new LeilaoDaoSemEstado(sessionSemEstado);
+	}
+
+	@TearDown(Level.Iteration)
+	public void fecha() {
+		if(session.getTransaction().isActive()) {
+			session.getTransaction().rollback();
+		}
+		session.close();
+		sessionSomenteLeitura.close();
+		sessionSemEstado.close();
+	}
+
+	int leilaoQualquer(BaseDeLeiloes base) {
+		return base.idsDeLeiloes[ThreadLocalRandom.current().nextInt(base.idsDeLeiloes.length)];
+	}
+
+	int idDeUsuarioQualquer(BaseDeLeiloes base) {
+		return base.idsDeUsuarios[ThreadLocalRandom.current().nextInt(base.idsDeUsuarios.length)];
+	}
+
+	Usuario usuarioQualquer(BaseDeLeiloes base) {
+		return (Usuario) session.get(Usuario.class, idDeUsuarioQualquer(base));
+	}
+
+	String[] nomeEEmailQualquer(BaseDeLeiloes base) {
+		return base.nomesEEmails[ThreadLocalRandom.current().nextInt(base.nomesEEmails.length)];
+	}
+}
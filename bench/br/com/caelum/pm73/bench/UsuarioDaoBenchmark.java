@@ -0,0 +1,65 @@
+package br.com.caelum.pm73.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.caelum.pm73.dominio.Usuario;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dpm73.url=jdbc:hsqldb:mem:benchmark"})
+public class UsuarioDaoBenchmark {
+
+	@Benchmark
+	public String porId(BaseDeLeiloes base, SessaoDeBenchmark s) {
+		s.session.clear();
+		return s.usuarioDao.porId(s.idDeUsuarioQualquer(base)).getNome();
+	}
+
+	@Benchmark
+	public Usuario porNomeEEmail(BaseDeLeiloes base, SessaoDeBenchmark s) {
+		s.session.clear();
+		String[] nomeEEmail = s.nomeEEmailQualquer(base);
+		return s.usuarioDao.porNomeEEmail(nomeEEmail[0], nomeEEmail[1]);
+	}
+
+	@Benchmark
+	public void salvar(SessaoDeBenchmark s) {
+		s.session.clear();
+		s.session.beginTransaction();
+		s.usuarioDao.salvar(new Usuario("Novo", "novo@email.com"));
+		s.session.flush();
+		s.session.getTransaction().rollback();
+	}
+
+	@Benchmark
+	public void atualizar(BaseDeLeiloes base, SessaoDeBenchmark s) {
+		s.session.clear();
+		s.session.beginTransaction();
+		Usuario usuario = s.usuarioQualquer(base);
+		usuario.setNome(usuario.getNome() + "*");
+		s.usuarioDao.atualizar(usuario);
+		s.session.flush();
+		s.session.getTransaction().rollback();
+	}
+
+	@Benchmark
+	public void deletar(SessaoDeBenchmark s) {
+		s.session.clear();
+		s.session.beginTransaction();
+		Usuario usuario = new Usuario("Temporario", "temporario@email.com");
+		s.usuarioDao.salvar(usuario);
+		s.usuarioDao.deletar(usuario);
+		s.session.flush();
+		s.session.getTransaction().rollback();
+	}
+}
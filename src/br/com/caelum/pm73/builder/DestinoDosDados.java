@@ -0,0 +1,13 @@
+package br.com.caelum.pm73.builder;
+
+import br.com.caelum.pm73.dominio.Leilao;
+import br.com.caelum.pm73.dominio.Usuario;
+
+public interface DestinoDosDados {
+
+	void usuario(int id, Usuario usuario);
+
+	// idsDosCompradores[i] e o id do usuario do i-esimo lance de leilao.getLances()
+	void leilao(int id, Leilao leilao, int idDoDono, int[] idsDosCompradores);
+
+}
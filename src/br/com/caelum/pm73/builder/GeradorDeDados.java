@@ -0,0 +1,149 @@
+package br.com.caelum.pm73.builder;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.SplittableRandom;
+
+import br.com.caelum.pm73.dominio.Lance;
+import br.com.caelum.pm73.dominio.Usuario;
+
+public class GeradorDeDados {
+
+	private static final long DIA = 24L * 60 * 60 * 1000;
+	private static final double CAUDA_DOS_LANCES = 1.5;
+	private static final int FATOR_DOS_QUENTES = 50;
+
+	private final long semente;
+	private int usuarios = 1000;
+	private int leiloes = 10000;
+	private double mediaDeLances = 10;
+	private int maximoDeLances = 5000;
+	private double fracaoDeQuentes = 0.01;
+	private int diasDeHistorico = 365;
+	private int diasDeDuracao = 7;
+	private double fracaoDeUsados = 0.3;
+	private Instant referencia = Instant.now().truncatedTo(ChronoUnit.DAYS);
+
+	public GeradorDeDados(long semente) {
+		this.semente = semente;
+	}
+
+	public GeradorDeDados comUsuarios(int usuarios) {
+		this.usuarios = usuarios;
+		return this;
+	}
+
+	public GeradorDeDados comLeiloes(int leiloes) {
+		this.leiloes = leiloes;
+		return this;
+	}
+
+	public GeradorDeDados comMediaDeLances(double mediaDeLances) {
+		this.mediaDeLances = mediaDeLances;
+		return this;
+	}
+
+	public GeradorDeDados comMaximoDeLances(int maximoDeLances) {
+		this.maximoDeLances = maximoDeLances;
+		return this;
+	}
+
+	public GeradorDeDados comFracaoDeQuentes(double fracaoDeQuentes) {
+		this.fracaoDeQuentes = fracaoDeQuentes;
+		return this;
+	}
+
+	public GeradorDeDados comDiasDeHistorico(int diasDeHistorico) {
+		this.diasDeHistorico = diasDeHistorico;
+		return this;
+	}
+
+	public GeradorDeDados comFracaoDeUsados(double fracaoDeUsados) {
+		this.fracaoDeUsados = fracaoDeUsados;
+		return this;
+	}
+
+	public GeradorDeDados comReferencia(Instant referencia) {
+		this.referencia = referencia;
+		return this;
+	}
+
+	public int getUsuarios() {
+		return usuarios;
+	}
+
+	public int getLeiloes() {
+		return leiloes;
+	}
+
+	public void gera(DestinoDosDados destino) {
+		if(usuarios < 3) {
+			throw new IllegalStateException("Sao necessarios ao menos 3 usuarios para gerar lances");
+		}
+		SplittableRandom aleatorio = new SplittableRandom(semente);
+		long agora = referencia.toEpochMilli();
+
+		Usuario[] todos = new Usuario[usuarios];
+		for(int i = 0; i < usuarios; i++) {
+			todos[i] = new Usuario("Usuario " + i, "usuario" + i + "@email.com");
+			destino.usuario(i + 1, todos[i]);
+		}
+
+		for(int i = 0; i < leiloes; i++) {
+			int dono = aleatorio.nextInt(usuarios);
+			long abertura = agora - (long) (aleatorio.nextDouble() * diasDeHistorico * DIA);
+			double valor = 10 + aleatorio.nextInt(5000);
+			// proporcional ao valor inicial; sobre o valor corrente cresceria em juros compostos nos quentes
+			int incrementoMaximo = 1 + (int) (valor * 0.05);
+
+			LeilaoBuilder builder = new LeilaoBuilder()
+					.comNome("Leilao " + i)
+					.comDono(todos[dono])
+					.comValor(valor)
+					.abertoEm(Instant.ofEpochMilli(abertura));
+			if(aleatorio.nextDouble() < fracaoDeUsados) builder.usado();
+
+			int quantidade = quantidadeDeLances(aleatorio);
+			int[] compradores = new int[quantidade];
+			long fim = Math.min(agora, abertura + diasDeDuracao * DIA);
+			long passo = Math.max(1, (fim - abertura) / (quantidade + 1));
+			long data = abertura;
+			int anterior = -1;
+			for(int j = 0; j < quantidade; j++) {
+				int comprador = comprador(aleatorio, dono, anterior);
+				valor += 1 + aleatorio.nextInt(incrementoMaximo);
+				data += 1 + aleatorio.nextLong(passo);
+				builder.comLance(new Lance(Instant.ofEpochMilli(data), todos[comprador], valor));
+				compradores[j] = comprador + 1;
+				anterior = comprador;
+			}
+
+			// leiloes com mais de um mes quase sempre ja foram encerrados; os recentes quase nunca
+			boolean antigo = abertura < agora - 30 * DIA;
+			if(aleatorio.nextDouble() < (antigo ? 0.9 : 0.05)) builder.encerrado();
+
+			destino.leilao(i + 1, builder.constroi(), dono + 1, compradores);
+		}
+	}
+
+	private int quantidadeDeLances(SplittableRandom aleatorio) {
+		// pareto: a maioria dos leiloes tem poucos lances e alguns poucos tem muitos; os quentes
+		// multiplicam por 50 e a media geral continua perto de mediaDeLances
+		double media = mediaDeLances / (1 + fracaoDeQuentes * (FATOR_DOS_QUENTES - 1));
+		double minimo = media * (CAUDA_DOS_LANCES - 1) / CAUDA_DOS_LANCES;
+		double quantidade = minimo / Math.pow(1 - aleatorio.nextDouble(), 1 / CAUDA_DOS_LANCES);
+		if(aleatorio.nextDouble() < fracaoDeQuentes) {
+			quantidade *= FATOR_DOS_QUENTES;
+		}
+		return (int) Math.min(maximoDeLances, quantidade);
+	}
+
+	private int comprador(SplittableRandom aleatorio, int dono, int anterior) {
+		// os primeiros usuarios concentram a maior parte dos lances
+		int comprador = (int) (usuarios * Math.pow(aleatorio.nextDouble(), 3));
+		while(comprador == dono || comprador == anterior) {
+			comprador = (comprador + 1) % usuarios;
+		}
+		return comprador;
+	}
+}
@@ -1,7 +1,8 @@
 package br.com.caelum.pm73.builder;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.List;
 
 import br.com.caelum.pm73.dominio.Lance;
@@ -14,7 +15,7 @@ public class LeilaoBuilder {
     private double valor;
     private String nome;
     private boolean usado;
-    private Calendar dataAbertura;
+    private Instant dataAbertura;
     private boolean encerrado;
     private List<Lance> lances;
 
@@ -23,7 +24,7 @@ public class LeilaoBuilder {
         this.valor = 1500.0;
         this.nome = "XBox";
         this.usado = false;
-        this.dataAbertura = Calendar.getInstance();
+        this.dataAbertura = Instant.now();
         this.lances = new ArrayList<Lance>();
     }
 
@@ -58,11 +59,13 @@ public class LeilaoBuilder {
     }
 
     public LeilaoBuilder diasAtras(int dias) {
-        Calendar data = Calendar.getInstance();
-        data.add(Calendar.DAY_OF_MONTH, -dias);
+        this.dataAbertura = Instant.now().minus(dias, ChronoUnit.DAYS);
 
-        this.dataAbertura = data;
+        return this;
+    }
 
+    public LeilaoBuilder abertoEm(Instant dataAbertura) {
+        this.dataAbertura = dataAbertura;
         return this;
     }
 
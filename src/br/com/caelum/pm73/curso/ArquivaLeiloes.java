@@ -0,0 +1,23 @@
+package br.com.caelum.pm73.curso;
+
+import java.util.Calendar;
+
+import br.com.caelum.pm73.dao.ArquivadorDeLeiloes;
+import br.com.caelum.pm73.dao.CriadorDeSessao;
+import br.com.caelum.pm73.dao.ProgressoDoArquivamento;
+
+public class ArquivaLeiloes {
+
+	public static void main(String[] args) {
+		
+		int dias = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+		Calendar prazo = Calendar.getInstance();
+		prazo.add(Calendar.DAY_OF_MONTH, -dias);
+		
+		ProgressoDoArquivamento total = new ArquivadorDeLeiloes(new CriadorDeSessao())
+				.arquiva(prazo, progresso -> System.out.println(progresso));
+		
+		System.out.println("arquivamento concluido: " + total);
+	}
+	
+}
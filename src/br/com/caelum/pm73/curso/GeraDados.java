@@ -0,0 +1,36 @@
+package br.com.caelum.pm73.curso;
+
+import org.hibernate.Session;
+
+import br.com.caelum.pm73.builder.GeradorDeDados;
+import br.com.caelum.pm73.dao.CargaEmMassa;
+import br.com.caelum.pm73.dao.CriadorDeSessao;
+import br.com.caelum.pm73.dao.ResumoDaCarga;
+
+public class GeraDados {
+
+	public static void main(String[] args) {
+		
+		int usuarios = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int leiloes = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+		double mediaDeLances = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+		long semente = args.length > 3 ? Long.parseLong(args[3]) : 42;
+		
+		GeradorDeDados gerador = new GeradorDeDados(semente)
+				.comUsuarios(usuarios)
+				.comLeiloes(leiloes)
+				.comMediaDeLances(mediaDeLances);
+		
+		Session session = new CriadorDeSessao().getSession();
+		try {
+			session.beginTransaction();
+			ResumoDaCarga resumo = new CargaEmMassa(session).carrega(gerador);
+			session.getTransaction().commit();
+			
+			System.out.println(resumo);
+		} finally {
+			session.close();
+		}
+	}
+	
+}
@@ -0,0 +1,25 @@
+package br.com.caelum.pm73.curso;
+
+import org.hibernate.Session;
+
+import br.com.caelum.pm73.dao.CriadorDeSessao;
+import br.com.caelum.pm73.dao.LeilaoDao;
+
+public class RecalculaAgregados {
+
+	public static void main(String[] args) {
+		
+		Session session = new CriadorDeSessao().getSession();
+		
+		try {
+			session.beginTransaction();
+			int atualizados = new LeilaoDao(session).recalculaAgregados();
+			session.getTransaction().commit();
+			
+			System.out.println(atualizados + " leiloes recalculados");
+		} finally {
+			session.close();
+		}
+	}
+	
+}
@@ -0,0 +1,43 @@
+package br.com.caelum.pm73.curso;
+
+import java.util.Calendar;
+
+import org.hibernate.Session;
+
+import br.com.caelum.pm73.dao.CriadorDeSessao;
+import br.com.caelum.pm73.dao.LanceDao;
+
+public class RotacionaLances {
+
+	public static void main(String[] args) {
+		
+		int mesesQuentes = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+		Calendar limite = Calendar.getInstance();
+		limite.set(Calendar.DAY_OF_MONTH, 1);
+		limite.add(Calendar.MONTH, 1 - mesesQuentes);
+		
+		CriadorDeSessao criador = new CriadorDeSessao();
+		Session session = criador.getSession();
+		Calendar mes;
+		try {
+			mes = new LanceDao(session).maisAntigoDeEncerrados();
+		} finally {
+			session.close();
+		}
+		
+		while(mes != null && mes.before(limite)) {
+			session = criador.getSession();
+			try {
+				session.beginTransaction();
+				int movidos = new LanceDao(session).rotaciona(mes);
+				session.getTransaction().commit();
+				
+				System.out.println(movidos + " lances movidos para " + LanceDao.particaoDe(mes));
+			} finally {
+				session.close();
+			}
+			mes.add(Calendar.MONTH, 1);
+		}
+	}
+	
+}
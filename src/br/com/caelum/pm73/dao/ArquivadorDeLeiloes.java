@@ -0,0 +1,67 @@
+package br.com.caelum.pm73.dao;
+
+import java.util.Calendar;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.hibernate.Session;
+
+public class ArquivadorDeLeiloes {
+
+	private final CriadorDeSessao criadorDeSessao;
+	private final int tamanhoDoLote;
+
+	public ArquivadorDeLeiloes(CriadorDeSessao criadorDeSessao) {
+		this(criadorDeSessao, LeilaoDao.TAMANHO_DO_LOTE * 10);
+	}
+
+	public ArquivadorDeLeiloes(CriadorDeSessao criadorDeSessao, int tamanhoDoLote) {
+		if(tamanhoDoLote < 1) {
+			throw new IllegalArgumentException("Tamanho do lote invalido: " + tamanhoDoLote);
+		}
+		this.criadorDeSessao = criadorDeSessao;
+		this.tamanhoDoLote = tamanhoDoLote;
+	}
+
+	public ProgressoDoArquivamento arquiva(Calendar prazo, Consumer<ProgressoDoArquivamento> acompanhamento) {
+		ProgressoDoArquivamento progresso = ProgressoDoArquivamento.NENHUM;
+
+		int encerrados;
+		do {
+			encerrados = emTransacao(dao -> dao.encerraAbertosAntesDe(prazo, tamanhoDoLote));
+			if(encerrados > 0) {
+				progresso = progresso.mais(new ProgressoDoArquivamento(1, encerrados, 0, 0));
+				acompanhamento.accept(progresso);
+			}
+		} while(encerrados == tamanhoDoLote);
+
+		ProgressoDoArquivamento lote;
+		do {
+			lote = emTransacao(dao -> dao.arquivaEncerrados(tamanhoDoLote));
+			if(lote.getLotes() > 0) {
+				progresso = progresso.mais(lote);
+				acompanhamento.accept(progresso);
+			}
+		} while(lote.getLeiloesArquivados() == tamanhoDoLote);
+
+		return progresso;
+	}
+
+	private <T> T emTransacao(Function<LeilaoDao, T> trabalho) {
+		// uma transacao curta por lote, para nao segurar locks da tabela inteira
+		Session session = criadorDeSessao.getSession();
+		try {
+			session.beginTransaction();
+			T resultado = trabalho.apply(new LeilaoDao(session));
+			session.getTransaction().commit();
+			return resultado;
+		} catch (RuntimeException e) {
+			if(session.getTransaction().isActive()) {
+				session.getTransaction().rollback();
+			}
+			throw e;
+		} finally {
+			session.close();
+		}
+	}
+}
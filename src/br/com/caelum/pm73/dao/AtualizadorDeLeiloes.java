@@ -0,0 +1,143 @@
+package br.com.caelum.pm73.dao;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.hibernate.Session;
+import org.hibernate.StaleStateException;
+
+import br.com.caelum.pm73.dominio.Leilao;
+
+public class AtualizadorDeLeiloes {
+
+	private static final Medidor MEDE_ATUALIZA = Metricas.medidor("AtualizadorDeLeiloes.atualiza");
+
+	private final CriadorDeSessao criadorDeSessao;
+	private final int tentativas;
+	private final long esperaInicial;
+	private final long esperaMaxima;
+	private final Map<Integer, Contadores> contencao;
+
+	public AtualizadorDeLeiloes(CriadorDeSessao criadorDeSessao) {
+		this(criadorDeSessao, 10, 2, 200);
+	}
+
+	public AtualizadorDeLeiloes(CriadorDeSessao criadorDeSessao, int tentativas, long esperaInicialEmMilis, long esperaMaximaEmMilis) {
+		this(criadorDeSessao, tentativas, esperaInicialEmMilis, esperaMaximaEmMilis, 10000);
+	}
+
+	public AtualizadorDeLeiloes(CriadorDeSessao criadorDeSessao, int tentativas, long esperaInicialEmMilis, long esperaMaximaEmMilis,
+			final int leiloesAcompanhados) {
+		this.criadorDeSessao = criadorDeSessao;
+		this.tentativas = tentativas;
+		this.esperaInicial = esperaInicialEmMilis;
+		this.esperaMaxima = esperaMaximaEmMilis;
+		// em ordem de acesso: os leiloes sem atualizacao ha mais tempo saem primeiro
+		this.contencao = new LinkedHashMap<Integer, Contadores>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Contadores> maisAntigo) {
+				return size() > leiloesAcompanhados;
+			}
+		};
+	}
+
+	public <T> T atualiza(int idDoLeilao, Function<Leilao, T> alteracao) {
+		return MEDE_ATUALIZA.mede(() -> comRetentativas(idDoLeilao, () -> emTransacao(idDoLeilao, alteracao)));
+	}
+
+	// cada tentativa chama a transacao de novo, entao ela tem que abrir a propria sessao
+	public <T> T comRetentativas(int idDoLeilao, Supplier<T> transacao) {
+		Contadores contadores = contadoresDo(idDoLeilao);
+		for(int tentativa = 1; ; tentativa++) {
+			try {
+				T resultado = transacao.get();
+				contadores.atualizacoes.increment();
+				return resultado;
+			} catch (StaleStateException e) {
+				contadores.conflitos.increment();
+				if(tentativa >= tentativas) {
+					contadores.desistencias.increment();
+					throw e;
+				}
+				espera(tentativa);
+			}
+		}
+	}
+
+	public ContencaoDoLeilao getContencao(int idDoLeilao) {
+		Contadores contadores;
+		synchronized(contencao) {
+			contadores = contencao.get(idDoLeilao);
+		}
+		return contadores == null ? new ContencaoDoLeilao(idDoLeilao, 0, 0, 0) : contadores.fotografia(idDoLeilao);
+	}
+
+	public List<ContencaoDoLeilao> getMaisDisputados(int quantidade) {
+		List<ContencaoDoLeilao> todos = new ArrayList<ContencaoDoLeilao>();
+		synchronized(contencao) {
+			for(Map.Entry<Integer, Contadores> leilao : contencao.entrySet()) {
+				todos.add(leilao.getValue().fotografia(leilao.getKey()));
+			}
+		}
+		todos.sort(Comparator.comparingLong(ContencaoDoLeilao::getConflitos).reversed());
+		return todos.subList(0, Math.min(quantidade, todos.size()));
+	}
+
+	private Contadores contadoresDo(int idDoLeilao) {
+		synchronized(contencao) {
+			return contencao.computeIfAbsent(idDoLeilao, id -> new Contadores());
+		}
+	}
+
+	private <T> T emTransacao(int idDoLeilao, Function<Leilao, T> alteracao) {
+		// depois de um conflito a sessao fica inutilizavel, entao cada tentativa abre a sua
+		Session session = criadorDeSessao.getSession();
+		try {
+			session.beginTransaction();
+			Leilao leilao = new LeilaoDao(session).porId(idDoLeilao);
+			if(leilao == null) {
+				throw new IllegalArgumentException("Leilao inexistente: " + idDoLeilao);
+			}
+			T resultado = alteracao.apply(leilao);
+			session.getTransaction().commit();
+			return resultado;
+		} catch (RuntimeException e) {
+			if(session.getTransaction().isActive()) {
+				session.getTransaction().rollback();
+			}
+			throw e;
+		} finally {
+			session.close();
+		}
+	}
+
+	private void espera(int tentativa) {
+		// backoff exponencial com jitter completo, para os concorrentes nao voltarem juntos
+		long teto = Math.min(esperaMaxima, esperaInicial << Math.min(tentativa, 20));
+		try {
+			Thread.sleep(ThreadLocalRandom.current().nextLong(teto + 1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrompido aguardando nova tentativa de atualizacao", e);
+		}
+	}
+
+	private static class Contadores {
+		private final LongAdder atualizacoes = new LongAdder();
+		private final LongAdder conflitos = new LongAdder();
+		private final LongAdder desistencias = new LongAdder();
+
+		ContencaoDoLeilao fotografia(int idDoLeilao) {
+			return new ContencaoDoLeilao(idDoLeilao, atualizacoes.sum(), conflitos.sum(), desistencias.sum());
+		}
+	}
+}
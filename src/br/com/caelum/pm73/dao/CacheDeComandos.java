@@ -0,0 +1,190 @@
+package br.com.caelum.pm73.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// guarda os PreparedStatements fechados de uma conexao para que o mesmo sql nao seja preparado de novo
+public class CacheDeComandos {
+
+	private final int tamanho;
+	private final LongAdder acertos;
+	private final LongAdder falhas;
+
+	public CacheDeComandos(int tamanho, LongAdder acertos, LongAdder falhas) {
+		this.tamanho = tamanho;
+		this.acertos = acertos;
+		this.falhas = falhas;
+	}
+
+	public Connection envolve(Connection conexao) {
+		if(tamanho <= 0) {
+			return conexao;
+		}
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new Conexao(conexao));
+	}
+
+	private static Object invoca(Object alvo, Method metodo, Object[] args) throws Throwable {
+		try {
+			return metodo.invoke(alvo, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	private class Conexao implements InvocationHandler {
+
+		private final Connection conexao;
+		private final Map<List<Object>, List<PreparedStatement>> livres;
+		private int guardados;
+
+		Conexao(Connection conexao) {
+			this.conexao = conexao;
+			// em ordem de acesso: o sql usado ha mais tempo e o primeiro a sair
+			this.livres = new LinkedHashMap<List<Object>, List<PreparedStatement>>(16, 0.75f, true);
+		}
+
+		public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+			if(metodo.getName().equals("equals")) {
+				return proxy == args[0];
+			}
+			if(metodo.getName().equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			}
+			if(metodo.getName().equals("close")) {
+				esvazia();
+				return invoca(conexao, metodo, args);
+			}
+			if(!metodo.getName().equals("prepareStatement")) {
+				return invoca(conexao, metodo, args);
+			}
+
+			List<Object> chave = Arrays.asList(args);
+			synchronized(this) {
+				List<PreparedStatement> mesmoSql = livres.get(chave);
+				if(mesmoSql != null && !mesmoSql.isEmpty()) {
+					PreparedStatement guardado = mesmoSql.remove(mesmoSql.size() - 1);
+					guardados--;
+					if(mesmoSql.isEmpty()) {
+						livres.remove(chave);
+					}
+					acertos.increment();
+					return envolve(guardado, chave);
+				}
+			}
+			falhas.increment();
+			return envolve((PreparedStatement) invoca(conexao, metodo, args), chave);
+		}
+
+		private PreparedStatement envolve(PreparedStatement comando, List<Object> chave) {
+			return (PreparedStatement) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { PreparedStatement.class }, new Comando(this, comando, chave));
+		}
+
+		void devolve(PreparedStatement comando, List<Object> chave) throws SQLException {
+			comando.clearParameters();
+			comando.clearBatch();
+			comando.setMaxRows(0);
+			comando.setQueryTimeout(0);
+			comando.setFetchSize(0);
+
+			List<PreparedStatement> descartados = new ArrayList<PreparedStatement>();
+			synchronized(this) {
+				List<PreparedStatement> mesmoSql = livres.get(chave);
+				if(mesmoSql == null) {
+					mesmoSql = new ArrayList<PreparedStatement>(1);
+					livres.put(chave, mesmoSql);
+				}
+				mesmoSql.add(comando);
+				guardados++;
+
+				Iterator<List<PreparedStatement>> maisAntigos = livres.values().iterator();
+				while(guardados > tamanho && maisAntigos.hasNext()) {
+					List<PreparedStatement> antigos = maisAntigos.next();
+					descartados.addAll(antigos);
+					guardados -= antigos.size();
+					maisAntigos.remove();
+				}
+			}
+			for(PreparedStatement descartado : descartados) {
+				fecha(descartado);
+			}
+		}
+
+		private void esvazia() {
+			List<PreparedStatement> descartados = new ArrayList<PreparedStatement>();
+			synchronized(this) {
+				for(List<PreparedStatement> mesmoSql : livres.values()) {
+					descartados.addAll(mesmoSql);
+				}
+				livres.clear();
+				guardados = 0;
+			}
+			for(PreparedStatement descartado : descartados) {
+				fecha(descartado);
+			}
+		}
+	}
+
+	private static void fecha(PreparedStatement comando) {
+		try {
+			comando.close();
+		} catch (SQLException e) {
+			// comando ja fora do cache, nao ha o que fazer
+		}
+	}
+
+	private static class Comando implements InvocationHandler {
+
+		private final Conexao conexao;
+		private final PreparedStatement comando;
+		private final List<Object> chave;
+		private boolean fechado;
+
+		Comando(Conexao conexao, PreparedStatement comando, List<Object> chave) {
+			this.conexao = conexao;
+			this.comando = comando;
+			this.chave = chave;
+		}
+
+		public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+			if(metodo.getName().equals("equals")) {
+				return proxy == args[0];
+			}
+			if(metodo.getName().equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			}
+			if(metodo.getName().equals("isClosed")) {
+				return fechado || comando.isClosed();
+			}
+			if(metodo.getName().equals("close")) {
+				if(!fechado) {
+					fechado = true;
+					try {
+						conexao.devolve(comando, chave);
+					} catch (SQLException e) {
+						// comando em estado que nao da para limpar nao volta para o cache
+						fecha(comando);
+					}
+				}
+				return null;
+			}
+			if(fechado) {
+				throw new SQLException("Comando ja fechado");
+			}
+			return invoca(comando, metodo, args);
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package br.com.caelum.pm73.dao;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hibernate.cache.Cache;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.Timestamper;
+
+@SuppressWarnings("deprecation")
+public class CacheEmMemoria implements Cache {
+
+	private final String regiao;
+	private final long ttl;
+	private final Map<Object, Entrada> entradas;
+	private final LongAdder acertos = new LongAdder();
+	private final LongAdder falhas = new LongAdder();
+	private final LongAdder remocoes = new LongAdder();
+
+	public CacheEmMemoria(String regiao, final int tamanhoMaximo, long ttl) {
+		this.regiao = regiao;
+		this.ttl = ttl;
+		this.entradas = new LinkedHashMap<Object, Entrada>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Object, Entrada> maisAntiga) {
+				if(tamanhoMaximo > 0 && size() > tamanhoMaximo) {
+					remocoes.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public synchronized Object get(Object chave) throws CacheException {
+		Entrada entrada = entradas.get(chave);
+		if(entrada == null) {
+			falhas.increment();
+			return null;
+		}
+		if(entrada.expirouEm(System.currentTimeMillis())) {
+			entradas.remove(chave);
+			remocoes.increment();
+			falhas.increment();
+			return null;
+		}
+		acertos.increment();
+		return entrada.valor;
+	}
+
+	public Object read(Object chave) throws CacheException {
+		return get(chave);
+	}
+
+	public synchronized void put(Object chave, Object valor) throws CacheException {
+		long expiraEm = ttl > 0 ? System.currentTimeMillis() + ttl : Long.MAX_VALUE;
+		entradas.put(chave, new Entrada(valor, expiraEm));
+	}
+
+	public void update(Object chave, Object valor) throws CacheException {
+		put(chave, valor);
+	}
+
+	public synchronized void remove(Object chave) throws CacheException {
+		entradas.remove(chave);
+	}
+
+	public synchronized void clear() throws CacheException {
+		entradas.clear();
+	}
+
+	public void destroy() throws CacheException {
+		clear();
+	}
+
+	public void lock(Object chave) throws CacheException {
+		// as estrategias de concorrencia do Hibernate cuidam do travamento
+	}
+
+	public void unlock(Object chave) throws CacheException {
+	}
+
+	public long nextTimestamp() {
+		return Timestamper.next();
+	}
+
+	public int getTimeout() {
+		return Timestamper.ONE_MS * 60000;
+	}
+
+	public String getRegionName() {
+		return regiao;
+	}
+
+	public long getSizeInMemory() {
+		return -1;
+	}
+
+	public synchronized long getElementCountInMemory() {
+		return entradas.size();
+	}
+
+	public long getElementCountOnDisk() {
+		return 0;
+	}
+
+	@SuppressWarnings("rawtypes")
+	public synchronized Map toMap() {
+		Map<Object, Object> copia = new HashMap<Object, Object>();
+		for(Map.Entry<Object, Entrada> entrada : entradas.entrySet()) {
+			copia.put(entrada.getKey(), entrada.getValue().valor);
+		}
+		return copia;
+	}
+
+	public EstatisticasDoCache getEstatisticas() {
+		return new EstatisticasDoCache(regiao, acertos.sum(), falhas.sum(), remocoes.sum(),
+				getElementCountInMemory());
+	}
+
+	private static class Entrada {
+		private final Object valor;
+		private final long expiraEm;
+
+		Entrada(Object valor, long expiraEm) {
+			this.valor = valor;
+			this.expiraEm = expiraEm;
+		}
+
+		boolean expirouEm(long agora) {
+			return agora > expiraEm;
+		}
+	}
+}
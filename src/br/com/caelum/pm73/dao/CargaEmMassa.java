@@ -0,0 +1,200 @@
+package br.com.caelum.pm73.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.List;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.hibernate.JDBCException;
+import org.hibernate.Session;
+
+import br.com.caelum.pm73.builder.DestinoDosDados;
+import br.com.caelum.pm73.builder.GeradorDeDados;
+import br.com.caelum.pm73.dominio.Lance;
+import br.com.caelum.pm73.dominio.Leilao;
+import br.com.caelum.pm73.dominio.Usuario;
+
+public class CargaEmMassa {
+
+	static final String INSERE_USUARIO = "insert into Usuario (id, nome, email) values (?, ?, ?)";
+	static final String INSERE_LEILAO = "insert into Leilao (id, versao, nome, valorInicial, dono_id, dataAbertura, " +
+			"usado, encerrado, quantidadeDeLances, maiorLance, somaDosLances, dataDoUltimoLance) " +
+			"values (?, 0, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+	static final String INSERE_LANCE = "insert into Lance (id, versao, valor, data, usuario_id, leilao_id) values (?, 0, ?, ?, ?, ?)";
+
+	static final int LINHAS_POR_LOTE = 1000;
+	// mesmo increment_size dos geradores pooled das entidades
+	private static final int INCREMENTO_DAS_SEQUENCIAS = 50;
+
+	private final Session session;
+
+	public CargaEmMassa(Session session) {
+		this.session = session;
+	}
+
+	public ResumoDaCarga carrega(GeradorDeDados gerador) {
+		long inicio = System.nanoTime();
+		Escritor escritor = new Escritor();
+		session.doWork(conexao -> {
+			try (Statement comando = conexao.createStatement()) {
+				verificaVazia(comando, "Usuario");
+				verificaVazia(comando, "Leilao");
+				verificaVazia(comando, "Lance");
+			}
+			try (PreparedStatement usuarios = conexao.prepareStatement(INSERE_USUARIO);
+					PreparedStatement leiloes = conexao.prepareStatement(INSERE_LEILAO);
+					PreparedStatement lances = conexao.prepareStatement(INSERE_LANCE)) {
+				escritor.usuarios = usuarios;
+				escritor.leiloes = leiloes;
+				escritor.lances = lances;
+				gerador.gera(escritor);
+				escritor.finaliza();
+			}
+			// os ids vieram do gerador; as sequencias precisam pular tudo o que foi inserido
+			try (Statement comando = conexao.createStatement()) {
+				reinicia(comando, "usuario_seq", escritor.totalDeUsuarios);
+				reinicia(comando, "leilao_seq", escritor.totalDeLeiloes);
+				reinicia(comando, "lance_seq", escritor.totalDeLances);
+			}
+		});
+		invalidaAoConfirmar();
+		return new ResumoDaCarga(escritor.totalDeUsuarios, escritor.totalDeLeiloes, escritor.totalDeLances,
+				System.nanoTime() - inicio);
+	}
+
+	private void invalidaAoConfirmar() {
+		if(!session.getTransaction().isActive()) {
+			invalida();
+			return;
+		}
+		// as linhas entraram por fora do hibernate: a visao de abertos e o cache de consultas nao as conhecem
+		session.getTransaction().registerSynchronization(new Synchronization() {
+			public void beforeCompletion() {
+			}
+
+			public void afterCompletion(int status) {
+				if(status == Status.STATUS_COMMITTED) {
+					invalida();
+				}
+			}
+		});
+	}
+
+	private void invalida() {
+		LeiloesAbertos.de(session.getSessionFactory()).invalida();
+		session.getSessionFactory().getCache().evictQueryRegions();
+	}
+
+	private static void verificaVazia(Statement comando, String tabela) throws SQLException {
+		try (ResultSet linhas = comando.executeQuery("select count(*) from " + tabela)) {
+			linhas.next();
+			if(linhas.getLong(1) > 0) {
+				throw new IllegalStateException("A carga em massa exige a tabela " + tabela + " vazia");
+			}
+		}
+	}
+
+	private static void reinicia(Statement comando, String sequencia, int ultimoId) throws SQLException {
+		comando.execute("alter sequence " + sequencia + " restart with " + (ultimoId + INCREMENTO_DAS_SEQUENCIAS + 1));
+	}
+
+	private static class Escritor implements DestinoDosDados {
+
+		private PreparedStatement usuarios;
+		private PreparedStatement leiloes;
+		private PreparedStatement lances;
+		private int totalDeUsuarios;
+		private int totalDeLeiloes;
+		private int totalDeLances;
+		// o hsqldb recusa executeBatch sem nada no lote
+		private int usuariosNoLote;
+		private int leiloesNoLote;
+		private int lancesNoLote;
+
+		public void usuario(int id, Usuario usuario) {
+			try {
+				usuarios.setInt(1, id);
+				usuarios.setString(2, usuario.getNome());
+				usuarios.setString(3, usuario.getEmail());
+				usuarios.addBatch();
+				usuariosNoLote++;
+				if(++totalDeUsuarios % LINHAS_POR_LOTE == 0) {
+					usuariosNoLote = grava(usuarios, usuariosNoLote);
+				}
+			} catch (SQLException e) {
+				throw new JDBCException("Erro inserindo usuario " + id, e);
+			}
+		}
+
+		public void leilao(int id, Leilao leilao, int idDoDono, int[] idsDosCompradores) {
+			try {
+				if(totalDeLeiloes == 0) {
+					// os leiloes referenciam usuarios, que precisam estar no banco antes
+					usuariosNoLote = grava(usuarios, usuariosNoLote);
+				}
+				leiloes.setInt(1, id);
+				leiloes.setString(2, leilao.getNome());
+				leiloes.setDouble(3, leilao.getValorInicial());
+				leiloes.setInt(4, idDoDono);
+				leiloes.setTimestamp(5, timestamp(leilao.getInstanteDeAbertura()));
+				leiloes.setBoolean(6, leilao.isUsado());
+				leiloes.setBoolean(7, leilao.isEncerrado());
+				leiloes.setInt(8, leilao.getQuantidadeDeLances());
+				leiloes.setDouble(9, leilao.getMaiorLance());
+				leiloes.setDouble(10, leilao.getSomaDosLances());
+				if(leilao.getInstanteDoUltimoLance() == null) {
+					leiloes.setNull(11, Types.TIMESTAMP);
+				} else {
+					leiloes.setTimestamp(11, timestamp(leilao.getInstanteDoUltimoLance()));
+				}
+				leiloes.addBatch();
+				leiloesNoLote++;
+				if(++totalDeLeiloes % LINHAS_POR_LOTE == 0) {
+					leiloesNoLote = grava(leiloes, leiloesNoLote);
+				}
+
+				List<Lance> doLeilao = leilao.getLances();
+				for(int i = 0; i < doLeilao.size(); i++) {
+					Lance lance = doLeilao.get(i);
+					lances.setInt(1, ++totalDeLances);
+					lances.setDouble(2, lance.getValor());
+					lances.setTimestamp(3, timestamp(lance.getInstante()));
+					lances.setInt(4, idsDosCompradores[i]);
+					lances.setInt(5, id);
+					lances.addBatch();
+					lancesNoLote++;
+					if(totalDeLances % LINHAS_POR_LOTE == 0) {
+						leiloesNoLote = grava(leiloes, leiloesNoLote);
+						lancesNoLote = grava(lances, lancesNoLote);
+					}
+				}
+			} catch (SQLException e) {
+				throw new JDBCException("Erro inserindo leilao " + id, e);
+			}
+		}
+
+		void finaliza() throws SQLException {
+			usuariosNoLote = grava(usuarios, usuariosNoLote);
+			leiloesNoLote = grava(leiloes, leiloesNoLote);
+			lancesNoLote = grava(lances, lancesNoLote);
+		}
+
+		private static int grava(PreparedStatement comando, int noLote) throws SQLException {
+			if(noLote > 0) {
+				comando.executeBatch();
+			}
+			return 0;
+		}
+
+		private static Timestamp timestamp(Instant instante) {
+			return new Timestamp(instante.toEpochMilli());
+		}
+	}
+}
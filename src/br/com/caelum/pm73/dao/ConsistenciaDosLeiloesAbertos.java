@@ -0,0 +1,37 @@
+package br.com.caelum.pm73.dao;
+
+import java.util.List;
+
+public class ConsistenciaDosLeiloesAbertos {
+
+	private final List<Integer> ausentes;
+	private final List<Integer> sobrando;
+	private final List<Integer> desatualizados;
+
+	public ConsistenciaDosLeiloesAbertos(List<Integer> ausentes, List<Integer> sobrando, List<Integer> desatualizados) {
+		this.ausentes = ausentes;
+		this.sobrando = sobrando;
+		this.desatualizados = desatualizados;
+	}
+
+	public boolean isConsistente() {
+		return ausentes.isEmpty() && sobrando.isEmpty() && desatualizados.isEmpty();
+	}
+
+	public List<Integer> getAusentes() {
+		return ausentes;
+	}
+
+	public List<Integer> getSobrando() {
+		return sobrando;
+	}
+
+	public List<Integer> getDesatualizados() {
+		return desatualizados;
+	}
+
+	@Override
+	public String toString() {
+		return "ausentes=" + ausentes + ", sobrando=" + sobrando + ", desatualizados=" + desatualizados;
+	}
+}
@@ -0,0 +1,42 @@
+package br.com.caelum.pm73.dao;
+
+public class ContencaoDoLeilao {
+
+	private final int idDoLeilao;
+	private final long atualizacoes;
+	private final long conflitos;
+	private final long desistencias;
+
+	public ContencaoDoLeilao(int idDoLeilao, long atualizacoes, long conflitos, long desistencias) {
+		this.idDoLeilao = idDoLeilao;
+		this.atualizacoes = atualizacoes;
+		this.conflitos = conflitos;
+		this.desistencias = desistencias;
+	}
+
+	public int getIdDoLeilao() {
+		return idDoLeilao;
+	}
+
+	public long getAtualizacoes() {
+		return atualizacoes;
+	}
+
+	public long getConflitos() {
+		return conflitos;
+	}
+
+	public long getDesistencias() {
+		return desistencias;
+	}
+
+	public double getConflitosPorAtualizacao() {
+		return atualizacoes == 0 ? 0 : (double) conflitos / atualizacoes;
+	}
+
+	@Override
+	public String toString() {
+		return "leilao=" + idDoLeilao + ", atualizacoes=" + atualizacoes + ", conflitos=" + conflitos
+				+ ", desistencias=" + desistencias;
+	}
+}
@@ -1,40 +1,314 @@
 package br.com.caelum.pm73.dao;
 
+import java.lang.management.ManagementFactory;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.FlushMode;
+import org.hibernate.LockMode;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
-import org.hibernate.cfg.AnnotationConfiguration;
+import org.hibernate.StatelessSession;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.cfg.Environment;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.NamedQueryDefinition;
+import org.hibernate.engine.NamedSQLQueryDefinition;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.engine.query.QueryPlanCache;
+import org.hibernate.engine.query.sql.NativeSQLQueryCollectionReturn;
+import org.hibernate.engine.query.sql.NativeSQLQueryReturn;
+import org.hibernate.event.PostDeleteEventListener;
+import org.hibernate.event.PostInsertEventListener;
+import org.hibernate.event.PostUpdateEventListener;
+import org.hibernate.mapping.SimpleAuxiliaryDatabaseObject;
+import org.hibernate.tool.hbm2ddl.SchemaValidator;
 
 import br.com.caelum.pm73.dominio.Lance;
+import br.com.caelum.pm73.dominio.LanceArquivado;
+import br.com.caelum.pm73.dominio.LanceDeQualquerMes;
 import br.com.caelum.pm73.dominio.Leilao;
+import br.com.caelum.pm73.dominio.LeilaoArquivado;
 import br.com.caelum.pm73.dominio.Usuario;
 
-@SuppressWarnings("deprecation")
 public class CriadorDeSessao {
 
-	private static AnnotationConfiguration config;
-	private static SessionFactory sf;
-	
+	public static final String ISOLAMENTO = "pm73.isolamento";
+	public static final String VERIFICA_CONSULTAS = "pm73.consultas.verifica_na_partida";
+
+	private static final String EM_MEMORIA = "jdbc:hsqldb:mem:";
+
+	private static final Class<?>[] ENTIDADES = { Lance.class, Leilao.class, Usuario.class,
+			LeilaoArquivado.class, LanceArquivado.class, LanceDeQualquerMes.class };
+
+	private static String[] ddl;
+	private static final Map<String, SessionFactory> fabricas = new ConcurrentHashMap<String, SessionFactory>();
+	private static final AtomicInteger isolados = new AtomicInteger();
+	private static final Medidor GET_SESSION = Metricas.medidor("CriadorDeSessao.getSession");
+	private static final Medidor GET_STATELESS_SESSION = Metricas.medidor("CriadorDeSessao.getStatelessSession");
+
+	private final String url;
+	private final String prefixo;
+	private Configuration config;
+	private long nanosDeMetadados;
+
+	public CriadorDeSessao() {
+		this(urlPadrao(), null);
+	}
+
+	private CriadorDeSessao(String url, String prefixo) {
+		this.url = url;
+		this.prefixo = prefixo;
+	}
+
+	// banco em memoria so deste criador, com o esquema ja criado; quem chama deve fecha-lo
+	public static CriadorDeSessao isolado() {
+		String nome = "pm73-" + processo() + "-" + isolados.incrementAndGet();
+		CriadorDeSessao criador = new CriadorDeSessao(EM_MEMORIA + nome, nome);
+		criador.getSessionFactory();
+		return criador;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
 	public Session getSession() {
-		if(sf == null) {
-			sf = getConfig().buildSessionFactory();
+		return GET_SESSION.mede(() -> getSessionFactory().openSession());
+	}
+
+	public Session getSessionSomenteLeitura() {
+		Session session = getSession();
+		session.setDefaultReadOnly(true);
+		session.setFlushMode(FlushMode.MANUAL);
+		return session;
+	}
+
+	public StatelessSession getStatelessSession() {
+		return GET_STATELESS_SESSION.mede(() -> getSessionFactory().openStatelessSession());
+	}
+
+	public EstatisticasDoPool getEstatisticasDoPool() {
+		return pool(getSessionFactory()).getEstatisticas();
+	}
+
+	// a fabrica ja atende quando o metodo retorna; pool e planos de consulta aquecem em segundo plano
+	public CompletableFuture<TemposDeInicializacao> inicia() {
+		getConfig();
+		long fimDosMetadados = System.nanoTime();
+		SessionFactory fabrica = getSessionFactory();
+		long fimDaFabrica = System.nanoTime();
+		if(!url.startsWith(EM_MEMORIA)) {
+			validaEsquema();
+		}
+		long fimDoEsquema = System.nanoTime();
+
+		long metadadosEmNanos = nanosDeMetadados;
+		CompletableFuture<Long> pool = CompletableFuture.supplyAsync(() -> {
+			long comeco = System.nanoTime();
+			pool(fabrica).aquece();
+			return System.nanoTime() - comeco;
+		});
+		CompletableFuture<long[]> consultas = CompletableFuture.supplyAsync(() -> {
+			long comeco = System.nanoTime();
+			int compiladas = compilaConsultas(fabrica);
+			return new long[] { System.nanoTime() - comeco, compiladas };
+		});
+		return pool.thenCombine(consultas, (nanosDoPool, compilacao) -> new TemposDeInicializacao(metadadosEmNanos,
+				fimDaFabrica - fimDosMetadados, fimDoEsquema - fimDaFabrica,
+				nanosDoPool, compilacao[0], (int) compilacao[1]));
+	}
+
+	// so confere as tabelas contra o mapeamento; recria-las apaga os dados e fica com o CriaTabelas
+	public void validaEsquema() {
+		new SchemaValidator(getConfig()).validate();
+	}
+
+	public List<EstatisticasDoCache> getEstatisticasDoCache() {
+		getSessionFactory();
+		return ProvedorDeCache.getEstatisticas(prefixo);
+	}
+
+	public LeiloesAbertos getLeiloesAbertos() {
+		LeiloesAbertos leiloesAbertos = LeiloesAbertos.de(getSessionFactory());
+		if(!leiloesAbertos.isCarregado()) {
+			synchronized(leiloesAbertos) {
+				if(!leiloesAbertos.isCarregado()) {
+					StatelessSession session = getStatelessSession();
+					try {
+						leiloesAbertos.reconstroi(session);
+					} finally {
+						session.close();
+					}
+				}
+			}
+		}
+		return leiloesAbertos;
+	}
+
+	public ConsistenciaDosLeiloesAbertos verificaLeiloesAbertos() {
+		StatelessSession session = getStatelessSession();
+		try {
+			return getLeiloesAbertos().verifica(session);
+		} finally {
+			session.close();
+		}
+	}
+
+	public void fecha() {
+		SessionFactory fabrica = fabricas.remove(url);
+		if(fabrica == null) {
+			return;
+		}
+		if(url.startsWith(EM_MEMORIA)) {
+			Session session = fabrica.openSession();
+			try {
+				session.doWork(conexao -> {
+					try (Statement comando = conexao.createStatement()) {
+						comando.execute("shutdown");
+					}
+				});
+			} finally {
+				session.close();
+			}
+		}
+		LeiloesAbertos.descarta(fabrica);
+		fabrica.close();
+	}
+
+	private SessionFactory getSessionFactory() {
+		SessionFactory fabrica = fabricas.get(url);
+		if(fabrica == null) {
+			synchronized(CriadorDeSessao.class) {
+				fabrica = fabricas.get(url);
+				if(fabrica == null) {
+					fabrica = getConfig().buildSessionFactory();
+					if(url.startsWith(EM_MEMORIA)) {
+						criaEsquema(fabrica);
+					}
+					fabricas.put(url, fabrica);
+				}
+			}
+		}
+		return fabrica;
+	}
+
+	private void criaEsquema(SessionFactory fabrica) {
+		// o script e gerado uma vez por JVM e reaproveitado por todos os bancos em memoria
+		if(ddl == null) {
+			Configuration configuracao = getConfig();
+			ddl = configuracao.generateSchemaCreationScript(Dialect.getDialect(configuracao.getProperties()));
+		}
+		Session session = fabrica.openSession();
+		try {
+			session.doWork(conexao -> {
+				try (Statement comando = conexao.createStatement()) {
+					for(String sql : ddl) {
+						comando.execute(sql);
+					}
+				}
+				conexao.commit();
+			});
+		} finally {
+			session.close();
+		}
+	}
+
+	private static PoolDeConexoes pool(SessionFactory fabrica) {
+		return (PoolDeConexoes) ((SessionFactoryImplementor) fabrica).getConnectionProvider();
+	}
+
+	static Map<String, String> consultasNomeadas() {
+		Map<String, String> consultas = new LinkedHashMap<String, String>();
+		consultas.putAll(LeilaoDao.consultasNomeadas());
+		consultas.putAll(LeilaoDaoSemEstado.consultasNomeadas());
+		consultas.putAll(UsuarioDao.consultasNomeadas());
+		consultas.put("LanceDao.maisAntigoDeEncerrados", LanceDao.MAIS_ANTIGO_DE_ENCERRADOS);
+		consultas.put("LeiloesAbertos.abertos", LeiloesAbertos.ABERTOS);
+		return consultas;
+	}
+
+	private static int compilaConsultas(SessionFactory fabrica) {
+		// com a verificacao na partida o hibernate ja compilou tudo e aqui so ha acertos no cache de planos
+		Collection<String> consultas = consultasNomeadas().values();
+		QueryPlanCache planos = ((SessionFactoryImplementor) fabrica).getQueryPlanCache();
+		for(String hql : consultas) {
+			planos.getHQLQueryPlan(hql, false, Collections.emptyMap());
 		}
-		
-		return sf.openSession();
+		return consultas.size();
+	}
+
+	private static String urlPadrao() {
+		if("fork".equals(System.getProperty(ISOLAMENTO))) {
+			return EM_MEMORIA + "pm73-" + processo();
+		}
+		return System.getProperty("pm73.url", "jdbc:hsqldb:caelum.db;shutdown=true");
+	}
+
+	private static String processo() {
+		return ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
 	}
 
-	public Configuration getConfig() {
+	// cada criador tem a sua configuracao, apontando para o seu banco e com as suas regioes de cache
+	public synchronized Configuration getConfig() {
 		if(config == null) {
-			config = new AnnotationConfiguration()
-		    .addAnnotatedClass(Lance.class)
-		    .addAnnotatedClass(Leilao.class)
-		    .addAnnotatedClass(Usuario.class)
+			long inicio = System.nanoTime();
+			Configuration configuracao = new Configuration();
+			for(Class<?> entidade : ENTIDADES) {
+				configuracao.addAnnotatedClass(entidade);
+			}
+			configuracao
 			.setProperty("hibernate.connection.driver_class", "org.hsqldb.jdbcDriver")
-			.setProperty("hibernate.connection.url", "jdbc:hsqldb:caelum.db;shutdown=true")
+			.setProperty(Environment.URL, url)
+			.setProperty("hibernate.connection.provider_class", PoolDeConexoes.class.getName())
 			.setProperty("hibernate.dialect", "org.hibernate.dialect.HSQLDialect")
 			.setProperty("hibernate.connection.username", "sa")
 			.setProperty("hibernate.connection.password", "")
-			.setProperty("hibernate.show_sql", "true");
+			.setProperty("hibernate.jdbc.batch_size", String.valueOf(LeilaoDao.TAMANHO_DO_LOTE))
+			.setProperty("hibernate.jdbc.batch_versioned_data", "true")
+			.setProperty("hibernate.order_inserts", "true")
+			.setProperty("hibernate.order_updates", "true")
+			.setProperty("hibernate.cache.provider_class", ProvedorDeCache.class.getName())
+			.setProperty("hibernate.cache.use_second_level_cache", System.getProperty("pm73.cache", "true"))
+			.setProperty("hibernate.cache.use_query_cache", System.getProperty("pm73.cache", "true"))
+			.setProperty("hibernate.generate_statistics", "true")
+			.setProperty("hibernate.query.startup_check", System.getProperty(VERIFICA_CONSULTAS, "true"))
+			.setProperty("hibernate.show_sql", System.getProperty("hibernate.show_sql", "false"));
+			if(prefixo != null) {
+				configuracao.setProperty(Environment.CACHE_REGION_PREFIX, prefixo);
+			}
+			
+			// consulta com erro derruba a construcao da fabrica em vez da primeira requisicao que a usar
+			for(Map.Entry<String, String> consulta : consultasNomeadas().entrySet()) {
+				configuracao.getNamedQueries().put(consulta.getKey(), new NamedQueryDefinition(consulta.getValue(),
+						false, null, null, null, null, null, false, null, null));
+			}
+			
+			// Leilao.lances carrega pela visao, que tambem enxerga os lances ja rotacionados para as particoes
+			configuracao.addAuxiliaryDatabaseObject(new SimpleAuxiliaryDatabaseObject(
+					LanceDao.criaVisao(Collections.<String>emptyList()), LanceDao.REMOVE_DA_VISAO));
+			@SuppressWarnings("unchecked")
+			Map<String, NamedSQLQueryDefinition> consultasSql = configuracao.getNamedSQLQueries();
+			consultasSql.put("Leilao.lances", new NamedSQLQueryDefinition(LanceDao.DO_LEILAO_EM_QUALQUER_MES,
+					new NativeSQLQueryReturn[] { new NativeSQLQueryCollectionReturn("lance", Leilao.class.getName(), "lances",
+							Collections.emptyMap(), LockMode.READ) },
+					Collections.singletonList("Lance"), false, null, null, null, null, null, false, null, null, false));
+			
+			// os listeners post-commit do hibernate 3.6 rodam tambem no rollback; a visao so muda ao confirmar
+			SincronizaLeiloesAbertos sincroniza = new SincronizaLeiloesAbertos();
+			configuracao.getEventListeners().setPostInsertEventListeners(new PostInsertEventListener[] { sincroniza });
+			configuracao.getEventListeners().setPostUpdateEventListeners(new PostUpdateEventListener[] { sincroniza });
+			configuracao.getEventListeners().setPostDeleteEventListeners(new PostDeleteEventListener[] { sincroniza });
+			configuracao.buildMappings();
+			nanosDeMetadados = System.nanoTime() - inicio;
+			config = configuracao;
 		}
 		return config;
 	}
@@ -0,0 +1,61 @@
+package br.com.caelum.pm73.dao;
+
+public class EstatisticaDeLeiloes<K> {
+
+	private final K chave;
+	private final long abertos;
+	private final long encerrados;
+	private final double valorInicialMedio;
+	private final double valorInicialMinimo;
+	private final double valorInicialMaximo;
+	private final long lances;
+	private final double somaDosLances;
+
+	public EstatisticaDeLeiloes(K chave, long abertos, long encerrados, double valorInicialMedio,
+			double valorInicialMinimo, double valorInicialMaximo, long lances, double somaDosLances) {
+		this.chave = chave;
+		this.abertos = abertos;
+		this.encerrados = encerrados;
+		this.valorInicialMedio = valorInicialMedio;
+		this.valorInicialMinimo = valorInicialMinimo;
+		this.valorInicialMaximo = valorInicialMaximo;
+		this.lances = lances;
+		this.somaDosLances = somaDosLances;
+	}
+
+	public K getChave() {
+		return chave;
+	}
+
+	public long getAbertos() {
+		return abertos;
+	}
+
+	public long getEncerrados() {
+		return encerrados;
+	}
+
+	public long getTotal() {
+		return abertos + encerrados;
+	}
+
+	public double getValorInicialMedio() {
+		return valorInicialMedio;
+	}
+
+	public double getValorInicialMinimo() {
+		return valorInicialMinimo;
+	}
+
+	public double getValorInicialMaximo() {
+		return valorInicialMaximo;
+	}
+
+	public long getLances() {
+		return lances;
+	}
+
+	public double getLanceMedio() {
+		return lances == 0 ? 0 : somaDosLances / lances;
+	}
+}
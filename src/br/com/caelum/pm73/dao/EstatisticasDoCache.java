@@ -0,0 +1,49 @@
+package br.com.caelum.pm73.dao;
+
+public class EstatisticasDoCache {
+
+	private final String regiao;
+	private final long acertos;
+	private final long falhas;
+	private final long remocoes;
+	private final long elementos;
+
+	public EstatisticasDoCache(String regiao, long acertos, long falhas, long remocoes, long elementos) {
+		this.regiao = regiao;
+		this.acertos = acertos;
+		this.falhas = falhas;
+		this.remocoes = remocoes;
+		this.elementos = elementos;
+	}
+
+	public String getRegiao() {
+		return regiao;
+	}
+
+	public long getAcertos() {
+		return acertos;
+	}
+
+	public long getFalhas() {
+		return falhas;
+	}
+
+	public long getRemocoes() {
+		return remocoes;
+	}
+
+	public long getElementos() {
+		return elementos;
+	}
+
+	public double getTaxaDeAcerto() {
+		long consultas = acertos + falhas;
+		return consultas == 0 ? 0 : (double) acertos / consultas;
+	}
+
+	@Override
+	public String toString() {
+		return regiao + ": acertos=" + acertos + ", falhas=" + falhas
+				+ ", remocoes=" + remocoes + ", elementos=" + elementos;
+	}
+}
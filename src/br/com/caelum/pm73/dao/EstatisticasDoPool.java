@@ -0,0 +1,79 @@
+package br.com.caelum.pm73.dao;
+
+public class EstatisticasDoPool {
+
+	private final int abertas;
+	private final int emUso;
+	private final int ociosas;
+	private final int aguardando;
+	private final long emprestimos;
+	private final long esgotamentos;
+	private final long descartadas;
+	private final long nanosDeEspera;
+	private final long comandosReaproveitados;
+	private final long comandosPreparados;
+
+	public EstatisticasDoPool(int abertas, int emUso, int ociosas, int aguardando,
+			long emprestimos, long esgotamentos, long descartadas, long nanosDeEspera,
+			long comandosReaproveitados, long comandosPreparados) {
+		this.abertas = abertas;
+		this.emUso = emUso;
+		this.ociosas = ociosas;
+		this.aguardando = aguardando;
+		this.emprestimos = emprestimos;
+		this.esgotamentos = esgotamentos;
+		this.descartadas = descartadas;
+		this.nanosDeEspera = nanosDeEspera;
+		this.comandosReaproveitados = comandosReaproveitados;
+		this.comandosPreparados = comandosPreparados;
+	}
+
+	public int getAbertas() {
+		return abertas;
+	}
+
+	public int getEmUso() {
+		return emUso;
+	}
+
+	public int getOciosas() {
+		return ociosas;
+	}
+
+	public int getAguardando() {
+		return aguardando;
+	}
+
+	public long getEmprestimos() {
+		return emprestimos;
+	}
+
+	public long getEsgotamentos() {
+		return esgotamentos;
+	}
+
+	public long getDescartadas() {
+		return descartadas;
+	}
+
+	public double getEsperaMediaEmMilis() {
+		return emprestimos == 0 ? 0 : nanosDeEspera / 1_000_000.0 / emprestimos;
+	}
+
+	public long getComandosReaproveitados() {
+		return comandosReaproveitados;
+	}
+
+	public long getComandosPreparados() {
+		return comandosPreparados;
+	}
+
+	@Override
+	public String toString() {
+		return "abertas=" + abertas + ", emUso=" + emUso + ", ociosas=" + ociosas
+				+ ", aguardando=" + aguardando + ", emprestimos=" + emprestimos
+				+ ", esgotamentos=" + esgotamentos + ", descartadas=" + descartadas
+				+ ", esperaMedia=" + getEsperaMediaEmMilis() + "ms"
+				+ ", comandosReaproveitados=" + comandosReaproveitados + ", comandosPreparados=" + comandosPreparados;
+	}
+}
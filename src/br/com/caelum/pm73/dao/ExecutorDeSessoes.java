@@ -0,0 +1,62 @@
+package br.com.caelum.pm73.dao;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+import org.hibernate.Session;
+
+public class ExecutorDeSessoes implements AutoCloseable {
+
+	private final CriadorDeSessao criadorDeSessao;
+	private final ExecutorService executor;
+	private final Semaphore conexoes;
+
+	public ExecutorDeSessoes(CriadorDeSessao criadorDeSessao) {
+		this(criadorDeSessao, executorPadrao(), Integer.getInteger(PoolDeConexoes.MAXIMO, 10));
+	}
+
+	public ExecutorDeSessoes(CriadorDeSessao criadorDeSessao, ExecutorService executor, int maximoDeSessoes) {
+		this.criadorDeSessao = criadorDeSessao;
+		this.executor = executor;
+		this.conexoes = new Semaphore(maximoDeSessoes);
+	}
+
+	public <T> CompletableFuture<T> executa(Function<Session, T> trabalho) {
+		return CompletableFuture.supplyAsync(() -> emTransacao(trabalho), executor);
+	}
+
+	public void close() {
+		executor.shutdown();
+	}
+
+	private <T> T emTransacao(Function<Session, T> trabalho) {
+		conexoes.acquireUninterruptibly();
+		Session session = criadorDeSessao.getSession();
+		try {
+			session.beginTransaction();
+			T resultado = trabalho.apply(session);
+			session.getTransaction().commit();
+			return resultado;
+		} catch (RuntimeException e) {
+			if(session.getTransaction().isActive()) {
+				session.getTransaction().rollback();
+			}
+			throw e;
+		} finally {
+			session.close();
+			conexoes.release();
+		}
+	}
+
+	private static ExecutorService executorPadrao() {
+		// threads virtuais so existem a partir do Java 21; antes disso usamos um pool do tamanho do pool de conexoes
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newFixedThreadPool(Integer.getInteger(PoolDeConexoes.MAXIMO, 10));
+		}
+	}
+}
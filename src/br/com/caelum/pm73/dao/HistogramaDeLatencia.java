@@ -0,0 +1,37 @@
+package br.com.caelum.pm73.dao;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class HistogramaDeLatencia {
+
+	private final AtomicLongArray faixas = new AtomicLongArray(64);
+
+	public void registra(long nanos) {
+		faixas.incrementAndGet(63 - Long.numberOfLeadingZeros(Math.max(1, nanos)));
+	}
+
+	public long getTotal() {
+		long total = 0;
+		for(int i = 0; i < faixas.length(); i++) {
+			total += faixas.get(i);
+		}
+		return total;
+	}
+
+	public long percentilEmNanos(double percentil) {
+		long total = getTotal();
+		if(total == 0) {
+			return 0;
+		}
+
+		long alvo = (long) Math.ceil(percentil * total);
+		long acumulado = 0;
+		for(int i = 0; i < faixas.length(); i++) {
+			acumulado += faixas.get(i);
+			if(acumulado >= alvo) {
+				return i == 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+}
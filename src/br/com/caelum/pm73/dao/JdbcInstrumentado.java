@@ -0,0 +1,97 @@
+package br.com.caelum.pm73.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+
+public class JdbcInstrumentado {
+
+	public static final String LIMITE_DE_LENTIDAO = "pm73.sql.lento_ms";
+
+	private static final long limiteEmNanos = Long.getLong(LIMITE_DE_LENTIDAO, 200) * 1000000;
+
+	private static final ThreadLocal<int[]> comandos = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
+
+	private JdbcInstrumentado() {
+	}
+
+	public static int comandosDaThread() {
+		return comandos.get()[0];
+	}
+
+	public static Connection instrumenta(Connection conexao) {
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new Conexao(conexao));
+	}
+
+	private static Object invoca(Object alvo, Method metodo, Object[] args) throws Throwable {
+		try {
+			return metodo.invoke(alvo, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static class Conexao implements InvocationHandler {
+
+		private final Connection conexao;
+
+		Conexao(Connection conexao) {
+			this.conexao = conexao;
+		}
+
+		public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+			if(metodo.getName().equals("equals")) {
+				return proxy == args[0];
+			}
+			if(metodo.getName().equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			}
+
+			Object resultado = invoca(conexao, metodo, args);
+			if(resultado instanceof Statement) {
+				String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+				return Proxy.newProxyInstance(Connection.class.getClassLoader(),
+						new Class<?>[] { metodo.getReturnType() }, new Comando((Statement) resultado, sql));
+			}
+			return resultado;
+		}
+	}
+
+	private static class Comando implements InvocationHandler {
+
+		private final Statement comando;
+		private final String sql;
+
+		Comando(Statement comando, String sql) {
+			this.comando = comando;
+			this.sql = sql;
+		}
+
+		public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+			if(!metodo.getName().startsWith("execute")) {
+				return invoca(comando, metodo, args);
+			}
+
+			comandos.get()[0]++;
+			long inicio = System.nanoTime();
+			try {
+				return invoca(comando, metodo, args);
+			} finally {
+				long nanos = System.nanoTime() - inicio;
+				if(nanos >= limiteEmNanos) {
+					String executado = sql != null ? sql : args != null && args.length > 0 ? String.valueOf(args[0]) : "?";
+					Metricas.getRegistro().registraComandoLento(executado, nanos);
+				}
+			}
+		}
+	}
+}
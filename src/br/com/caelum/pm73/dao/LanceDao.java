@@ -0,0 +1,224 @@
+package br.com.caelum.pm73.dao;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.Cache;
+import org.hibernate.SQLQuery;
+import org.hibernate.Session;
+
+import br.com.caelum.pm73.dominio.Lance;
+import br.com.caelum.pm73.dominio.LanceDeQualquerMes;
+import br.com.caelum.pm73.dominio.Leilao;
+import br.com.caelum.pm73.dominio.Usuario;
+
+public class LanceDao {
+
+	static final String PREFIXO_DA_PARTICAO = "LANCE_";
+	static final String COLUNAS = "id, versao, valor, data, usuario_id, leilao_id";
+	static final String PARTICOES = "select TABLE_NAME from INFORMATION_SCHEMA.SYSTEM_TABLES " +
+			"where TABLE_TYPE = 'TABLE' and TABLE_NAME like 'LANCE%'";
+	static final String MAIS_ANTIGO_DE_ENCERRADOS = "select min(lance.data) from Lance lance " +
+			"where lance.leilao.encerrado = true";
+	static final String MOVE_PARA_PARTICAO = "select la.id, la.versao, la.valor, la.data, la.usuario_id, la.leilao_id " +
+			"from Lance la join Leilao l on l.id = la.leilao_id " +
+			"where l.encerrado = true and la.data >= :inicio and la.data < :fim";
+	static final String REMOVE_MOVIDOS = "delete from Lance where data >= :inicio and data < :fim " +
+			"and leilao_id in (select id from Leilao where encerrado = true)";
+	static final String DO_LEILAO_EM_QUALQUER_MES = "select {lance.*} from " + LanceDeQualquerMes.VISAO + " lance " +
+			"where lance.leilao_id = :leilao order by lance.id";
+	static final String REMOVE_DA_VISAO = "drop view " + LanceDeQualquerMes.VISAO + " if exists";
+
+	private static final Medidor MEDE_DO_LEILAO = Metricas.medidor("LanceDao.doLeilao");
+	private static final Medidor MEDE_DO_USUARIO = Metricas.medidor("LanceDao.doUsuario");
+	private static final Medidor MEDE_ROTACIONA = Metricas.medidor("LanceDao.rotaciona");
+	private static final Medidor MEDE_DESCARTA = Metricas.medidor("LanceDao.descarta");
+
+	private final Session session;
+
+	public LanceDao(Session session) {
+		this.session = session;
+	}
+
+	// a visao junta a tabela quente e as particoes; so muda quando uma particao e criada ou descartada
+	static String criaVisao(List<String> particoes) {
+		StringBuilder sql = new StringBuilder("create view " + LanceDeQualquerMes.VISAO + " as select " + COLUNAS + " from Lance");
+		for(String particao : particoes) {
+			sql.append(" union all select " + COLUNAS + " from " + particao);
+		}
+		return sql.toString();
+	}
+
+	public static String particaoDe(Calendar data) {
+		return PREFIXO_DA_PARTICAO + String.format("%04d%02d", data.get(Calendar.YEAR), data.get(Calendar.MONTH) + 1);
+	}
+
+	@SuppressWarnings("unchecked")
+	public List<String> particoes() {
+		List<String> particoes = new ArrayList<String>();
+		for(String tabela : (List<String>) session.createSQLQuery(PARTICOES).list()) {
+			if(tabela.toUpperCase().matches(PREFIXO_DA_PARTICAO + "\\d{6}")) {
+				particoes.add(tabela.toUpperCase());
+			}
+		}
+		Collections.sort(particoes);
+		return particoes;
+	}
+
+	@SuppressWarnings("unchecked")
+	public List<Lance> doLeilao(Leilao leilao) {
+		return MEDE_DO_LEILAO.mede(() -> {
+			// lances de leiloes abertos nunca saem da tabela quente
+			List<String> particoes = leilao.isEncerrado()
+					? particoesEntre(leilao.getDataAbertura(), leilao.getDataDoUltimoLance())
+					: Collections.<String>emptyList();
+			return consultaRoteada("leilao_id = :leilao", particoes)
+					.setInteger("leilao", leilao.getId())
+					.list();
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	public List<Lance> doUsuario(Usuario usuario, Calendar inicio, Calendar fim) {
+		return MEDE_DO_USUARIO.mede(() -> consultaRoteada("usuario_id = :usuario and data between :inicio and :fim",
+					particoesEntre(inicio, fim))
+				.setInteger("usuario", usuario.getId())
+				.setCalendar("inicio", inicio)
+				.setCalendar("fim", fim)
+				.list());
+	}
+
+	public Calendar maisAntigoDeEncerrados() {
+		Long maisAntigo = (Long) session.getNamedQuery("LanceDao.maisAntigoDeEncerrados").uniqueResult();
+		if(maisAntigo == null || maisAntigo == 0) {
+			return null;
+		}
+		Calendar data = Calendar.getInstance();
+		data.setTimeInMillis(maisAntigo);
+		return data;
+	}
+
+	public int rotaciona(Calendar mes) {
+		return MEDE_ROTACIONA.mede(() -> {
+			Calendar inicio = inicioDoMes(mes);
+			Calendar fim = (Calendar) inicio.clone();
+			fim.add(Calendar.MONTH, 1);
+			
+			String particao = particaoDe(inicio);
+			List<String> particoes = particoes();
+			if(!particoes.contains(particao)) {
+				cria(particao);
+				particoes.add(particao);
+				recriaVisao(particoes);
+			}
+			
+			int movidos = comandoSobreLances("insert into " + particao + " (" + COLUNAS + ") " + MOVE_PARA_PARTICAO)
+					.setCalendar("inicio", inicio)
+					.setCalendar("fim", fim)
+					.executeUpdate();
+			comandoSobreLances(REMOVE_MOVIDOS)
+					.setCalendar("inicio", inicio)
+					.setCalendar("fim", fim)
+					.executeUpdate();
+			
+			Cache cache = session.getSessionFactory().getCache();
+			cache.evictEntityRegion(Lance.class);
+			cache.evictCollectionRegion(Leilao.class.getName() + ".lances");
+			return movidos;
+		});
+	}
+
+	public void descarta(String particao) {
+		MEDE_DESCARTA.executa(() -> {
+			List<String> particoes = particoes();
+			if(!particoes.remove(particao.toUpperCase())) {
+				throw new IllegalArgumentException("Particao de lances inexistente: " + particao);
+			}
+			// a visao depende da tabela, entao sai dela antes do drop
+			recriaVisao(particoes);
+			session.createSQLQuery("drop table " + particao).executeUpdate();
+			
+			Cache cache = session.getSessionFactory().getCache();
+			cache.evictEntityRegion(Lance.class);
+			cache.evictCollectionRegion(Leilao.class.getName() + ".lances");
+		});
+	}
+
+	// o delete em massa de Lance so enxerga a tabela quente; estes limpam as particoes, que nao tem chave estrangeira
+	public int deletaDosLeiloes(List<Integer> ids) {
+		int removidos = 0;
+		for(String particao : particoes()) {
+			removidos += comandoSobreLances("delete from " + particao + " where leilao_id in (:ids)")
+					.setParameterList("ids", ids)
+					.executeUpdate();
+		}
+		return removidos;
+	}
+
+	public int deletaDosEncerrados() {
+		int removidos = 0;
+		for(String particao : particoes()) {
+			removidos += comandoSobreLances("delete from " + particao + " where leilao_id in " +
+					"(select id from Leilao where encerrado = true)").executeUpdate();
+		}
+		return removidos;
+	}
+
+	private void recriaVisao(List<String> particoes) {
+		session.createSQLQuery(REMOVE_DA_VISAO).executeUpdate();
+		session.createSQLQuery(criaVisao(particoes)).executeUpdate();
+	}
+
+	private void cria(String particao) {
+		session.createSQLQuery("create table " + particao + " (id integer not null, versao integer not null, valor double not null, " +
+				"data timestamp, usuario_id integer, leilao_id integer, primary key (id))").executeUpdate();
+		session.createSQLQuery("create index " + particao + "_leilao_idx on " + particao + " (leilao_id)").executeUpdate();
+		session.createSQLQuery("create index " + particao + "_usuario_idx on " + particao + " (usuario_id, data)").executeUpdate();
+	}
+
+	private List<String> particoesEntre(Calendar inicio, Calendar fim) {
+		List<String> existentes = particoes();
+		List<String> particoes = new ArrayList<String>();
+		if(existentes.isEmpty() || inicio == null) {
+			return particoes;
+		}
+		
+		Calendar mes = inicioDoMes(inicio);
+		Calendar ultimo = fim == null ? Calendar.getInstance() : fim;
+		while(!mes.after(ultimo)) {
+			if(existentes.contains(particaoDe(mes))) {
+				particoes.add(particaoDe(mes));
+			}
+			mes.add(Calendar.MONTH, 1);
+		}
+		return particoes;
+	}
+
+	private SQLQuery consultaRoteada(String filtro, List<String> particoes) {
+		StringBuilder sql = new StringBuilder("select " + COLUNAS + " from Lance where " + filtro);
+		for(String particao : particoes) {
+			sql.append(" union all select " + COLUNAS + " from " + particao + " where " + filtro);
+		}
+		sql.append(" order by data");
+		
+		SQLQuery query = session.createSQLQuery(sql.toString()).addEntity(Lance.class);
+		query.setReadOnly(true);
+		return query;
+	}
+
+	private SQLQuery comandoSobreLances(String sql) {
+		return session.createSQLQuery(sql).addSynchronizedEntityClass(Lance.class);
+	}
+
+	private Calendar inicioDoMes(Calendar data) {
+		Calendar inicio = (Calendar) data.clone();
+		inicio.set(Calendar.DAY_OF_MONTH, 1);
+		inicio.set(Calendar.HOUR_OF_DAY, 0);
+		inicio.set(Calendar.MINUTE, 0);
+		inicio.set(Calendar.SECOND, 0);
+		inicio.set(Calendar.MILLISECOND, 0);
+		return inicio;
+	}
+}
@@ -0,0 +1,71 @@
+package br.com.caelum.pm73.dao;
+
+import java.time.Instant;
+
+import org.hibernate.proxy.HibernateProxy;
+
+import br.com.caelum.pm73.dominio.Leilao;
+import br.com.caelum.pm73.dominio.Usuario;
+
+public class LeilaoAberto {
+
+	private final int id;
+	private final String nome;
+	private final double valorInicial;
+	private final Integer idDoDono;
+	private final long dataAbertura;
+	private final boolean usado;
+
+	public LeilaoAberto(int id, String nome, double valorInicial, Integer idDoDono, long dataAbertura, boolean usado) {
+		this.id = id;
+		this.nome = nome;
+		this.valorInicial = valorInicial;
+		this.idDoDono = idDoDono;
+		this.dataAbertura = dataAbertura;
+		this.usado = usado;
+	}
+
+	static LeilaoAberto de(Leilao leilao) {
+		return new LeilaoAberto(leilao.getId(), leilao.getNome(), leilao.getValorInicial(),
+				idDe(leilao.getDono()), leilao.getInstanteDeAbertura().toEpochMilli(), leilao.isUsado());
+	}
+
+	private static Integer idDe(Usuario dono) {
+		if(dono == null) {
+			return null;
+		}
+		// nao inicializa o proxy do dono so para descobrir o id
+		if(dono instanceof HibernateProxy) {
+			return (Integer) ((HibernateProxy) dono).getHibernateLazyInitializer().getIdentifier();
+		}
+		return dono.getId();
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getNome() {
+		return nome;
+	}
+
+	public double getValorInicial() {
+		return valorInicial;
+	}
+
+	public Integer getIdDoDono() {
+		return idDoDono;
+	}
+
+	public long getDataAberturaEmMilis() {
+		return dataAbertura;
+	}
+
+	public Instant getDataAbertura() {
+		return Instant.ofEpochMilli(dataAbertura);
+	}
+
+	public boolean isUsado() {
+		return usado;
+	}
+}
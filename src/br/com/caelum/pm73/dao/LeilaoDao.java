@@ -1,101 +1,695 @@
 package br.com.caelum.pm73.dao;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import org.hibernate.Cache;
+import org.hibernate.CacheMode;
+import org.hibernate.Hibernate;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.type.CustomType;
+import org.hibernate.type.Type;
 
+import br.com.caelum.pm73.dominio.InstanteType;
 import br.com.caelum.pm73.dominio.Lance;
+import br.com.caelum.pm73.dominio.LanceDeQualquerMes;
 import br.com.caelum.pm73.dominio.Leilao;
 import br.com.caelum.pm73.dominio.Usuario;
 
 public class LeilaoDao {
 
+	public static final int TAMANHO_DO_LOTE = 50;
+	
+	static final Type INSTANTE = new CustomType(new InstanteType());
+
+	static final String NOVOS = "l.usado = false";
+	static final String ANTIGOS = "l.dataAbertura < :data";
+	static final String POR_PERIODO = "l.dataAbertura between :inicio and :fim " +
+			"and l.encerrado = false";
+	static final String DISPUTADOS_ENTRE = "l.valorInicial between :inicio and :fim " +
+			"and l.encerrado = false and l.quantidadeDeLances >= 3";
+	static final String DO_USUARIO = "l.id in (select lance.leilao.id from LanceDeQualquerMes lance " +
+			"where lance.usuario = :usuario)";
+	
+	// o dono ja vem no join para que os tres modos de leitura executem o mesmo plano
+	static final String MAIS_DISPUTADOS = "from Leilao l left join fetch l.dono where l.encerrado = false " +
+			"order by l.quantidadeDeLances desc";
+	static final String COM_MAIORES_LANCES = "from Leilao l left join fetch l.dono where l.encerrado = false " +
+			"order by l.maiorLance desc";
+	static final String COM_LANCES_DESDE = "from Leilao l where l.dataDoUltimoLance >= :data " +
+			"order by l.dataDoUltimoLance desc";
+	static final String MAIORES_LANCES_DO_LEILAO = "from Lance lance where lance.leilao.id = :leilao " +
+			"order by lance.valor desc, lance.id desc";
+	static final String ULTIMOS_LANCES_DO_LEILAO = "from Lance lance where lance.leilao.id = :leilao " +
+			"order by lance.data desc, lance.id desc";
+	static final String MAIORES_LANCES_EM_QUALQUER_MES = "select {lance.*} from " + LanceDeQualquerMes.VISAO + " lance " +
+			"where lance.leilao_id = :leilao order by lance.valor desc, lance.id desc";
+	static final String ULTIMOS_LANCES_EM_QUALQUER_MES = "select {lance.*} from " + LanceDeQualquerMes.VISAO + " lance " +
+			"where lance.leilao_id = :leilao order by lance.data desc, lance.id desc";
+	static final String TOTAL = "select count(l) from Leilao l where l.encerrado = false";
+	static final String VALOR_INICIAL_MEDIO_DO_USUARIO = "select avg(leilao.valorInicial) " +
+			"from Leilao leilao " +
+			"where leilao.id in (select lance.leilao.id from LanceDeQualquerMes lance where lance.usuario = :usuario)";
+	
+	static final String COLUNAS_DE_ESTATISTICA = "sum(case when l.encerrado = false then 1 else 0 end), " +
+			"sum(case when l.encerrado = true then 1 else 0 end), " +
+			"avg(l.valorInicial), min(l.valorInicial), max(l.valorInicial), " +
+			"sum(l.quantidadeDeLances), sum(l.somaDosLances)";
+	static final String ESTATISTICAS_POR_DONO = "select l.dono.id, " + COLUNAS_DE_ESTATISTICA +
+			" from Leilao l group by l.dono.id";
+	static final String ESTATISTICAS_POR_MES = "select year(l.dataAbertura), month(l.dataAbertura), " +
+			COLUNAS_DE_ESTATISTICA + " from Leilao l " +
+			"where l.dataAbertura between :inicio and :fim " +
+			"group by year(l.dataAbertura), month(l.dataAbertura) " +
+			"order by year(l.dataAbertura), month(l.dataAbertura)";
+	static final String ABERTOS_ANTES_DE = "select l.id from Leilao l " +
+			"where l.encerrado = false and l.dataAbertura < :prazo order by l.dataAbertura, l.id";
+	static final String ENCERRA = "update versioned Leilao set encerrado = true where id in (:ids)";
+	static final String ENCERRADOS = "select l.id from Leilao l where l.encerrado = true order by l.id";
+	static final String ARQUIVA_LANCES = "insert into LanceArquivado (id, valor, data, usuarioId, leilaoId) " +
+			"select lance.id, lance.valor, lance.data, lance.usuario.id, lance.leilao.id " +
+			"from LanceDeQualquerMes lance where lance.leilao.id in (:ids)";
+	static final String ARQUIVA_LEILOES = "insert into LeilaoArquivado (id, nome, valorInicial, donoId, dataAbertura, " +
+			"usado, quantidadeDeLances, maiorLance, somaDosLances, dataDoUltimoLance) " +
+			"select l.id, l.nome, l.valorInicial, l.dono.id, l.dataAbertura, " +
+			"l.usado, l.quantidadeDeLances, l.maiorLance, l.somaDosLances, l.dataDoUltimoLance " +
+			"from Leilao l where l.id in (:ids)";
+	static final String DELETA_LANCES = "delete from Lance where leilao.id in (:ids)";
+	static final String DELETA_LEILOES = "delete from Leilao where id in (:ids)";
+	static final String DELETA_LANCES_ENCERRADOS = "delete from Lance where leilao.id in " +
+			"(select l.id from Leilao l where l.encerrado = true)";
+	static final String DELETA_LEILOES_ENCERRADOS = "delete from Leilao where encerrado = true";
+	
+	static final String ESTATISTICAS_POR_ESTADO_DE_USO = "select l.usado, " + COLUNAS_DE_ESTATISTICA +
+			" from Leilao l group by l.usado";
+
+	private static final Medidor MEDE_SALVAR = Metricas.medidor("LeilaoDao.salvar");
+	private static final Medidor MEDE_SALVAR_TODOS = Metricas.medidor("LeilaoDao.salvarTodos");
+	private static final Medidor MEDE_POR_ID = Metricas.medidor("LeilaoDao.porId");
+	private static final Medidor MEDE_NOVOS = Metricas.medidor("LeilaoDao.novos");
+	private static final Medidor MEDE_NOVOS_PAGINA = Metricas.medidor("LeilaoDao.novos.pagina");
+	private static final Medidor MEDE_FLUXO_DE_NOVOS = Metricas.medidor("LeilaoDao.fluxoDeNovos");
+	private static final Medidor MEDE_ANTIGOS = Metricas.medidor("LeilaoDao.antigos");
+	private static final Medidor MEDE_ANTIGOS_PAGINA = Metricas.medidor("LeilaoDao.antigos.pagina");
+	private static final Medidor MEDE_FLUXO_DE_ANTIGOS = Metricas.medidor("LeilaoDao.fluxoDeAntigos");
+	private static final Medidor MEDE_POR_PERIODO = Metricas.medidor("LeilaoDao.porPeriodo");
+	private static final Medidor MEDE_POR_PERIODO_PAGINA = Metricas.medidor("LeilaoDao.porPeriodo.pagina");
+	private static final Medidor MEDE_FLUXO_POR_PERIODO = Metricas.medidor("LeilaoDao.fluxoPorPeriodo");
+	private static final Medidor MEDE_DISPUTADOS_ENTRE = Metricas.medidor("LeilaoDao.disputadosEntre");
+	private static final Medidor MEDE_DISPUTADOS_ENTRE_PAGINA = Metricas.medidor("LeilaoDao.disputadosEntre.pagina");
+	private static final Medidor MEDE_FLUXO_DE_DISPUTADOS_ENTRE = Metricas.medidor("LeilaoDao.fluxoDeDisputadosEntre");
+	private static final Medidor MEDE_MAIS_DISPUTADOS = Metricas.medidor("LeilaoDao.maisDisputados");
+	private static final Medidor MEDE_COM_MAIORES_LANCES = Metricas.medidor("LeilaoDao.comMaioresLances");
+	private static final Medidor MEDE_COM_LANCES_DESDE = Metricas.medidor("LeilaoDao.comLancesDesde");
+	private static final Medidor MEDE_MAIORES_LANCES_DO_LEILAO = Metricas.medidor("LeilaoDao.maioresLancesDo");
+	private static final Medidor MEDE_MAIORES_LANCES_DOS_LEILOES = Metricas.medidor("LeilaoDao.maioresLancesDos");
+	private static final Medidor MEDE_ULTIMOS_LANCES_DO_LEILAO = Metricas.medidor("LeilaoDao.ultimosLancesDo");
+	private static final Medidor MEDE_ULTIMOS_LANCES_DOS_LEILOES = Metricas.medidor("LeilaoDao.ultimosLancesDos");
+	private static final Medidor MEDE_TOTAL = Metricas.medidor("LeilaoDao.total");
+	private static final Medidor MEDE_ATUALIZA = Metricas.medidor("LeilaoDao.atualiza");
+	private static final Medidor MEDE_DELETA = Metricas.medidor("LeilaoDao.deleta");
+	private static final Medidor MEDE_DELETA_ENCERRADOS = Metricas.medidor("LeilaoDao.deletaEncerrados");
+	private static final Medidor MEDE_ENCERRA_ABERTOS_ANTES_DE = Metricas.medidor("LeilaoDao.encerraAbertosAntesDe");
+	private static final Medidor MEDE_ARQUIVA_ENCERRADOS = Metricas.medidor("LeilaoDao.arquivaEncerrados");
+	private static final Medidor MEDE_LISTA_LEILOES_DO_USUARIO = Metricas.medidor("LeilaoDao.listaLeiloesDoUsuario");
+	private static final Medidor MEDE_LISTA_LEILOES_DO_USUARIO_PAGINA = Metricas.medidor("LeilaoDao.listaLeiloesDoUsuario.pagina");
+	private static final Medidor MEDE_FLUXO_DE_LEILOES_DO_USUARIO = Metricas.medidor("LeilaoDao.fluxoDeLeiloesDoUsuario");
+	private static final Medidor MEDE_VALOR_INICIAL_MEDIO_DO_USUARIO = Metricas.medidor("LeilaoDao.getValorInicialMedioDoUsuario");
+	private static final Medidor MEDE_ESTATISTICAS_POR_DONO = Metricas.medidor("LeilaoDao.estatisticasPorDono");
+	private static final Medidor MEDE_ESTATISTICAS_POR_MES = Metricas.medidor("LeilaoDao.estatisticasPorMes");
+	private static final Medidor MEDE_ESTATISTICAS_POR_ESTADO_DE_USO = Metricas.medidor("LeilaoDao.estatisticasPorEstadoDeUso");
+	private static final Medidor MEDE_RECALCULA_AGREGADOS = Metricas.medidor("LeilaoDao.recalculaAgregados");
+
 	private final Session session;
+	private final PlanoDeBusca plano;
 
 	public LeilaoDao(Session session) {
+		this(session, PlanoDeBusca.RESUMO);
+	}
+	
+	private LeilaoDao(Session session, PlanoDeBusca plano) {
 		this.session = session;
+		this.plano = plano;
+	}
+	
+	public LeilaoDao comPlano(PlanoDeBusca plano) {
+		return new LeilaoDao(session, plano);
 	}
 	
 	public void salvar(Leilao leilao) {
-		session.save(leilao);
+		MEDE_SALVAR.executa(() -> {
+			session.save(leilao);
 		
-		for(Lance lance : leilao.getLances()) {
-			session.save(lance);
-		}
+			for(Lance lance : leilao.getLances()) {
+				session.save(lance);
+			}
+		});
+	}
+	
+	public void salvarTodos(Collection<Leilao> leiloes) {
+		salvarTodos(leiloes, TAMANHO_DO_LOTE);
+	}
+	
+	public void salvarTodos(Collection<Leilao> leiloes, int tamanhoDoLote) {
+		MEDE_SALVAR_TODOS.executa(() -> {
+			int pendentes = 0;
+			CacheMode modoAnterior = session.getCacheMode();
+			session.setCacheMode(CacheMode.IGNORE);
+		
+			try {
+				for(Leilao leilao : leiloes) {
+					salvar(leilao);
+					pendentes += 1 + leilao.getLances().size();
+				
+					if(pendentes >= tamanhoDoLote) {
+						session.flush();
+						session.clear();
+						pendentes = 0;
+					}
+				}
+			
+				session.flush();
+				session.clear();
+			} finally {
+				session.setCacheMode(modoAnterior);
+			}
+		});
 	}
 	
 	public Leilao porId(int id) {
-		return (Leilao) session.get(Leilao.class, id);
+		return MEDE_POR_ID.mede(() -> {
+			if(plano.getPerfil() == null) {
+				return (Leilao) session.get(Leilao.class, id);
+			}
+		
+			Leilao leilao;
+			session.enableFetchProfile(plano.getPerfil());
+			try {
+				leilao = (Leilao) session.get(Leilao.class, id);
+				if(leilao != null) {
+					plano.inicializa(leilao);
+				}
+			} finally {
+				session.disableFetchProfile(plano.getPerfil());
+			}
+			return leilao == null ? null : completo(leilao);
+		});
 	}
 	
-	@SuppressWarnings("unchecked")
 	public List<Leilao> novos() {
-		return session.createQuery("from Leilao l where usado = false")
-				.list();
+		return MEDE_NOVOS.mede(() -> lista(consulta("novos").setCacheable(true)));
+	}
+	
+	public Pagina<Leilao> novos(Posicao depoisDe, int tamanho) {
+		return MEDE_NOVOS_PAGINA.mede(() -> pagina(consultaPaginada("novos", depoisDe, tamanho), tamanho));
+	}
+	
+	public Stream<Leilao> fluxoDeNovos() {
+		return MEDE_FLUXO_DE_NOVOS.mede(() -> fluxo(consultaOrdenada("novos")));
 	}
 	
-	@SuppressWarnings("unchecked")
 	public List<Leilao> antigos() {
-		Calendar seteDiasAtras = Calendar.getInstance();
-		seteDiasAtras.add(Calendar.DAY_OF_MONTH, -7);
-		
-		return session.createQuery("from Leilao l where dataAbertura < :data")
-				.setParameter("data", seteDiasAtras)
-				.list();
+		return MEDE_ANTIGOS.mede(() -> lista(consulta("antigos")
+				.setParameter("data", seteDiasAtras(), INSTANTE)));
+	}
+	
+	public Pagina<Leilao> antigos(Posicao depoisDe, int tamanho) {
+		return MEDE_ANTIGOS_PAGINA.mede(() -> pagina(consultaPaginada("antigos", depoisDe, tamanho)
+				.setParameter("data", seteDiasAtras(), INSTANTE), tamanho));
+	}
+	
+	public Stream<Leilao> fluxoDeAntigos() {
+		return MEDE_FLUXO_DE_ANTIGOS.mede(() -> fluxo(consultaOrdenada("antigos")
+				.setParameter("data", seteDiasAtras(), INSTANTE)));
 	}
 	
-	@SuppressWarnings("unchecked")
 	public List<Leilao> porPeriodo(Calendar inicio, Calendar fim) {
-		return session.createQuery("from Leilao l where l.dataAbertura " +
-				"between :inicio and :fim and l.encerrado = false")
+		return MEDE_POR_PERIODO.mede(() -> lista(consulta("porPeriodo")
 				.setParameter("inicio", inicio)
-				.setParameter("fim", fim)
-				.list();
+				.setParameter("fim", fim)));
+	}
+	
+	public List<Leilao> porPeriodo(Instant inicio, Instant fim) {
+		return MEDE_POR_PERIODO.mede(() -> lista(consulta("porPeriodo")
+				.setParameter("inicio", inicio, INSTANTE)
+				.setParameter("fim", fim, INSTANTE)));
+	}
+	
+	public Pagina<Leilao> porPeriodo(Calendar inicio, Calendar fim, Posicao depoisDe, int tamanho) {
+		return MEDE_POR_PERIODO_PAGINA.mede(() -> pagina(consultaPaginada("porPeriodo", depoisDe, tamanho)
+				.setParameter("inicio", inicio)
+				.setParameter("fim", fim), tamanho));
+	}
+	
+	public Stream<Leilao> fluxoPorPeriodo(Calendar inicio, Calendar fim) {
+		return MEDE_FLUXO_POR_PERIODO.mede(() -> fluxo(consultaOrdenada("porPeriodo")
+				.setParameter("inicio", inicio)
+				.setParameter("fim", fim)));
 	}
 	
-	@SuppressWarnings("unchecked")
 	public List<Leilao> disputadosEntre(double inicio, double fim) {
-		return session.createQuery("from Leilao l where l.valorInicial " +
-				"between :inicio and :fim and l.encerrado = false " +
-				"and size(l.lances) >= 3")
+		return MEDE_DISPUTADOS_ENTRE.mede(() -> lista(consulta("disputadosEntre")
 				.setParameter("inicio", inicio)
-				.setParameter("fim", fim)
-				.list();
+				.setParameter("fim", fim)));
+	}
+	
+	public Pagina<Leilao> disputadosEntre(double inicio, double fim, Posicao depoisDe, int tamanho) {
+		return MEDE_DISPUTADOS_ENTRE_PAGINA.mede(() -> pagina(consultaPaginada("disputadosEntre", depoisDe, tamanho)
+				.setParameter("inicio", inicio)
+				.setParameter("fim", fim), tamanho));
+	}
+	
+	public Stream<Leilao> fluxoDeDisputadosEntre(double inicio, double fim) {
+		return MEDE_FLUXO_DE_DISPUTADOS_ENTRE.mede(() -> fluxo(consultaOrdenada("disputadosEntre")
+				.setParameter("inicio", inicio)
+				.setParameter("fim", fim)));
+	}
+	
+	@SuppressWarnings("unchecked")
+	public List<Leilao> maisDisputados(int quantidade) {
+		return MEDE_MAIS_DISPUTADOS.mede(() -> nomeada("LeilaoDao.maisDisputados")
+				.setMaxResults(quantidade)
+				.list());
+	}
+	
+	@SuppressWarnings("unchecked")
+	public List<Leilao> comMaioresLances(int quantidade) {
+		return MEDE_COM_MAIORES_LANCES.mede(() -> nomeada("LeilaoDao.comMaioresLances")
+				.setMaxResults(quantidade)
+				.list());
 	}
 	
+	@SuppressWarnings("unchecked")
+	public List<Leilao> comLancesDesde(Calendar data) {
+		return MEDE_COM_LANCES_DESDE.mede(() -> nomeada("LeilaoDao.comLancesDesde")
+				.setParameter("data", data)
+				.list());
+	}
+	
+	public List<Lance> maioresLancesDo(Leilao leilao, int quantidade) {
+		return MEDE_MAIORES_LANCES_DO_LEILAO.mede(() -> lancesLimitados("LeilaoDao.maioresLancesDoLeilao",
+				MAIORES_LANCES_EM_QUALQUER_MES, leilao, quantidade));
+	}
+	
+	public Map<Integer, List<Lance>> maioresLancesDos(Collection<Leilao> leiloes, int quantidade) {
+		return MEDE_MAIORES_LANCES_DOS_LEILOES.mede(() -> lancesLimitadosPorLeilao("LeilaoDao.maioresLancesDoLeilao",
+				MAIORES_LANCES_EM_QUALQUER_MES, leiloes, quantidade));
+	}
+	
+	public List<Lance> ultimosLancesDo(Leilao leilao, int quantidade) {
+		return MEDE_ULTIMOS_LANCES_DO_LEILAO.mede(() -> lancesLimitados("LeilaoDao.ultimosLancesDoLeilao",
+				ULTIMOS_LANCES_EM_QUALQUER_MES, leilao, quantidade));
+	}
+	
+	public Map<Integer, List<Lance>> ultimosLancesDos(Collection<Leilao> leiloes, int quantidade) {
+		return MEDE_ULTIMOS_LANCES_DOS_LEILOES.mede(() -> lancesLimitadosPorLeilao("LeilaoDao.ultimosLancesDoLeilao",
+				ULTIMOS_LANCES_EM_QUALQUER_MES, leiloes, quantidade));
+	}
+	
+	// conta no banco, e nao pelo LeiloesAbertos: a visao so muda no commit, e aqui a transacao
+	// precisa enxergar o que ela mesma ainda nao confirmou
 	public Long total() {
-		return (Long) session.createQuery("select count(l) from Leilao l where l.encerrado = false")
-				.uniqueResult();
+		return MEDE_TOTAL.mede(() -> (Long) nomeada("LeilaoDao.total")
+				.setCacheable(true)
+				.uniqueResult());
 	}
 	
 	public void atualiza(Leilao leilao) {
-		session.merge(leilao);
+		MEDE_ATUALIZA.executa(() -> session.merge(leilao));
 	}
 	
 	public void deleta(Leilao leilao) {
-		session.delete(leilao);
+		MEDE_DELETA.executa(() -> {
+			// os lances nao tem cascade de remocao: os rotacionados nao estao na tabela quente, entao
+			// todos saem em massa, como em deletaEncerrados. O leilao deixa a sessao antes, senao o
+			// flush automatico dos deletes religaria pelo save-update os lances ja carregados
+			session.evict(leilao);
+			List<Integer> ids = Collections.singletonList(leilao.getId());
+			new LanceDao(session).deletaDosLeiloes(ids);
+			nomeada("LeilaoDao.deletaLances").setParameterList("ids", ids).executeUpdate();
+			session.delete(leilao);
+		});
 	}
 	
 	public void deletaEncerrados() {
-		session
-			.createQuery("delete from Leilao l where l.encerrado = true")
-			.executeUpdate();
+		MEDE_DELETA_ENCERRADOS.executa(() -> {
+			// o delete em massa ignora o cascade de lances, entao os filhos saem primeiro
+			new LanceDao(session).deletaDosEncerrados();
+			nomeada("LeilaoDao.deletaLancesEncerrados").executeUpdate();
+			nomeada("LeilaoDao.deletaLeiloesEncerrados").executeUpdate();
+			removeLancesDoCache();
+		});
 	}
 	
 	@SuppressWarnings("unchecked")
+	public int encerraAbertosAntesDe(Calendar prazo, int quantidade) {
+		return MEDE_ENCERRA_ABERTOS_ANTES_DE.mede(() -> {
+			List<Integer> ids = nomeada("LeilaoDao.abertosAntesDe")
+					.setParameter("prazo", prazo)
+					.setMaxResults(quantidade)
+					.list();
+			if(ids.isEmpty()) {
+				return 0;
+			}
+			
+			int encerrados = nomeada("LeilaoDao.encerra")
+					.setParameterList("ids", ids)
+					.executeUpdate();
+			LeiloesAbertos.de(session.getSessionFactory()).removeAoConfirmar(session, ids);
+			return encerrados;
+		});
+	}
+	
+	@SuppressWarnings("unchecked")
+	public ProgressoDoArquivamento arquivaEncerrados(int quantidade) {
+		return MEDE_ARQUIVA_ENCERRADOS.mede(() -> {
+			List<Integer> ids = nomeada("LeilaoDao.encerrados")
+					.setMaxResults(quantidade)
+					.list();
+			if(ids.isEmpty()) {
+				return ProgressoDoArquivamento.NENHUM;
+			}
+			
+			int lances = nomeada("LeilaoDao.arquivaLances").setParameterList("ids", ids).executeUpdate();
+			int leiloes = nomeada("LeilaoDao.arquivaLeiloes").setParameterList("ids", ids).executeUpdate();
+			nomeada("LeilaoDao.deletaLances").setParameterList("ids", ids).executeUpdate();
+			new LanceDao(session).deletaDosLeiloes(ids);
+			nomeada("LeilaoDao.deletaLeiloes").setParameterList("ids", ids).executeUpdate();
+			removeLancesDoCache();
+			
+			return new ProgressoDoArquivamento(1, 0, leiloes, lances);
+		});
+	}
+	
 	public List<Leilao> listaLeiloesDoUsuario(Usuario usuario) {
-		return session.createQuery("select distinct lance.leilao " +
-								   "from Lance lance " +
-								   "where lance.usuario = :usuario")
-				.setParameter("usuario", usuario).list();
+		return MEDE_LISTA_LEILOES_DO_USUARIO.mede(() -> lista(consulta("doUsuario")
+				.setParameter("usuario", usuario)));
+	}
+	
+	public Pagina<Leilao> listaLeiloesDoUsuario(Usuario usuario, Posicao depoisDe, int tamanho) {
+		return MEDE_LISTA_LEILOES_DO_USUARIO_PAGINA.mede(() -> pagina(consultaPaginada("doUsuario", depoisDe, tamanho)
+				.setParameter("usuario", usuario), tamanho));
+	}
+	
+	public Stream<Leilao> fluxoDeLeiloesDoUsuario(Usuario usuario) {
+		return MEDE_FLUXO_DE_LEILOES_DO_USUARIO.mede(() -> fluxo(consultaOrdenada("doUsuario")
+				.setParameter("usuario", usuario)));
 	}
 	
 	public double getValorInicialMedioDoUsuario(Usuario usuario) {
-		return (Double) session.createQuery("select avg(leilao.valorInicial) " +
-											"from Leilao leilao " +
-											"where leilao.id in (select lance.leilao.id from Lance lance where lance.usuario = :usuario)")
+		return MEDE_VALOR_INICIAL_MEDIO_DO_USUARIO.mede(() -> (Double) nomeada("LeilaoDao.valorInicialMedioDoUsuario")
 					.setParameter("usuario", usuario)
-					.uniqueResult();
+					.uniqueResult());
+	}
+	
+	@SuppressWarnings("unchecked")
+	public List<EstatisticaDeLeiloes<Integer>> estatisticasPorDono() {
+		return MEDE_ESTATISTICAS_POR_DONO.mede(() -> {
+			List<EstatisticaDeLeiloes<Integer>> estatisticas = new ArrayList<EstatisticaDeLeiloes<Integer>>();
+			for(Object[] linha : (List<Object[]>) nomeada("LeilaoDao.estatisticasPorDono").list()) {
+				estatisticas.add(estatisticaDe((Integer) linha[0], linha, 1));
+			}
+			return estatisticas;
+		});
+	}
+	
+	@SuppressWarnings("unchecked")
+	public List<EstatisticaDeLeiloes<String>> estatisticasPorMes(Calendar inicio, Calendar fim) {
+		return MEDE_ESTATISTICAS_POR_MES.mede(() -> {
+			List<Object[]> linhas = nomeada("LeilaoDao.estatisticasPorMes")
+					.setParameter("inicio", inicio)
+					.setParameter("fim", fim)
+					.list();
+			
+			List<EstatisticaDeLeiloes<String>> estatisticas = new ArrayList<EstatisticaDeLeiloes<String>>();
+			for(Object[] linha : linhas) {
+				String mes = String.format("%04d-%02d", ((Number) linha[0]).intValue(), ((Number) linha[1]).intValue());
+				estatisticas.add(estatisticaDe(mes, linha, 2));
+			}
+			return estatisticas;
+		});
+	}
+	
+	@SuppressWarnings("unchecked")
+	public List<EstatisticaDeLeiloes<Boolean>> estatisticasPorEstadoDeUso() {
+		return MEDE_ESTATISTICAS_POR_ESTADO_DE_USO.mede(() -> {
+			List<EstatisticaDeLeiloes<Boolean>> estatisticas = new ArrayList<EstatisticaDeLeiloes<Boolean>>();
+			for(Object[] linha : (List<Object[]>) nomeada("LeilaoDao.estatisticasPorEstadoDeUso").list()) {
+				estatisticas.add(estatisticaDe((Boolean) linha[0], linha, 1));
+			}
+			return estatisticas;
+		});
+	}
+	
+	public int recalculaAgregados() {
+		// pela visao, para os leiloes com lances ja rotacionados nao ficarem zerados
+		String lances = " from " + LanceDeQualquerMes.VISAO + " lance where lance.leilao_id = Leilao.id)";
+		return MEDE_RECALCULA_AGREGADOS.mede(() -> session.createSQLQuery("update Leilao set " +
+				"quantidadeDeLances = (select count(*)" + lances + ", " +
+				"maiorLance = (select coalesce(max(valor), 0)" + lances + ", " +
+				"somaDosLances = (select coalesce(sum(valor), 0)" + lances + ", " +
+				"dataDoUltimoLance = (select max(data)" + lances + ", " +
+				"versao = versao + 1")
+				.executeUpdate());
+	}
+	
+	@SuppressWarnings("unchecked")
+	private List<Lance> lancesLimitados(String nome, String emQualquerMes, Leilao leilao, int quantidade) {
+		// lances de leiloes abertos nunca saem da tabela quente, que tem o indice na ordem pedida
+		Query query = leilao.isEncerrado()
+				? session.createSQLQuery(emQualquerMes)
+						.addEntity("lance", Lance.class)
+						.setReadOnly(session.isDefaultReadOnly())
+				: nomeada(nome);
+		return query
+				.setParameter("leilao", leilao.getId())
+				.setMaxResults(quantidade)
+				.list();
+	}
+	
+	private Map<Integer, List<Lance>> lancesLimitadosPorLeilao(String nome, String emQualquerMes, Collection<Leilao> leiloes,
+			int quantidade) {
+		// uma consulta limitada por leilao usa o indice (leilao, ordem) e le no maximo 'quantidade' linhas;
+		// um unico IN traria todos os lances dos leiloes quentes
+		Map<Integer, List<Lance>> porLeilao = new LinkedHashMap<Integer, List<Lance>>();
+		for(Leilao leilao : leiloes) {
+			porLeilao.put(leilao.getId(), lancesLimitados(nome, emQualquerMes, leilao, quantidade));
+		}
+		return porLeilao;
+	}
+	
+	private void removeLancesDoCache() {
+		Cache cache = session.getSessionFactory().getCache();
+		cache.evictEntityRegion(Lance.class);
+		cache.evictCollectionRegion(Leilao.class.getName() + ".lances");
+	}
+	
+	private <K> EstatisticaDeLeiloes<K> estatisticaDe(K chave, Object[] linha, int inicio) {
+		return new EstatisticaDeLeiloes<K>(chave,
+				numero(linha[inicio]).longValue(),
+				numero(linha[inicio + 1]).longValue(),
+				numero(linha[inicio + 2]).doubleValue(),
+				numero(linha[inicio + 3]).doubleValue(),
+				numero(linha[inicio + 4]).doubleValue(),
+				numero(linha[inicio + 5]).longValue(),
+				numero(linha[inicio + 6]).doubleValue());
+	}
+	
+	private Number numero(Object valor) {
+		return valor == null ? 0 : (Number) valor;
+	}
+	
+	private Query nomeada(String nome) {
+		// a definicao nomeada sempre liga ou desliga o somente leitura; vale o padrao da sessao
+		return session.getNamedQuery(nome).setReadOnly(session.isDefaultReadOnly());
+	}
+	
+	private Query consulta(String filtro) {
+		return nomeada("LeilaoDao." + filtro + "." + plano.name());
+	}
+	
+	private Query consultaOrdenada(String filtro) {
+		return nomeada("LeilaoDao." + filtro + ".ordenada");
+	}
+	
+	private Query consultaPaginada(String filtro, Posicao depoisDe, int tamanho) {
+		Query query = nomeada("LeilaoDao." + filtro + (depoisDe == null ? ".pagina" : ".paginaDepois"))
+				.setMaxResults(tamanho + 1);
+		if(depoisDe != null) {
+			query.setParameter("posicaoData", depoisDe.getDataAbertura(), INSTANTE)
+				.setParameter("posicaoId", depoisDe.getId());
+		}
+		return query;
+	}
+	
+	static String hqlDaConsulta(PlanoDeBusca plano, String filtro) {
+		return plano.getSelecao() + " where " + filtro;
+	}
+	
+	static String hqlPorIds(PlanoDeBusca plano) {
+		return plano.getSelecao() + " where l.id in (:ids)";
+	}
+	
+	static String hqlOrdenada(String filtro) {
+		return "from Leilao l where " + filtro + " order by l.dataAbertura, l.id";
+	}
+	
+	static String hqlPaginada(String filtro, boolean comPosicao) {
+		String hql = "from Leilao l where (" + filtro + ")";
+		if(comPosicao) {
+			hql += " and (l.dataAbertura > :posicaoData or (l.dataAbertura = :posicaoData and l.id > :posicaoId))";
+		}
+		return hql + " order by l.dataAbertura, l.id";
+	}
+	
+	// registradas como named queries: o hibernate valida e compila todas ao construir a fabrica
+	static Map<String, String> consultasNomeadas() {
+		Map<String, String> filtros = new LinkedHashMap<String, String>();
+		filtros.put("novos", NOVOS);
+		filtros.put("antigos", ANTIGOS);
+		filtros.put("porPeriodo", POR_PERIODO);
+		filtros.put("disputadosEntre", DISPUTADOS_ENTRE);
+		filtros.put("doUsuario", DO_USUARIO);
+		
+		Map<String, String> consultas = new LinkedHashMap<String, String>();
+		for(Map.Entry<String, String> filtro : filtros.entrySet()) {
+			for(PlanoDeBusca plano : PlanoDeBusca.values()) {
+				consultas.put("LeilaoDao." + filtro.getKey() + "." + plano.name(), hqlDaConsulta(plano, filtro.getValue()));
+			}
+			consultas.put("LeilaoDao." + filtro.getKey() + ".ordenada", hqlOrdenada(filtro.getValue()));
+			consultas.put("LeilaoDao." + filtro.getKey() + ".pagina", hqlPaginada(filtro.getValue(), false));
+			consultas.put("LeilaoDao." + filtro.getKey() + ".paginaDepois", hqlPaginada(filtro.getValue(), true));
+		}
+		for(PlanoDeBusca plano : PlanoDeBusca.values()) {
+			if(plano.getPerfil() != null) {
+				consultas.put("LeilaoDao.porIds." + plano.name(), hqlPorIds(plano));
+			}
+		}
+		consultas.put("LeilaoDao.maisDisputados", MAIS_DISPUTADOS);
+		consultas.put("LeilaoDao.comMaioresLances", COM_MAIORES_LANCES);
+		consultas.put("LeilaoDao.comLancesDesde", COM_LANCES_DESDE);
+		consultas.put("LeilaoDao.maioresLancesDoLeilao", MAIORES_LANCES_DO_LEILAO);
+		consultas.put("LeilaoDao.ultimosLancesDoLeilao", ULTIMOS_LANCES_DO_LEILAO);
+		consultas.put("LeilaoDao.total", TOTAL);
+		consultas.put("LeilaoDao.valorInicialMedioDoUsuario", VALOR_INICIAL_MEDIO_DO_USUARIO);
+		consultas.put("LeilaoDao.estatisticasPorDono", ESTATISTICAS_POR_DONO);
+		consultas.put("LeilaoDao.estatisticasPorMes", ESTATISTICAS_POR_MES);
+		consultas.put("LeilaoDao.estatisticasPorEstadoDeUso", ESTATISTICAS_POR_ESTADO_DE_USO);
+		consultas.put("LeilaoDao.abertosAntesDe", ABERTOS_ANTES_DE);
+		consultas.put("LeilaoDao.encerra", ENCERRA);
+		consultas.put("LeilaoDao.encerrados", ENCERRADOS);
+		consultas.put("LeilaoDao.arquivaLances", ARQUIVA_LANCES);
+		consultas.put("LeilaoDao.arquivaLeiloes", ARQUIVA_LEILOES);
+		consultas.put("LeilaoDao.deletaLances", DELETA_LANCES);
+		consultas.put("LeilaoDao.deletaLeiloes", DELETA_LEILOES);
+		consultas.put("LeilaoDao.deletaLancesEncerrados", DELETA_LANCES_ENCERRADOS);
+		consultas.put("LeilaoDao.deletaLeiloesEncerrados", DELETA_LEILOES_ENCERRADOS);
+		return consultas;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private Pagina<Leilao> pagina(Query query, int tamanho) {
+		List<Leilao> leiloes = query.list();
+		boolean temProxima = leiloes.size() > tamanho;
+		if(temProxima) {
+			leiloes = leiloes.subList(0, tamanho);
+		}
+		
+		carregaPlanoDa(leiloes);
+		
+		if(!temProxima) {
+			return new Pagina<Leilao>(leiloes, null);
+		}
+		
+		Leilao ultimo = leiloes.get(tamanho - 1);
+		return new Pagina<Leilao>(leiloes, new Posicao(ultimo.getInstanteDeAbertura(), ultimo.getId()));
+	}
+	
+	private void carregaPlanoDa(List<Leilao> leiloes) {
+		// join fetch de colecao nao combina com limite de linhas; a pagina vem so com os leiloes e o
+		// resto do plano chega numa segunda consulta pelos ids, em vez de lotes de tamanho fixo
+		if(plano.getPerfil() != null && !leiloes.isEmpty()) {
+			List<Integer> ids = new ArrayList<Integer>(leiloes.size());
+			for(Leilao leilao : leiloes) {
+				ids.add(leilao.getId());
+			}
+			nomeada("LeilaoDao.porIds." + plano.name()).setParameterList("ids", ids).list();
+		}
+		for(ListIterator<Leilao> leiloesDoPlano = leiloes.listIterator(); leiloesDoPlano.hasNext();) {
+			Leilao leilao = leiloesDoPlano.next();
+			plano.inicializa(leilao);
+			leiloesDoPlano.set(completo(leilao));
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private List<Leilao> lista(Query query) {
+		List<Leilao> leiloes = query.list();
+		if(plano.getPerfil() != null) {
+			for(ListIterator<Leilao> leiloesDoPlano = leiloes.listIterator(); leiloesDoPlano.hasNext();) {
+				leiloesDoPlano.set(completo(leiloesDoPlano.next()));
+			}
+		}
+		return leiloes;
+	}
+	
+	private Leilao completo(Leilao leilao) {
+		// o join dos planos so enxerga a tabela quente; leilao encerrado com lances rotacionados volta
+		// a ser carregado pela colecao, que le a visao. A contagem agregada inclui as particoes
+		if(!Hibernate.isInitialized(leilao.getLances()) || !leilao.isEncerrado()
+				|| leilao.getLances().size() == leilao.getQuantidadeDeLances()) {
+			return leilao;
+		}
+		session.evict(leilao);
+		session.getSessionFactory().getCache().evictCollection(Leilao.class.getName() + ".lances", leilao.getId());
+		Leilao recarregado = (Leilao) session.get(Leilao.class, leilao.getId());
+		plano.inicializa(recarregado);
+		return recarregado;
+	}
+	
+	private Stream<Leilao> fluxo(Query query) {
+		final ScrollableResults resultados = query
+				.setFetchSize(TAMANHO_DO_LOTE)
+				.scroll(ScrollMode.FORWARD_ONLY);
+		
+		Spliterator<Leilao> leiloes = new Spliterators.AbstractSpliterator<Leilao>(Long.MAX_VALUE,
+				Spliterator.ORDERED | Spliterator.NONNULL) {
+			
+			@Override
+			public boolean tryAdvance(Consumer<? super Leilao> acao) {
+				if(!resultados.next()) {
+					return false;
+				}
+				
+				Leilao leilao = (Leilao) resultados.get(0);
+				plano.inicializa(leilao);
+				acao.accept(leilao);
+				session.evict(leilao);
+				return true;
+			}
+		};
+		
+		return StreamSupport.stream(leiloes, false).onClose(resultados::close);
+	}
+	
+	static long seteDiasAtras() {
+		Calendar seteDiasAtras = Calendar.getInstance();
+		seteDiasAtras.add(Calendar.DAY_OF_MONTH, -7);
+		return seteDiasAtras.getTimeInMillis();
 	}
 }
@@ -0,0 +1,88 @@
+package br.com.caelum.pm73.dao;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import br.com.caelum.pm73.dominio.Leilao;
+import br.com.caelum.pm73.dominio.Usuario;
+
+public class LeilaoDaoAssincrono {
+
+	private final ExecutorDeSessoes executor;
+	private final PlanoDeBusca plano;
+
+	// a sessao fecha antes do future completar: o padrao ja traz o dono, e os lances pedem COM_LANCES
+	public LeilaoDaoAssincrono(ExecutorDeSessoes executor) {
+		this(executor, PlanoDeBusca.COM_DONO);
+	}
+
+	private LeilaoDaoAssincrono(ExecutorDeSessoes executor, PlanoDeBusca plano) {
+		this.executor = executor;
+		this.plano = plano;
+	}
+
+	public LeilaoDaoAssincrono comPlano(PlanoDeBusca plano) {
+		return new LeilaoDaoAssincrono(executor, plano);
+	}
+
+	public CompletableFuture<Void> salvar(Leilao leilao) {
+		return executor.executa(session -> {
+			new LeilaoDao(session).salvar(leilao);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Leilao> porId(int id) {
+		return executor.executa(session -> new LeilaoDao(session).comPlano(plano).porId(id));
+	}
+
+	public CompletableFuture<List<Leilao>> novos() {
+		return executor.executa(session -> new LeilaoDao(session).comPlano(plano).novos());
+	}
+
+	public CompletableFuture<List<Leilao>> antigos() {
+		return executor.executa(session -> new LeilaoDao(session).comPlano(plano).antigos());
+	}
+
+	public CompletableFuture<List<Leilao>> porPeriodo(Calendar inicio, Calendar fim) {
+		return executor.executa(session -> new LeilaoDao(session).comPlano(plano).porPeriodo(inicio, fim));
+	}
+
+	public CompletableFuture<List<Leilao>> disputadosEntre(double inicio, double fim) {
+		return executor.executa(session -> new LeilaoDao(session).comPlano(plano).disputadosEntre(inicio, fim));
+	}
+
+	public CompletableFuture<Long> total() {
+		return executor.executa(session -> new LeilaoDao(session).total());
+	}
+
+	public CompletableFuture<Void> atualiza(Leilao leilao) {
+		return executor.executa(session -> {
+			new LeilaoDao(session).atualiza(leilao);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> deleta(Leilao leilao) {
+		return executor.executa(session -> {
+			new LeilaoDao(session).deleta(leilao);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> deletaEncerrados() {
+		return executor.executa(session -> {
+			new LeilaoDao(session).deletaEncerrados();
+			return null;
+		});
+	}
+
+	public CompletableFuture<List<Leilao>> listaLeiloesDoUsuario(Usuario usuario) {
+		return executor.executa(session -> new LeilaoDao(session).comPlano(plano).listaLeiloesDoUsuario(usuario));
+	}
+
+	public CompletableFuture<Double> getValorInicialMedioDoUsuario(Usuario usuario) {
+		return executor.executa(session -> new LeilaoDao(session).getValorInicialMedioDoUsuario(usuario));
+	}
+}
@@ -0,0 +1,108 @@
+package br.com.caelum.pm73.dao;
+
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.Query;
+import org.hibernate.StatelessSession;
+
+import br.com.caelum.pm73.dominio.Leilao;
+import br.com.caelum.pm73.dominio.Usuario;
+
+public class LeilaoDaoSemEstado {
+
+	static final String SELECAO = "from Leilao l left join fetch l.dono where ";
+
+	private static final Medidor MEDE_NOVOS = Metricas.medidor("LeilaoDaoSemEstado.novos");
+	private static final Medidor MEDE_ANTIGOS = Metricas.medidor("LeilaoDaoSemEstado.antigos");
+	private static final Medidor MEDE_POR_PERIODO = Metricas.medidor("LeilaoDaoSemEstado.porPeriodo");
+	private static final Medidor MEDE_DISPUTADOS_ENTRE = Metricas.medidor("LeilaoDaoSemEstado.disputadosEntre");
+	private static final Medidor MEDE_MAIS_DISPUTADOS = Metricas.medidor("LeilaoDaoSemEstado.maisDisputados");
+	private static final Medidor MEDE_COM_MAIORES_LANCES = Metricas.medidor("LeilaoDaoSemEstado.comMaioresLances");
+	private static final Medidor MEDE_LISTA_LEILOES_DO_USUARIO = Metricas.medidor("LeilaoDaoSemEstado.listaLeiloesDoUsuario");
+	private static final Medidor MEDE_TOTAL = Metricas.medidor("LeilaoDaoSemEstado.total");
+
+	private final StatelessSession session;
+
+	public LeilaoDaoSemEstado(StatelessSession session) {
+		this.session = session;
+	}
+	
+	@SuppressWarnings("unchecked")
+	public List<Leilao> novos() {
+		return MEDE_NOVOS.mede(() -> consulta("novos").list());
+	}
+	
+	@SuppressWarnings("unchecked")
+	public List<Leilao> antigos() {
+		return MEDE_ANTIGOS.mede(() -> consulta("antigos")
+				.setParameter("data", LeilaoDao.seteDiasAtras(), LeilaoDao.INSTANTE)
+				.list());
+	}
+	
+	@SuppressWarnings("unchecked")
+	public List<Leilao> porPeriodo(Calendar inicio, Calendar fim) {
+		return MEDE_POR_PERIODO.mede(() -> consulta("porPeriodo")
+				.setParameter("inicio", inicio)
+				.setParameter("fim", fim)
+				.list());
+	}
+	
+	@SuppressWarnings("unchecked")
+	public List<Leilao> disputadosEntre(double inicio, double fim) {
+		return MEDE_DISPUTADOS_ENTRE.mede(() -> consulta("disputadosEntre")
+				.setParameter("inicio", inicio)
+				.setParameter("fim", fim)
+				.list());
+	}
+	
+	@SuppressWarnings("unchecked")
+	public List<Leilao> maisDisputados(int quantidade) {
+		return MEDE_MAIS_DISPUTADOS.mede(() -> consulta("maisDisputados")
+				.setMaxResults(quantidade)
+				.list());
+	}
+	
+	@SuppressWarnings("unchecked")
+	public List<Leilao> comMaioresLances(int quantidade) {
+		return MEDE_COM_MAIORES_LANCES.mede(() -> consulta("comMaioresLances")
+				.setMaxResults(quantidade)
+				.list());
+	}
+	
+	@SuppressWarnings("unchecked")
+	public List<Leilao> listaLeiloesDoUsuario(Usuario usuario) {
+		return MEDE_LISTA_LEILOES_DO_USUARIO.mede(() -> consulta("doUsuario")
+				.setParameter("usuario", usuario)
+				.list());
+	}
+	
+	public Long total() {
+		return MEDE_TOTAL.mede(() -> (Long) session.getNamedQuery("LeilaoDao.total").uniqueResult());
+	}
+	
+	static Map<String, String> consultasNomeadas() {
+		Map<String, String> filtros = new LinkedHashMap<String, String>();
+		filtros.put("novos", LeilaoDao.NOVOS);
+		filtros.put("antigos", LeilaoDao.ANTIGOS);
+		filtros.put("porPeriodo", LeilaoDao.POR_PERIODO);
+		filtros.put("disputadosEntre", LeilaoDao.DISPUTADOS_ENTRE);
+		filtros.put("doUsuario", LeilaoDao.DO_USUARIO);
+		
+		Map<String, String> consultas = new LinkedHashMap<String, String>();
+		for(Map.Entry<String, String> filtro : filtros.entrySet()) {
+			consultas.put("LeilaoDaoSemEstado." + filtro.getKey(), SELECAO + filtro.getValue());
+		}
+		// mesmas consultas do LeilaoDao, que ja trazem o dono no join
+		consultas.put("LeilaoDaoSemEstado.maisDisputados", LeilaoDao.MAIS_DISPUTADOS);
+		consultas.put("LeilaoDaoSemEstado.comMaioresLances", LeilaoDao.COM_MAIORES_LANCES);
+		return consultas;
+	}
+	
+	private Query consulta(String nome) {
+		// sem contexto de persistencia o dono nao pode ser carregado depois, entao ja vem no join
+		return session.getNamedQuery("LeilaoDaoSemEstado." + nome);
+	}
+}
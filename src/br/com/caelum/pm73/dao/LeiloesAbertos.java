@@ -0,0 +1,213 @@
+package br.com.caelum.pm73.dao;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+public class LeiloesAbertos {
+
+	static final String ABERTOS = "select l.id, l.nome, l.valorInicial, l.dono.id, l.dataAbertura, l.usado " +
+			"from Leilao l where l.encerrado = false";
+
+	private static final Comparator<LeilaoAberto> POR_ABERTURA = Comparator
+			.comparingLong(LeilaoAberto::getDataAberturaEmMilis)
+			.thenComparingInt(LeilaoAberto::getId);
+
+	private static final Map<SessionFactory, LeiloesAbertos> porFabrica = new ConcurrentHashMap<SessionFactory, LeiloesAbertos>();
+
+	private final Map<Integer, LeilaoAberto> porId = new ConcurrentHashMap<Integer, LeilaoAberto>();
+	private final NavigableSet<LeilaoAberto> porAbertura = new ConcurrentSkipListSet<LeilaoAberto>(POR_ABERTURA);
+	private final NavigableSet<LeilaoAberto> novos = new ConcurrentSkipListSet<LeilaoAberto>(POR_ABERTURA);
+	private final AtomicInteger total = new AtomicInteger();
+	private final AtomicInteger totalDeNovos = new AtomicInteger();
+	private volatile boolean carregado;
+
+	LeiloesAbertos() {
+	}
+
+	// cada SessionFactory aponta para um banco, entao cada uma tem a sua visao
+	static LeiloesAbertos de(SessionFactory fabrica) {
+		return porFabrica.computeIfAbsent(fabrica, f -> new LeiloesAbertos());
+	}
+
+	static void descarta(SessionFactory fabrica) {
+		porFabrica.remove(fabrica);
+	}
+
+	public boolean isCarregado() {
+		return carregado;
+	}
+
+	public int total() {
+		return total.get();
+	}
+
+	public int totalDeNovos() {
+		return totalDeNovos.get();
+	}
+
+	public LeilaoAberto porId(int id) {
+		return porId.get(id);
+	}
+
+	public List<LeilaoAberto> novos() {
+		return new ArrayList<LeilaoAberto>(novos);
+	}
+
+	public List<LeilaoAberto> porPeriodo(Instant inicio, Instant fim) {
+		LeilaoAberto de = new LeilaoAberto(Integer.MIN_VALUE, null, 0, null, inicio.toEpochMilli(), false);
+		LeilaoAberto ate = new LeilaoAberto(Integer.MAX_VALUE, null, 0, null, fim.toEpochMilli(), false);
+		return new ArrayList<LeilaoAberto>(porAbertura.subSet(de, true, ate, true));
+	}
+
+	public synchronized void reconstroi(StatelessSession session) {
+		limpa();
+		ScrollableResults linhas = session.getNamedQuery("LeiloesAbertos.abertos")
+				.setFetchSize(LeilaoDao.TAMANHO_DO_LOTE)
+				.scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			while(linhas.next()) {
+				adiciona(aPartirDe(linhas.get()));
+			}
+		} finally {
+			linhas.close();
+		}
+		carregado = true;
+	}
+
+	public ConsistenciaDosLeiloesAbertos verifica(StatelessSession session) {
+		Map<Integer, LeilaoAberto> noBanco = new HashMap<Integer, LeilaoAberto>();
+		ScrollableResults linhas = session.getNamedQuery("LeiloesAbertos.abertos")
+				.setFetchSize(LeilaoDao.TAMANHO_DO_LOTE)
+				.scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			while(linhas.next()) {
+				LeilaoAberto leilao = aPartirDe(linhas.get());
+				noBanco.put(leilao.getId(), leilao);
+			}
+		} finally {
+			linhas.close();
+		}
+
+		List<Integer> ausentes = new ArrayList<Integer>();
+		List<Integer> desatualizados = new ArrayList<Integer>();
+		for(LeilaoAberto esperado : noBanco.values()) {
+			LeilaoAberto naVisao = porId.get(esperado.getId());
+			if(naVisao == null) {
+				ausentes.add(esperado.getId());
+			} else if(POR_ABERTURA.compare(naVisao, esperado) != 0 || naVisao.isUsado() != esperado.isUsado()) {
+				desatualizados.add(esperado.getId());
+			}
+		}
+
+		List<Integer> sobrando = new ArrayList<Integer>();
+		for(Integer id : porId.keySet()) {
+			if(!noBanco.containsKey(id)) {
+				sobrando.add(id);
+			}
+		}
+		return new ConsistenciaDosLeiloesAbertos(ausentes, sobrando, desatualizados);
+	}
+
+	synchronized void registra(LeilaoAberto leilao) {
+		if(!carregado) {
+			return;
+		}
+		remove(leilao.getId());
+		adiciona(leilao);
+	}
+
+	synchronized void remove(int id) {
+		LeilaoAberto anterior = porId.remove(id);
+		if(anterior == null) {
+			return;
+		}
+		porAbertura.remove(anterior);
+		total.decrementAndGet();
+		if(novos.remove(anterior)) {
+			totalDeNovos.decrementAndGet();
+		}
+	}
+
+	void removeAoConfirmar(Session session, Collection<Integer> ids) {
+		aoConfirmar(session, leiloesAbertos -> leiloesAbertos.removeTodos(ids));
+	}
+
+	void aoConfirmar(Session session, Consumer<LeiloesAbertos> alteracao) {
+		if(!session.getTransaction().isActive()) {
+			alteracao.accept(this);
+			return;
+		}
+		// so muda a visao se a transacao confirmar; um rollback deixa tudo como estava
+		session.getTransaction().registerSynchronization(new Synchronization() {
+			public void beforeCompletion() {
+			}
+
+			public void afterCompletion(int status) {
+				if(status == Status.STATUS_COMMITTED) {
+					alteracao.accept(LeiloesAbertos.this);
+				}
+			}
+		});
+	}
+
+	synchronized void invalida() {
+		carregado = false;
+		limpa();
+	}
+
+	synchronized void carrega(Collection<LeilaoAberto> leiloes) {
+		limpa();
+		for(LeilaoAberto leilao : leiloes) {
+			adiciona(leilao);
+		}
+		carregado = true;
+	}
+
+	private synchronized void removeTodos(Collection<Integer> ids) {
+		for(Integer id : ids) {
+			remove(id);
+		}
+	}
+
+	private void adiciona(LeilaoAberto leilao) {
+		porId.put(leilao.getId(), leilao);
+		porAbertura.add(leilao);
+		total.incrementAndGet();
+		if(!leilao.isUsado()) {
+			novos.add(leilao);
+			totalDeNovos.incrementAndGet();
+		}
+	}
+
+	private void limpa() {
+		porId.clear();
+		porAbertura.clear();
+		novos.clear();
+		total.set(0);
+		totalDeNovos.set(0);
+	}
+
+	private LeilaoAberto aPartirDe(Object[] linha) {
+		return new LeilaoAberto((Integer) linha[0], (String) linha[1], ((Number) linha[2]).doubleValue(),
+				(Integer) linha[3], ((Number) linha[4]).longValue(), (Boolean) linha[5]);
+	}
+}
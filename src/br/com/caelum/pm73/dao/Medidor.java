@@ -0,0 +1,53 @@
+package br.com.caelum.pm73.dao;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+public class Medidor {
+
+	private final String metodo;
+
+	Medidor(String metodo) {
+		this.metodo = metodo;
+	}
+
+	public <T> T mede(Supplier<T> operacao) {
+		int comandosAntes = JdbcInstrumentado.comandosDaThread();
+		long inicio = System.nanoTime();
+		T resultado = null;
+		try {
+			resultado = operacao.get();
+			return resultado;
+		} finally {
+			registra(inicio, comandosAntes, linhasDe(resultado));
+		}
+	}
+
+	public void executa(Runnable operacao) {
+		int comandosAntes = JdbcInstrumentado.comandosDaThread();
+		long inicio = System.nanoTime();
+		try {
+			operacao.run();
+		} finally {
+			registra(inicio, comandosAntes, 0);
+		}
+	}
+
+	private void registra(long inicio, int comandosAntes, int linhas) {
+		Metricas.getRegistro().registraChamada(metodo, System.nanoTime() - inicio, linhas,
+				JdbcInstrumentado.comandosDaThread() - comandosAntes);
+	}
+
+	private int linhasDe(Object resultado) {
+		if(resultado == null) {
+			return 0;
+		}
+		if(resultado instanceof Collection) {
+			return ((Collection<?>) resultado).size();
+		}
+		if(resultado instanceof Pagina) {
+			return ((Pagina<?>) resultado).getItens().size();
+		}
+		return 1;
+	}
+}
@@ -0,0 +1,58 @@
+package br.com.caelum.pm73.dao;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class MetricaDeMetodo {
+
+	private final String metodo;
+	private final LongAdder chamadas = new LongAdder();
+	private final LongAdder nanos = new LongAdder();
+	private final LongAdder linhas = new LongAdder();
+	private final LongAdder comandos = new LongAdder();
+	private final HistogramaDeLatencia latencias = new HistogramaDeLatencia();
+
+	public MetricaDeMetodo(String metodo) {
+		this.metodo = metodo;
+	}
+
+	void registra(long nanos, int linhas, int comandos) {
+		this.chamadas.increment();
+		this.nanos.add(nanos);
+		this.linhas.add(linhas);
+		this.comandos.add(comandos);
+		this.latencias.registra(nanos);
+	}
+
+	public String getMetodo() {
+		return metodo;
+	}
+
+	public long getChamadas() {
+		return chamadas.sum();
+	}
+
+	public long getLinhas() {
+		return linhas.sum();
+	}
+
+	public long getComandos() {
+		return comandos.sum();
+	}
+
+	public double getLatenciaMediaEmMicros() {
+		long quantidade = chamadas.sum();
+		return quantidade == 0 ? 0 : nanos.sum() / 1000.0 / quantidade;
+	}
+
+	public HistogramaDeLatencia getLatencias() {
+		return latencias;
+	}
+
+	@Override
+	public String toString() {
+		return metodo + ": chamadas=" + getChamadas()
+				+ ", media=" + getLatenciaMediaEmMicros() + "us"
+				+ ", p99<=" + latencias.percentilEmNanos(0.99) / 1000 + "us"
+				+ ", linhas=" + getLinhas() + ", comandos=" + getComandos();
+	}
+}
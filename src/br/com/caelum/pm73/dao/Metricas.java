@@ -0,0 +1,21 @@
+package br.com.caelum.pm73.dao;
+
+public class Metricas {
+
+	private static volatile RegistroDeMetricas registro = new MetricasEmMemoria();
+
+	private Metricas() {
+	}
+
+	public static RegistroDeMetricas getRegistro() {
+		return registro;
+	}
+
+	public static void usa(RegistroDeMetricas novoRegistro) {
+		registro = novoRegistro;
+	}
+
+	public static Medidor medidor(String metodo) {
+		return new Medidor(metodo);
+	}
+}
@@ -0,0 +1,44 @@
+package br.com.caelum.pm73.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+public class MetricasEmMemoria implements RegistroDeMetricas {
+
+	private static final Logger log = Logger.getLogger("br.com.caelum.pm73.sql");
+
+	private final ConcurrentMap<String, MetricaDeMetodo> metodos = new ConcurrentHashMap<String, MetricaDeMetodo>();
+	private final HistogramaDeLatencia esperaPorConexao = new HistogramaDeLatencia();
+
+	public void registraChamada(String metodo, long nanos, int linhas, int comandos) {
+		MetricaDeMetodo metrica = metodos.get(metodo);
+		if(metrica == null) {
+			metodos.putIfAbsent(metodo, new MetricaDeMetodo(metodo));
+			metrica = metodos.get(metodo);
+		}
+		metrica.registra(nanos, linhas, comandos);
+	}
+
+	public void registraEsperaPorConexao(long nanos) {
+		esperaPorConexao.registra(nanos);
+	}
+
+	public void registraComandoLento(String sql, long nanos) {
+		log.warning("SQL lento (" + nanos / 1000000 + "ms): " + sql);
+	}
+
+	public MetricaDeMetodo getMetrica(String metodo) {
+		return metodos.get(metodo);
+	}
+
+	public List<MetricaDeMetodo> getMetricas() {
+		return new ArrayList<MetricaDeMetodo>(metodos.values());
+	}
+
+	public HistogramaDeLatencia getEsperaPorConexao() {
+		return esperaPorConexao;
+	}
+}
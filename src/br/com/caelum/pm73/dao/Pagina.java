@@ -0,0 +1,26 @@
+package br.com.caelum.pm73.dao;
+
+import java.util.List;
+
+public class Pagina<T> {
+
+	private final List<T> itens;
+	private final Posicao proxima;
+
+	public Pagina(List<T> itens, Posicao proxima) {
+		this.itens = itens;
+		this.proxima = proxima;
+	}
+
+	public List<T> getItens() {
+		return itens;
+	}
+
+	public Posicao getProxima() {
+		return proxima;
+	}
+
+	public boolean temProxima() {
+		return proxima != null;
+	}
+}
@@ -0,0 +1,63 @@
+package br.com.caelum.pm73.dao;
+
+import org.hibernate.Hibernate;
+
+import br.com.caelum.pm73.dominio.Lance;
+import br.com.caelum.pm73.dominio.Leilao;
+
+public enum PlanoDeBusca {
+
+	RESUMO(null, "from Leilao l") {
+		@Override
+		public void inicializa(Leilao leilao) {
+		}
+	},
+
+	COM_DONO("com-dono", "from Leilao l left join fetch l.dono") {
+		@Override
+		public void inicializa(Leilao leilao) {
+			Hibernate.initialize(leilao.getDono());
+		}
+	},
+
+	COM_LANCES("com-lances", "select distinct l from Leilao l " +
+			"left join fetch l.dono " +
+			"left join fetch l.lances") {
+		@Override
+		public void inicializa(Leilao leilao) {
+			Hibernate.initialize(leilao.getDono());
+			Hibernate.initialize(leilao.getLances());
+		}
+	},
+
+	COM_LANCES_E_USUARIOS("com-lances-e-usuarios", "select distinct l from Leilao l " +
+			"left join fetch l.dono " +
+			"left join fetch l.lances lanceCarregado " +
+			"left join fetch lanceCarregado.usuario") {
+		@Override
+		public void inicializa(Leilao leilao) {
+			COM_LANCES.inicializa(leilao);
+			for(Lance lance : leilao.getLances()) {
+				Hibernate.initialize(lance.getUsuario());
+			}
+		}
+	};
+
+	private final String perfil;
+	private final String selecao;
+
+	private PlanoDeBusca(String perfil, String selecao) {
+		this.perfil = perfil;
+		this.selecao = selecao;
+	}
+
+	public String getPerfil() {
+		return perfil;
+	}
+
+	public String getSelecao() {
+		return selecao;
+	}
+
+	public abstract void inicializa(Leilao leilao);
+}
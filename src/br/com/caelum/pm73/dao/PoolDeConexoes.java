@@ -0,0 +1,253 @@
+package br.com.caelum.pm73.dao;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hibernate.HibernateException;
+import org.hibernate.cfg.Environment;
+import org.hibernate.connection.ConnectionProvider;
+
+public class PoolDeConexoes implements ConnectionProvider {
+
+	public static final String MINIMO = "pm73.pool.minimo";
+	public static final String MAXIMO = "pm73.pool.maximo";
+	public static final String ESPERA_MAXIMA = "pm73.pool.espera_ms";
+	public static final String TEMPO_OCIOSO = "pm73.pool.ocioso_ms";
+	public static final String VALIDA = "pm73.pool.valida";
+	public static final String AQUECIDAS = "pm73.pool.aquecidas";
+	public static final String COMANDOS = "pm73.pool.comandos";
+
+	private final BlockingDeque<ConexaoOciosa> ociosas = new LinkedBlockingDeque<ConexaoOciosa>();
+	private final AtomicInteger abertas = new AtomicInteger();
+	private final AtomicInteger emUso = new AtomicInteger();
+	private final LongAdder emprestimos = new LongAdder();
+	private final LongAdder esgotamentos = new LongAdder();
+	private final LongAdder descartadas = new LongAdder();
+	private final LongAdder nanosDeEspera = new LongAdder();
+	private final LongAdder comandosReaproveitados = new LongAdder();
+	private final LongAdder comandosPreparados = new LongAdder();
+
+	private String url;
+	private Properties propriedades;
+	private int minimo;
+	private int maximo;
+	private int aquecidas;
+	private long esperaMaxima;
+	private long tempoOcioso;
+	private boolean valida;
+	private boolean autocommit;
+	private Integer isolamento;
+	private Semaphore permissoes;
+	private ScheduledExecutorService limpeza;
+	private CacheDeComandos cacheDeComandos;
+
+	public void configure(Properties props) throws HibernateException {
+		String driver = props.getProperty(Environment.DRIVER);
+		if(driver != null) {
+			try {
+				Class.forName(driver);
+			} catch (ClassNotFoundException e) {
+				throw new HibernateException("Driver JDBC nao encontrado: " + driver, e);
+			}
+		}
+
+		url = props.getProperty(Environment.URL);
+		if(url == null) {
+			throw new HibernateException("URL JDBC nao informada em " + Environment.URL);
+		}
+
+		propriedades = new Properties();
+		if(props.getProperty(Environment.USER) != null) {
+			propriedades.setProperty("user", props.getProperty(Environment.USER));
+		}
+		if(props.getProperty(Environment.PASS) != null) {
+			propriedades.setProperty("password", props.getProperty(Environment.PASS));
+		}
+
+		minimo = Integer.parseInt(props.getProperty(MINIMO, "2"));
+		maximo = Integer.parseInt(props.getProperty(MAXIMO, "10"));
+		aquecidas = Integer.parseInt(props.getProperty(AQUECIDAS, String.valueOf(maximo)));
+		esperaMaxima = Long.parseLong(props.getProperty(ESPERA_MAXIMA, "5000"));
+		tempoOcioso = Long.parseLong(props.getProperty(TEMPO_OCIOSO, "300000"));
+		valida = Boolean.parseBoolean(props.getProperty(VALIDA, "true"));
+		autocommit = Boolean.parseBoolean(props.getProperty(Environment.AUTOCOMMIT, "false"));
+		if(props.getProperty(Environment.ISOLATION) != null) {
+			isolamento = Integer.valueOf(props.getProperty(Environment.ISOLATION));
+		}
+
+		cacheDeComandos = new CacheDeComandos(Integer.parseInt(props.getProperty(COMANDOS, "64")),
+				comandosReaproveitados, comandosPreparados);
+
+		if(minimo < 0 || maximo < 1 || minimo > maximo) {
+			throw new HibernateException("Limites do pool invalidos: minimo=" + minimo + ", maximo=" + maximo);
+		}
+
+		permissoes = new Semaphore(maximo, true);
+
+		try {
+			for(int i = 0; i < minimo; i++) {
+				ociosas.offerLast(new ConexaoOciosa(abre()));
+			}
+		} catch (SQLException e) {
+			throw new HibernateException("Nao foi possivel abrir as conexoes iniciais do pool", e);
+		}
+
+		limpeza = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+			Thread thread = new Thread(tarefa, "pm73-pool-limpeza");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long intervalo = Math.max(1000, tempoOcioso / 2);
+		limpeza.scheduleWithFixedDelay(this::removeOciosas, intervalo, intervalo, TimeUnit.MILLISECONDS);
+	}
+
+	public Connection getConnection() throws SQLException {
+		long inicio = System.nanoTime();
+		try {
+			if(!permissoes.tryAcquire(esperaMaxima, TimeUnit.MILLISECONDS)) {
+				esgotamentos.increment();
+				throw new SQLException("Nenhuma conexao livre no pool apos " + esperaMaxima + "ms");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrompido aguardando conexao do pool", e);
+		}
+
+		try {
+			Connection conexao = proximaConexao();
+			emUso.incrementAndGet();
+			emprestimos.increment();
+			long espera = System.nanoTime() - inicio;
+			nanosDeEspera.add(espera);
+			Metricas.getRegistro().registraEsperaPorConexao(espera);
+			return conexao;
+		} catch (SQLException e) {
+			permissoes.release();
+			throw e;
+		} catch (RuntimeException e) {
+			permissoes.release();
+			throw e;
+		}
+	}
+
+	public void closeConnection(Connection conexao) throws SQLException {
+		emUso.decrementAndGet();
+		try {
+			if(conexao.isClosed()) {
+				abertas.decrementAndGet();
+				descartadas.increment();
+			} else {
+				ociosas.offerFirst(new ConexaoOciosa(conexao));
+			}
+		} finally {
+			permissoes.release();
+		}
+	}
+
+	public void close() throws HibernateException {
+		if(limpeza != null) {
+			limpeza.shutdownNow();
+		}
+		ConexaoOciosa ociosa;
+		while((ociosa = ociosas.pollFirst()) != null) {
+			descarta(ociosa.conexao);
+		}
+	}
+
+	public boolean supportsAggressiveRelease() {
+		return false;
+	}
+
+	// abre de uma vez as conexoes que as primeiras requisicoes abririam uma a uma
+	public int aquece() {
+		int alvo = Math.min(aquecidas, maximo);
+		int abertasAgora = 0;
+		try {
+			while(abertas.get() < alvo) {
+				ociosas.offerLast(new ConexaoOciosa(abre()));
+				abertasAgora++;
+			}
+		} catch (SQLException e) {
+			throw new HibernateException("Nao foi possivel aquecer o pool", e);
+		}
+		return abertasAgora;
+	}
+
+	public EstatisticasDoPool getEstatisticas() {
+		return new EstatisticasDoPool(abertas.get(), emUso.get(), ociosas.size(),
+				permissoes.getQueueLength(), emprestimos.sum(), esgotamentos.sum(),
+				descartadas.sum(), nanosDeEspera.sum(), comandosReaproveitados.sum(), comandosPreparados.sum());
+	}
+
+	private Connection proximaConexao() throws SQLException {
+		ConexaoOciosa ociosa;
+		while((ociosa = ociosas.pollFirst()) != null) {
+			if(!valida || ociosa.conexao.isValid(1)) {
+				return prepara(ociosa.conexao);
+			}
+			descarta(ociosa.conexao);
+		}
+		return prepara(abre());
+	}
+
+	private Connection prepara(Connection conexao) throws SQLException {
+		if(conexao.getAutoCommit() != autocommit) {
+			conexao.setAutoCommit(autocommit);
+		}
+		if(isolamento != null && conexao.getTransactionIsolation() != isolamento) {
+			conexao.setTransactionIsolation(isolamento);
+		}
+		return conexao;
+	}
+
+	private Connection abre() throws SQLException {
+		Connection conexao = JdbcInstrumentado.instrumenta(cacheDeComandos.envolve(DriverManager.getConnection(url, propriedades)));
+		abertas.incrementAndGet();
+		return conexao;
+	}
+
+	private void descarta(Connection conexao) {
+		abertas.decrementAndGet();
+		descartadas.increment();
+		try {
+			conexao.close();
+		} catch (SQLException e) {
+			// a conexao ja esta fora do pool, nao ha o que fazer
+		}
+	}
+
+	private void removeOciosas() {
+		long limite = System.currentTimeMillis() - tempoOcioso;
+		Iterator<ConexaoOciosa> maisAntigas = ociosas.descendingIterator();
+		while(maisAntigas.hasNext() && abertas.get() > minimo) {
+			ConexaoOciosa ociosa = maisAntigas.next();
+			if(ociosa.desde > limite) {
+				break;
+			}
+			if(ociosas.remove(ociosa)) {
+				descarta(ociosa.conexao);
+			}
+		}
+	}
+
+	private static class ConexaoOciosa {
+		private final Connection conexao;
+		private final long desde;
+
+		ConexaoOciosa(Connection conexao) {
+			this.conexao = conexao;
+			this.desde = System.currentTimeMillis();
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package br.com.caelum.pm73.dao;
+
+import java.time.Instant;
+
+public class Posicao {
+
+	private final Instant dataAbertura;
+	private final int id;
+
+	public Posicao(Instant dataAbertura, int id) {
+		this.dataAbertura = dataAbertura;
+		this.id = id;
+	}
+
+	public Instant getDataAbertura() {
+		return dataAbertura;
+	}
+
+	public int getId() {
+		return id;
+	}
+}
@@ -0,0 +1,45 @@
+package br.com.caelum.pm73.dao;
+
+public class ProgressoDoArquivamento {
+
+	public static final ProgressoDoArquivamento NENHUM = new ProgressoDoArquivamento(0, 0, 0, 0);
+
+	private final int lotes;
+	private final int encerrados;
+	private final int leiloesArquivados;
+	private final int lancesArquivados;
+
+	public ProgressoDoArquivamento(int lotes, int encerrados, int leiloesArquivados, int lancesArquivados) {
+		this.lotes = lotes;
+		this.encerrados = encerrados;
+		this.leiloesArquivados = leiloesArquivados;
+		this.lancesArquivados = lancesArquivados;
+	}
+
+	public ProgressoDoArquivamento mais(ProgressoDoArquivamento outro) {
+		return new ProgressoDoArquivamento(lotes + outro.lotes, encerrados + outro.encerrados,
+				leiloesArquivados + outro.leiloesArquivados, lancesArquivados + outro.lancesArquivados);
+	}
+
+	public int getLotes() {
+		return lotes;
+	}
+
+	public int getEncerrados() {
+		return encerrados;
+	}
+
+	public int getLeiloesArquivados() {
+		return leiloesArquivados;
+	}
+
+	public int getLancesArquivados() {
+		return lancesArquivados;
+	}
+
+	@Override
+	public String toString() {
+		return "lotes=" + lotes + ", encerrados=" + encerrados
+				+ ", leiloesArquivados=" + leiloesArquivados + ", lancesArquivados=" + lancesArquivados;
+	}
+}
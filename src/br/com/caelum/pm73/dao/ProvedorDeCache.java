@@ -0,0 +1,77 @@
+package br.com.caelum.pm73.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.cache.Cache;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.CacheProvider;
+import org.hibernate.cache.Timestamper;
+import org.hibernate.cache.UpdateTimestampsCache;
+import org.hibernate.cfg.Environment;
+
+@SuppressWarnings("deprecation")
+public class ProvedorDeCache implements CacheProvider {
+
+	public static final String TAMANHO = "pm73.cache.tamanho";
+	public static final String TTL = "pm73.cache.ttl_ms";
+
+	// cada SessionFactory tem o seu prefixo de regiao; "" e o da fabrica padrao
+	private static final Map<String, Map<String, CacheEmMemoria>> regioesPorPrefixo = new ConcurrentHashMap<String, Map<String, CacheEmMemoria>>();
+
+	private String prefixo = "";
+	private final Map<String, CacheEmMemoria> regioes = new ConcurrentHashMap<String, CacheEmMemoria>();
+
+	public Cache buildCache(String regiao, Properties props) throws CacheException {
+		String nome = prefixo.isEmpty() ? regiao : regiao.substring(prefixo.length() + 1);
+
+		// descartar timestamps faria o cache de consultas devolver resultados antigos
+		if(UpdateTimestampsCache.REGION_NAME.equals(nome)) {
+			return registra(new CacheEmMemoria(regiao, 0, 0));
+		}
+
+		int tamanho = Integer.parseInt(props.getProperty(TAMANHO + "." + nome, props.getProperty(TAMANHO, "10000")));
+		long ttl = Long.parseLong(props.getProperty(TTL + "." + nome, props.getProperty(TTL, "300000")));
+		return registra(new CacheEmMemoria(regiao, tamanho, ttl));
+	}
+
+	public long nextTimestamp() {
+		return Timestamper.next();
+	}
+
+	public void start(Properties props) throws CacheException {
+		prefixo = props.getProperty(Environment.CACHE_REGION_PREFIX, "");
+		regioesPorPrefixo.put(prefixo, regioes);
+	}
+
+	public void stop() {
+		for(CacheEmMemoria cache : regioes.values()) {
+			cache.destroy();
+		}
+		regioes.clear();
+		regioesPorPrefixo.remove(prefixo, regioes);
+	}
+
+	public boolean isMinimalPutsEnabledByDefault() {
+		return false;
+	}
+
+	public static List<EstatisticasDoCache> getEstatisticas(String prefixo) {
+		List<EstatisticasDoCache> estatisticas = new ArrayList<EstatisticasDoCache>();
+		Map<String, CacheEmMemoria> doPrefixo = regioesPorPrefixo.get(prefixo == null ? "" : prefixo);
+		if(doPrefixo != null) {
+			for(CacheEmMemoria cache : doPrefixo.values()) {
+				estatisticas.add(cache.getEstatisticas());
+			}
+		}
+		return estatisticas;
+	}
+
+	private CacheEmMemoria registra(CacheEmMemoria cache) {
+		regioes.put(cache.getRegionName(), cache);
+		return cache;
+	}
+}
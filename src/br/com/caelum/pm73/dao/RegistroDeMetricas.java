@@ -0,0 +1,10 @@
+package br.com.caelum.pm73.dao;
+
+public interface RegistroDeMetricas {
+
+	void registraChamada(String metodo, long nanos, int linhas, int comandos);
+
+	void registraEsperaPorConexao(long nanos);
+
+	void registraComandoLento(String sql, long nanos);
+}
@@ -0,0 +1,46 @@
+package br.com.caelum.pm73.dao;
+
+public class ResumoDaCarga {
+
+	private final int usuarios;
+	private final int leiloes;
+	private final int lances;
+	private final long nanos;
+
+	public ResumoDaCarga(int usuarios, int leiloes, int lances, long nanos) {
+		this.usuarios = usuarios;
+		this.leiloes = leiloes;
+		this.lances = lances;
+		this.nanos = nanos;
+	}
+
+	public int getUsuarios() {
+		return usuarios;
+	}
+
+	public int getLeiloes() {
+		return leiloes;
+	}
+
+	public int getLances() {
+		return lances;
+	}
+
+	public long getLinhas() {
+		return (long) usuarios + leiloes + lances;
+	}
+
+	public double getSegundos() {
+		return nanos / 1_000_000_000.0;
+	}
+
+	public double getLinhasPorSegundo() {
+		return nanos == 0 ? 0 : getLinhas() / getSegundos();
+	}
+
+	@Override
+	public String toString() {
+		return "usuarios=" + usuarios + ", leiloes=" + leiloes + ", lances=" + lances
+				+ ", tempo=" + getSegundos() + "s, linhasPorSegundo=" + (long) getLinhasPorSegundo();
+	}
+}
@@ -0,0 +1,48 @@
+package br.com.caelum.pm73.dao;
+
+import org.hibernate.event.EventSource;
+import org.hibernate.event.PostDeleteEvent;
+import org.hibernate.event.PostDeleteEventListener;
+import org.hibernate.event.PostInsertEvent;
+import org.hibernate.event.PostInsertEventListener;
+import org.hibernate.event.PostUpdateEvent;
+import org.hibernate.event.PostUpdateEventListener;
+
+import br.com.caelum.pm73.dominio.Leilao;
+
+class SincronizaLeiloesAbertos implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+	private static final long serialVersionUID = 1L;
+
+	public void onPostInsert(PostInsertEvent event) {
+		if(event.getEntity() instanceof Leilao) {
+			registra(event.getSession(), (Leilao) event.getEntity());
+		}
+	}
+
+	public void onPostUpdate(PostUpdateEvent event) {
+		if(event.getEntity() instanceof Leilao) {
+			registra(event.getSession(), (Leilao) event.getEntity());
+		}
+	}
+
+	public void onPostDelete(PostDeleteEvent event) {
+		if(event.getEntity() instanceof Leilao) {
+			int id = ((Leilao) event.getEntity()).getId();
+			LeiloesAbertos leiloesAbertos = LeiloesAbertos.de(event.getSession().getFactory());
+			leiloesAbertos.aoConfirmar(event.getSession(), abertos -> abertos.remove(id));
+		}
+	}
+
+	// roda no flush, entao guarda o estado de agora e so aplica na visao se a transacao confirmar
+	private void registra(EventSource session, Leilao leilao) {
+		LeiloesAbertos leiloesAbertos = LeiloesAbertos.de(session.getFactory());
+		if(leilao.isEncerrado()) {
+			int id = leilao.getId();
+			leiloesAbertos.aoConfirmar(session, abertos -> abertos.remove(id));
+		} else {
+			LeilaoAberto aberto = LeilaoAberto.de(leilao);
+			leiloesAbertos.aoConfirmar(session, abertos -> abertos.registra(aberto));
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package br.com.caelum.pm73.dao;
+
+public class TemposDeInicializacao {
+
+	private final long nanosDeMetadados;
+	private final long nanosDaFabrica;
+	private final long nanosDoEsquema;
+	private final long nanosDoPool;
+	private final long nanosDasConsultas;
+	private final int consultasCompiladas;
+
+	public TemposDeInicializacao(long nanosDeMetadados, long nanosDaFabrica,
+			long nanosDoEsquema, long nanosDoPool, long nanosDasConsultas, int consultasCompiladas) {
+		this.nanosDeMetadados = nanosDeMetadados;
+		this.nanosDaFabrica = nanosDaFabrica;
+		this.nanosDoEsquema = nanosDoEsquema;
+		this.nanosDoPool = nanosDoPool;
+		this.nanosDasConsultas = nanosDasConsultas;
+		this.consultasCompiladas = consultasCompiladas;
+	}
+
+	public double getMetadadosEmMilis() {
+		return nanosDeMetadados / 1_000_000.0;
+	}
+
+	public double getFabricaEmMilis() {
+		return nanosDaFabrica / 1_000_000.0;
+	}
+
+	public double getEsquemaEmMilis() {
+		return nanosDoEsquema / 1_000_000.0;
+	}
+
+	public double getPoolEmMilis() {
+		return nanosDoPool / 1_000_000.0;
+	}
+
+	public double getConsultasEmMilis() {
+		return nanosDasConsultas / 1_000_000.0;
+	}
+
+	public int getConsultasCompiladas() {
+		return consultasCompiladas;
+	}
+
+	// o pool e as consultas aquecem em paralelo, depois que a fabrica ja atende
+	public double getAtePrimeiraSessaoEmMilis() {
+		return getMetadadosEmMilis() + getFabricaEmMilis() + getEsquemaEmMilis();
+	}
+
+	@Override
+	public String toString() {
+		return "metadados=" + getMetadadosEmMilis() + "ms, fabrica=" + getFabricaEmMilis()
+				+ "ms, esquema=" + getEsquemaEmMilis() + "ms, pool=" + getPoolEmMilis()
+				+ "ms, consultas=" + getConsultasEmMilis() + "ms (" + consultasCompiladas + " compiladas)";
+	}
+}
@@ -1,37 +1,191 @@
 package br.com.caelum.pm73.dao;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
 import org.hibernate.Session;
 
 import br.com.caelum.pm73.dominio.Usuario;
 
 public class UsuarioDao {
 
+	public static final int TAMANHO_DA_CONSULTA = 500;
+
+	static final String POR_NOME_E_EMAIL = "from Usuario u where u.nome = :nome and u.email = :email";
+	static final String POR_EMAILS = "from Usuario u where u.email in (:emails)";
+	static final String POR_IDS = "from Usuario u where u.id in (:ids)";
+
+	private static final Medidor MEDE_POR_ID = Metricas.medidor("UsuarioDao.porId");
+	private static final Medidor MEDE_POR_NOME_E_EMAIL = Metricas.medidor("UsuarioDao.porNomeEEmail");
+	private static final Medidor MEDE_RESOLVE_TODOS = Metricas.medidor("UsuarioDao.resolveTodos");
+	private static final Medidor MEDE_SALVAR = Metricas.medidor("UsuarioDao.salvar");
+	private static final Medidor MEDE_ATUALIZAR = Metricas.medidor("UsuarioDao.atualizar");
+	private static final Medidor MEDE_DELETAR = Metricas.medidor("UsuarioDao.deletar");
+
 	private final Session session;
+	private final CacheEmMemoria idsPorEmail;
 
 	public UsuarioDao(Session session) {
+		this(session, null);
+	}
+	
+	private UsuarioDao(Session session, CacheEmMemoria idsPorEmail) {
 		this.session = session;
+		this.idsPorEmail = idsPorEmail;
+	}
+	
+	public UsuarioDao comCacheDeEmails(CacheEmMemoria idsPorEmail) {
+		return new UsuarioDao(session, idsPorEmail);
 	}
 	
 	public Usuario porId(int id) {
-		return (Usuario) session.load(Usuario.class, id);
+		return MEDE_POR_ID.mede(() -> (Usuario) session.load(Usuario.class, id));
 	}
 	
 	public Usuario porNomeEEmail(String nome, String email) {
-		return (Usuario) session.createQuery("from Usuario u where u.nome = :nome and u.email = :email")
+		return MEDE_POR_NOME_E_EMAIL.mede(() -> (Usuario) session.getNamedQuery("UsuarioDao.porNomeEEmail")
+				.setReadOnly(session.isDefaultReadOnly())
 				.setParameter("nome", nome)
 				.setParameter("email", email)
-				.uniqueResult();
+				.setCacheable(true)
+				.uniqueResult());
+	}
+	
+	// o email e unico no banco, entao e so ele que identifica o usuario: o nome do procurado vale apenas para os criados
+	@SuppressWarnings("unchecked")
+	public List<Usuario> resolveTodos(List<Usuario> procurados) {
+		return MEDE_RESOLVE_TODOS.mede(() -> {
+			Map<String, Usuario> porEmail = new HashMap<String, Usuario>();
+			Map<String, Integer> guardados = new LinkedHashMap<String, Integer>();
+			Set<String> aConsultar = new LinkedHashSet<String>();
+			for(Usuario procurado : procurados) {
+				Integer id = idsPorEmail == null ? null : (Integer) idsPorEmail.get(procurado.getEmail());
+				if(id != null) {
+					guardados.put(procurado.getEmail(), id);
+				} else {
+					aConsultar.add(procurado.getEmail());
+				}
+			}
+			
+			// os ids guardados vem numa consulta por lote; o que nao voltar, ou voltar
+			// com outro email, mudou por fora e sai do cache
+			List<Integer> ids = new ArrayList<Integer>(new LinkedHashSet<Integer>(guardados.values()));
+			Map<Integer, Usuario> porId = new HashMap<Integer, Usuario>();
+			for(int inicio = 0; inicio < ids.size(); inicio += TAMANHO_DA_CONSULTA) {
+				List<Integer> lote = ids.subList(inicio, Math.min(inicio + TAMANHO_DA_CONSULTA, ids.size()));
+				List<Usuario> existentes = session.getNamedQuery("UsuarioDao.porIds")
+						.setReadOnly(session.isDefaultReadOnly())
+						.setParameterList("ids", lote)
+						.list();
+				for(Usuario existente : existentes) {
+					porId.put(existente.getId(), existente);
+				}
+			}
+			for(Map.Entry<String, Integer> guardado : guardados.entrySet()) {
+				Usuario existente = porId.get(guardado.getValue());
+				if(existente != null && existente.getEmail().equals(guardado.getKey())) {
+					porEmail.put(guardado.getKey(), existente);
+				} else {
+					idsPorEmail.remove(guardado.getKey());
+					aConsultar.add(guardado.getKey());
+				}
+			}
+			
+			List<String> emails = new ArrayList<String>(aConsultar);
+			for(int inicio = 0; inicio < emails.size(); inicio += TAMANHO_DA_CONSULTA) {
+				List<String> lote = emails.subList(inicio, Math.min(inicio + TAMANHO_DA_CONSULTA, emails.size()));
+				List<Usuario> existentes = session.getNamedQuery("UsuarioDao.porEmails")
+						.setReadOnly(session.isDefaultReadOnly())
+						.setParameterList("emails", lote)
+						.list();
+				for(Usuario existente : existentes) {
+					porEmail.put(existente.getEmail(), existente);
+					if(idsPorEmail != null) {
+						idsPorEmail.put(existente.getEmail(), existente.getId());
+					}
+				}
+			}
+			
+			List<Usuario> criados = new ArrayList<Usuario>();
+			List<Usuario> resolvidos = new ArrayList<Usuario>(procurados.size());
+			for(Usuario procurado : procurados) {
+				Usuario usuario = porEmail.get(procurado.getEmail());
+				if(usuario == null) {
+					session.save(procurado);
+					porEmail.put(procurado.getEmail(), procurado);
+					criados.add(procurado);
+					usuario = procurado;
+				}
+				resolvidos.add(usuario);
+			}
+			
+			if(idsPorEmail != null && !criados.isEmpty()) {
+				aoConfirmar(() -> {
+					for(Usuario criado : criados) {
+						idsPorEmail.put(criado.getEmail(), criado.getId());
+					}
+				});
+			}
+			return resolvidos;
+		});
 	}
 	
 	public void salvar(Usuario usuario) {
-		session.save(usuario);
+		MEDE_SALVAR.executa(() -> session.save(usuario));
 	}
 	
 	public void atualizar(Usuario usuario) {
-		session.merge(usuario);
+		MEDE_ATUALIZAR.executa(() -> {
+			session.merge(usuario);
+			esqueceEmails();
+		});
 	}
 	
 	public void deletar(Usuario usuario) {
-		session.delete(usuario);
+		MEDE_DELETAR.executa(() -> {
+			session.delete(usuario);
+			esqueceEmails();
+		});
+	}
+	
+	static Map<String, String> consultasNomeadas() {
+		Map<String, String> consultas = new LinkedHashMap<String, String>();
+		consultas.put("UsuarioDao.porNomeEEmail", POR_NOME_E_EMAIL);
+		consultas.put("UsuarioDao.porEmails", POR_EMAILS);
+		consultas.put("UsuarioDao.porIds", POR_IDS);
+		return consultas;
+	}
+	
+	private void esqueceEmails() {
+		// o email pode ter mudado, e o cache nao sabe qual era o antigo
+		if(idsPorEmail != null) {
+			idsPorEmail.clear();
+		}
+	}
+	
+	private void aoConfirmar(Runnable acao) {
+		// ids de usuarios criados so valem depois do commit
+		if(!session.getTransaction().isActive()) {
+			acao.run();
+			return;
+		}
+		session.getTransaction().registerSynchronization(new Synchronization() {
+			public void beforeCompletion() {
+			}
+
+			public void afterCompletion(int status) {
+				if(status == Status.STATUS_COMMITTED) {
+					acao.run();
+				}
+			}
+		});
 	}
 }
@@ -0,0 +1,49 @@
+package br.com.caelum.pm73.dao;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.hibernate.Hibernate;
+
+import br.com.caelum.pm73.dominio.Usuario;
+
+public class UsuarioDaoAssincrono {
+
+	private final ExecutorDeSessoes executor;
+
+	public UsuarioDaoAssincrono(ExecutorDeSessoes executor) {
+		this.executor = executor;
+	}
+
+	public CompletableFuture<Usuario> porId(int id) {
+		return executor.executa(session -> {
+			Usuario usuario = new UsuarioDao(session).porId(id);
+			Hibernate.initialize(usuario);
+			return usuario;
+		});
+	}
+
+	public CompletableFuture<Usuario> porNomeEEmail(String nome, String email) {
+		return executor.executa(session -> new UsuarioDao(session).porNomeEEmail(nome, email));
+	}
+
+	public CompletableFuture<Void> salvar(Usuario usuario) {
+		return executor.executa(session -> {
+			new UsuarioDao(session).salvar(usuario);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> atualizar(Usuario usuario) {
+		return executor.executa(session -> {
+			new UsuarioDao(session).atualizar(usuario);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> deletar(Usuario usuario) {
+		return executor.executa(session -> {
+			new UsuarioDao(session).deletar(usuario);
+			return null;
+		});
+	}
+}
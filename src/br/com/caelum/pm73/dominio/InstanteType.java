@@ -0,0 +1,106 @@
+package br.com.caelum.pm73.dominio;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Objects;
+
+import org.hibernate.HibernateException;
+import org.hibernate.usertype.UserType;
+
+@SuppressWarnings("deprecation")
+public class InstanteType implements UserType {
+
+	public static final String NOME = "br.com.caelum.pm73.dominio.InstanteType";
+
+	private static final int[] TIPOS = { Types.TIMESTAMP };
+
+	public int[] sqlTypes() {
+		return TIPOS;
+	}
+
+	@SuppressWarnings("rawtypes")
+	public Class returnedClass() {
+		return Long.class;
+	}
+
+	public boolean equals(Object x, Object y) throws HibernateException {
+		return Objects.equals(x, y);
+	}
+
+	public int hashCode(Object x) throws HibernateException {
+		return Objects.hashCode(x);
+	}
+
+	public Object nullSafeGet(ResultSet rs, String[] names, Object owner) throws HibernateException, SQLException {
+		Timestamp instante = rs.getTimestamp(names[0]);
+		return instante == null ? null : instante.getTime();
+	}
+
+	public void nullSafeSet(PreparedStatement st, Object value, int index) throws HibernateException, SQLException {
+		// so o null representa a ausencia de data; o instante 0 e uma data como outra qualquer
+		if(value == null) {
+			st.setNull(index, Types.TIMESTAMP);
+		} else {
+			st.setTimestamp(index, new Timestamp(emMilis(value)));
+		}
+	}
+
+	public Object deepCopy(Object value) throws HibernateException {
+		return value;
+	}
+
+	public boolean isMutable() {
+		return false;
+	}
+
+	public Serializable disassemble(Object value) throws HibernateException {
+		return (Serializable) value;
+	}
+
+	public Object assemble(Serializable cached, Object owner) throws HibernateException {
+		return cached;
+	}
+
+	public Object replace(Object original, Object target, Object owner) throws HibernateException {
+		return original;
+	}
+
+	static long emMilis(Object valor) {
+		if(valor == null) {
+			throw new IllegalArgumentException("Data nula");
+		}
+		if(valor instanceof Number) {
+			return ((Number) valor).longValue();
+		}
+		if(valor instanceof Calendar) {
+			return ((Calendar) valor).getTimeInMillis();
+		}
+		if(valor instanceof Date) {
+			return ((Date) valor).getTime();
+		}
+		if(valor instanceof Instant) {
+			return ((Instant) valor).toEpochMilli();
+		}
+		throw new HibernateException("Tipo de data nao suportado: " + valor.getClass().getName());
+	}
+
+	static Calendar calendarDe(Long milis) {
+		if(milis == null) {
+			return null;
+		}
+		Calendar data = Calendar.getInstance();
+		data.setTimeInMillis(milis);
+		return data;
+	}
+
+	static Instant instanteDe(Long milis) {
+		return milis == null ? null : Instant.ofEpochMilli(milis);
+	}
+}
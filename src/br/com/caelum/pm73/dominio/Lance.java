@@ -1,26 +1,57 @@
 package br.com.caelum.pm73.dominio;
 
+import java.time.Instant;
 import java.util.Calendar;
 
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Index;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.Table;
+import org.hibernate.annotations.Type;
 
 @Entity
+@Cache(usage=CacheConcurrencyStrategy.READ_WRITE)
+@Table(appliesTo="Lance", indexes={
+	@Index(name="lance_leilao_valor_idx", columnNames={"leilao_id", "valor", "id"}),
+	@Index(name="lance_leilao_data_idx", columnNames={"leilao_id", "data", "id"})
+})
 public class Lance {
 
-	@Id @GeneratedValue
+	@Id @GeneratedValue(generator="lance_seq")
+	@GenericGenerator(name="lance_seq", strategy="org.hibernate.id.enhanced.SequenceStyleGenerator", parameters={
+		@Parameter(name="sequence_name", value="lance_seq"),
+		@Parameter(name="increment_size", value="50"),
+		@Parameter(name="optimizer", value="pooled")})
 	private int id;
+	@Version
+	private int versao;
 	private double valor;
-	private Calendar data;
-	@ManyToOne
+	@Type(type=InstanteType.NOME)
+	private long data;
+	@ManyToOne(fetch=FetchType.LAZY)
+	@Index(name="lance_usuario_idx")
 	private Usuario usuario;
 	@ManyToOne
+	@Index(name="lance_leilao_idx")
 	private Leilao leilao;
 	
 	protected Lance() {}
 	public Lance(Calendar data, Usuario usuario, double valor) {
+		this(InstanteType.emMilis(data), usuario, valor);
+	}
+	public Lance(Instant data, Usuario usuario, double valor) {
+		this(InstanteType.emMilis(data), usuario, valor);
+	}
+	private Lance(long data, Usuario usuario, double valor) {
 		this.usuario = usuario;
 		this.data = data;
 		this.valor = valor;
@@ -39,10 +70,16 @@ public class Lance {
 		this.leilao = leilao;
 	}
 	public Calendar getData() {
+		return InstanteType.calendarDe(data);
+	}
+	public Instant getInstante() {
+		return InstanteType.instanteDe(data);
+	}
+	long getDataEmMilis() {
 		return data;
 	}
 	public void setData(Calendar data) {
-		this.data = data;
+		this.data = InstanteType.emMilis(data);
 	}
 	public Usuario getUsuario() {
 		return usuario;
@@ -53,6 +90,9 @@ public class Lance {
 	public int getId() {
 		return id;
 	}
+	public int getVersao() {
+		return versao;
+	}
 	
 	
 }
@@ -0,0 +1,44 @@
+package br.com.caelum.pm73.dominio;
+
+import java.time.Instant;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import org.hibernate.annotations.Index;
+import org.hibernate.annotations.Type;
+
+@Entity
+public class LanceArquivado {
+
+	@Id
+	private int id;
+	private double valor;
+	@Type(type=InstanteType.NOME)
+	private long data;
+	private Integer usuarioId;
+	@Index(name="lance_arquivado_leilao_idx")
+	private int leilaoId;
+	
+	protected LanceArquivado() {}
+
+	public int getId() {
+		return id;
+	}
+
+	public double getValor() {
+		return valor;
+	}
+
+	public Instant getData() {
+		return InstanteType.instanteDe(data);
+	}
+
+	public Integer getUsuarioId() {
+		return usuarioId;
+	}
+
+	public int getLeilaoId() {
+		return leilaoId;
+	}
+}
@@ -0,0 +1,55 @@
+package br.com.caelum.pm73.dominio;
+
+import java.time.Instant;
+
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.Subselect;
+import org.hibernate.annotations.Synchronize;
+import org.hibernate.annotations.Type;
+
+// os lances da tabela quente e das particoes mensais juntos, para consultas que nao podem perder os rotacionados
+@Entity
+@Immutable
+@Subselect("select id, valor, data, usuario_id, leilao_id from " + LanceDeQualquerMes.VISAO)
+@Synchronize({"Lance"})
+public class LanceDeQualquerMes {
+
+	public static final String VISAO = "LANCE_TODOS";
+
+	@Id
+	private int id;
+	private double valor;
+	@Type(type=InstanteType.NOME)
+	private long data;
+	@ManyToOne(fetch=FetchType.LAZY)
+	private Usuario usuario;
+	@ManyToOne(fetch=FetchType.LAZY)
+	private Leilao leilao;
+
+	protected LanceDeQualquerMes() {}
+
+	public int getId() {
+		return id;
+	}
+
+	public double getValor() {
+		return valor;
+	}
+
+	public Instant getData() {
+		return InstanteType.instanteDe(data);
+	}
+
+	public Usuario getUsuario() {
+		return usuario;
+	}
+
+	public Leilao getLeilao() {
+		return leilao;
+	}
+}
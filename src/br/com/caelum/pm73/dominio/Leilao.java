@@ -1,37 +1,100 @@
 package br.com.caelum.pm73.dominio;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 
 import javax.persistence.CascadeType;
+import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Cascade;
+import org.hibernate.annotations.FetchMode;
+import org.hibernate.annotations.FetchProfile;
+import org.hibernate.annotations.FetchProfile.FetchOverride;
+import org.hibernate.annotations.FetchProfiles;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Index;
+import org.hibernate.annotations.LazyCollection;
+import org.hibernate.annotations.LazyCollectionOption;
+import org.hibernate.annotations.Loader;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.Persister;
+import org.hibernate.annotations.Table;
+import org.hibernate.annotations.Type;
 
 @Entity
+@Cache(usage=CacheConcurrencyStrategy.READ_WRITE)
+@Table(appliesTo="Leilao", indexes={
+	@Index(name="leilao_usado_abertura_idx", columnNames={"usado", "dataAbertura", "id"}),
+	@Index(name="leilao_abertura_idx", columnNames={"dataAbertura", "id"}),
+	@Index(name="leilao_encerrado_abertura_idx", columnNames={"encerrado", "dataAbertura"}),
+	@Index(name="leilao_encerrado_valor_idx", columnNames={"encerrado", "valorInicial"})
+})
+@FetchProfiles({
+	@FetchProfile(name="com-dono", fetchOverrides={
+		@FetchOverride(entity=Leilao.class, association="dono", mode=FetchMode.JOIN)}),
+	@FetchProfile(name="com-lances", fetchOverrides={
+		@FetchOverride(entity=Leilao.class, association="dono", mode=FetchMode.JOIN),
+		@FetchOverride(entity=Leilao.class, association="lances", mode=FetchMode.JOIN)}),
+	@FetchProfile(name="com-lances-e-usuarios", fetchOverrides={
+		@FetchOverride(entity=Leilao.class, association="dono", mode=FetchMode.JOIN),
+		@FetchOverride(entity=Leilao.class, association="lances", mode=FetchMode.JOIN),
+		@FetchOverride(entity=Lance.class, association="usuario", mode=FetchMode.JOIN)})
+})
 public class Leilao {
 
-	@Id @GeneratedValue
+	@Id @GeneratedValue(generator="leilao_seq")
+	@GenericGenerator(name="leilao_seq", strategy="org.hibernate.id.enhanced.SequenceStyleGenerator", parameters={
+		@Parameter(name="sequence_name", value="leilao_seq"),
+		@Parameter(name="increment_size", value="50"),
+		@Parameter(name="optimizer", value="pooled")})
 	private int id;
+	@Version
+	private int versao;
 	private String nome;
-	private Double valorInicial;
-	@ManyToOne
+	private double valorInicial;
+	@ManyToOne(fetch=FetchType.LAZY)
 	private Usuario dono;
-	private Calendar dataAbertura;
+	@Type(type=InstanteType.NOME)
+	private long dataAbertura;
 	private boolean usado;
 	private boolean encerrado;
-	@OneToMany(cascade=CascadeType.ALL, orphanRemoval=true, mappedBy="leilao")
+	// sem cascade de remocao: os lances rotacionados so existem nas particoes, e o LeilaoDao os apaga em massa
+	@OneToMany(cascade={CascadeType.PERSIST, CascadeType.MERGE, CascadeType.REFRESH, CascadeType.DETACH}, mappedBy="leilao")
+	@Cascade(org.hibernate.annotations.CascadeType.SAVE_UPDATE)
+	@Cache(usage=CacheConcurrencyStrategy.READ_WRITE)
+	@BatchSize(size=50)
+	@LazyCollection(LazyCollectionOption.EXTRA)
+	@Loader(namedQuery="Leilao.lances")
+	@Persister(impl=PersisterDosLances.class)
 	private List<Lance> lances;
+	@Index(name="leilao_quantidade_lances_idx")
+	private int quantidadeDeLances;
+	@Index(name="leilao_maior_lance_idx")
+	private double maiorLance;
+	private double somaDosLances;
+	@Index(name="leilao_ultimo_lance_idx")
+	@Type(type=InstanteType.NOME)
+	@Column(nullable=true)
+	private Long dataDoUltimoLance;
 	
 	public Leilao() {
 		this.lances = new ArrayList<Lance>();
-		this.dataAbertura = Calendar.getInstance();
+		this.dataAbertura = System.currentTimeMillis();
 	}
 	
-	public Leilao(String nome, Double valorInicial, Usuario dono, boolean usado) {
+	public Leilao(String nome, double valorInicial, Usuario dono, boolean usado) {
 		this();
 		this.nome = nome;
 		this.valorInicial = valorInicial;
@@ -40,11 +103,19 @@ public class Leilao {
 	}
 
 	public void setDataAbertura(Calendar dataAbertura) {
-		this.dataAbertura = dataAbertura;
+		this.dataAbertura = InstanteType.emMilis(dataAbertura);
+	}
+
+	public void setDataAbertura(Instant dataAbertura) {
+		this.dataAbertura = InstanteType.emMilis(dataAbertura);
 	}
 
 	public Calendar getDataAbertura() {
-		return dataAbertura;
+		return InstanteType.calendarDe(dataAbertura);
+	}
+
+	public Instant getInstanteDeAbertura() {
+		return InstanteType.instanteDe(dataAbertura);
 	}
 
 	public void setNome(String nome) {
@@ -55,11 +126,11 @@ public class Leilao {
 		return nome;
 	}
 	
-	public void setValorInicial(Double valorInicial) {
+	public void setValorInicial(double valorInicial) {
 		this.valorInicial = valorInicial;
 	}
 	
-	public Double getValorInicial() {
+	public double getValorInicial() {
 		return valorInicial;
 	}
 	
@@ -83,10 +154,34 @@ public class Leilao {
 		return lances;
 	}
 
+	public int getQuantidadeDeLances() {
+		return quantidadeDeLances;
+	}
+
+	public double getMaiorLance() {
+		return maiorLance;
+	}
+
+	public double getSomaDosLances() {
+		return somaDosLances;
+	}
+
+	public Calendar getDataDoUltimoLance() {
+		return InstanteType.calendarDe(dataDoUltimoLance);
+	}
+
+	public Instant getInstanteDoUltimoLance() {
+		return InstanteType.instanteDe(dataDoUltimoLance);
+	}
+
 	public int getId() {
 		return id;
 	}
 
+	public int getVersao() {
+		return versao;
+	}
+
 	public void encerra() {
 		this.encerrado = true;
 	}
@@ -98,6 +193,15 @@ public class Leilao {
 	public Lance adicionaLance(Lance lance) {
 		lance.setLeilao(this);
 		lances.add(lance);
+		
+		quantidadeDeLances++;
+		somaDosLances += lance.getValor();
+		if(lance.getValor() > maiorLance) {
+			maiorLance = lance.getValor();
+		}
+		if(dataDoUltimoLance == null || lance.getDataEmMilis() > dataDoUltimoLance) {
+			dataDoUltimoLance = lance.getDataEmMilis();
+		}
 		return lance;
 	}
 }
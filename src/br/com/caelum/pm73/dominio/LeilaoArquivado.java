@@ -0,0 +1,76 @@
+package br.com.caelum.pm73.dominio;
+
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import org.hibernate.annotations.Index;
+import org.hibernate.annotations.Table;
+import org.hibernate.annotations.Type;
+
+@Entity
+@Table(appliesTo="LeilaoArquivado", indexes={
+	@Index(name="leilao_arquivado_dono_idx", columnNames={"donoId"}),
+	@Index(name="leilao_arquivado_abertura_idx", columnNames={"dataAbertura"})
+})
+public class LeilaoArquivado {
+
+	@Id
+	private int id;
+	private String nome;
+	private double valorInicial;
+	private Integer donoId;
+	@Type(type=InstanteType.NOME)
+	private long dataAbertura;
+	private boolean usado;
+	private int quantidadeDeLances;
+	private double maiorLance;
+	private double somaDosLances;
+	@Type(type=InstanteType.NOME)
+	@Column(nullable=true)
+	private Long dataDoUltimoLance;
+	
+	protected LeilaoArquivado() {}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getNome() {
+		return nome;
+	}
+
+	public double getValorInicial() {
+		return valorInicial;
+	}
+
+	public Integer getDonoId() {
+		return donoId;
+	}
+
+	public Instant getDataAbertura() {
+		return InstanteType.instanteDe(dataAbertura);
+	}
+
+	public boolean isUsado() {
+		return usado;
+	}
+
+	public int getQuantidadeDeLances() {
+		return quantidadeDeLances;
+	}
+
+	public double getMaiorLance() {
+		return maiorLance;
+	}
+
+	public double getSomaDosLances() {
+		return somaDosLances;
+	}
+
+	public Instant getDataDoUltimoLance() {
+		return InstanteType.instanteDe(dataDoUltimoLance);
+	}
+}
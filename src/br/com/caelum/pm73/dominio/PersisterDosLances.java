@@ -0,0 +1,30 @@
+package br.com.caelum.pm73.dominio;
+
+import org.hibernate.cache.access.CollectionRegionAccessStrategy;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.mapping.Collection;
+import org.hibernate.persister.collection.OneToManyPersister;
+
+// o size() e o contains() extra-lazy contam pela visao, como o loader da colecao, e nao so pela tabela quente
+public class PersisterDosLances extends OneToManyPersister {
+
+	public PersisterDosLances(Collection colecao, CollectionRegionAccessStrategy cache, Configuration config,
+			SessionFactoryImplementor fabrica) {
+		super(colecao, cache, config, fabrica);
+	}
+
+	@Override
+	protected String generateSelectSizeString(boolean indexada) {
+		return naVisao(super.generateSelectSizeString(indexada));
+	}
+
+	@Override
+	protected String generateDetectRowByElementString() {
+		return naVisao(super.generateDetectRowByElementString());
+	}
+
+	private String naVisao(String sql) {
+		return sql.replaceFirst("from " + qualifiedTableName + "\\b", "from " + LanceDeQualquerMes.VISAO);
+	}
+}
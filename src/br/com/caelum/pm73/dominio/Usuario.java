@@ -1,15 +1,34 @@
 package br.com.caelum.pm73.dominio;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Index;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.Table;
+
 @Entity
+@Cache(usage=CacheConcurrencyStrategy.READ_WRITE)
+@BatchSize(size=50)
+@Table(appliesTo="Usuario", indexes={
+	@Index(name="usuario_nome_email_idx", columnNames={"nome", "email"})
+})
 public class Usuario {
 	
-	@Id @GeneratedValue
+	@Id @GeneratedValue(generator="usuario_seq")
+	@GenericGenerator(name="usuario_seq", strategy="org.hibernate.id.enhanced.SequenceStyleGenerator", parameters={
+		@Parameter(name="sequence_name", value="usuario_seq"),
+		@Parameter(name="increment_size", value="50"),
+		@Parameter(name="optimizer", value="pooled")})
 	private int id;
 	private String nome;
+	@Column(unique=true)
 	private String email;
 
 	protected Usuario() {}
@@ -0,0 +1,249 @@
+package br.com.caelum.pm73.motor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.hibernate.Session;
+
+import br.com.caelum.pm73.dao.AtualizadorDeLeiloes;
+import br.com.caelum.pm73.dao.CriadorDeSessao;
+import br.com.caelum.pm73.dao.LeilaoDao;
+import br.com.caelum.pm73.dominio.Lance;
+import br.com.caelum.pm73.dominio.Leilao;
+import br.com.caelum.pm73.dominio.Usuario;
+
+public class GravacaoAdiadaDeLances {
+
+	private static final Logger log = Logger.getLogger(GravacaoAdiadaDeLances.class.getName());
+
+	private final CriadorDeSessao criadorDeSessao;
+	private final AtualizadorDeLeiloes atualizador;
+	private final BlockingQueue<LancePendente> fila;
+	private final int capacidade;
+	private final Semaphore vagas;
+	private final int tamanhoDoLote;
+	private final long janelaEmMilis;
+	private final long esperaPorEspaco;
+	private final Thread gravador;
+	private final ReadWriteLock reservas = new ReentrantReadWriteLock();
+	private volatile boolean aberta = true;
+
+	public GravacaoAdiadaDeLances(CriadorDeSessao criadorDeSessao) {
+		this(criadorDeSessao, 10000, LeilaoDao.TAMANHO_DO_LOTE * 10, 20, 1000);
+	}
+
+	public GravacaoAdiadaDeLances(CriadorDeSessao criadorDeSessao, int capacidade, int tamanhoDoLote,
+			long janelaEmMilis, long esperaPorEspaco) {
+		this.criadorDeSessao = criadorDeSessao;
+		this.atualizador = new AtualizadorDeLeiloes(criadorDeSessao);
+		this.fila = new ArrayBlockingQueue<LancePendente>(capacidade);
+		this.capacidade = capacidade;
+		this.vagas = new Semaphore(capacidade);
+		this.tamanhoDoLote = tamanhoDoLote;
+		this.janelaEmMilis = janelaEmMilis;
+		this.esperaPorEspaco = esperaPorEspaco;
+		this.gravador = new Thread(this::grava, "pm73-gravacao-de-lances");
+		this.gravador.setDaemon(true);
+		this.gravador.start();
+	}
+
+	// a vaga so volta quando o lance esta gravado, entao a capacidade limita tambem o lote em gravacao
+	public Vaga reservaVaga() {
+		reservas.readLock().lock();
+		try {
+			if(!aberta) {
+				throw new RejectedExecutionException("Gravacao de lances encerrada");
+			}
+			if(!vagas.tryAcquire(esperaPorEspaco, TimeUnit.MILLISECONDS)) {
+				throw new RejectedExecutionException("Fila de lances cheia apos " + esperaPorEspaco + "ms");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RejectedExecutionException("Interrompido aguardando espaco na fila de lances", e);
+		} finally {
+			reservas.readLock().unlock();
+		}
+		return new Vaga();
+	}
+
+	public CompletableFuture<Void> submete(int idDoLeilao, int idDoUsuario, double valor, Instant data) {
+		return reservaVaga().submete(idDoLeilao, idDoUsuario, valor, data);
+	}
+
+	public int getPendentes() {
+		return capacidade - vagas.availablePermits();
+	}
+
+	public void fecha() throws InterruptedException {
+		// depois de fechada nao sai vaga nova, e o gravador so para quando todas as reservadas voltarem
+		reservas.writeLock().lock();
+		try {
+			aberta = false;
+		} finally {
+			reservas.writeLock().unlock();
+		}
+		gravador.join();
+	}
+
+	private void grava() {
+		List<LancePendente> lote = new ArrayList<LancePendente>(tamanhoDoLote);
+		while(aberta || vagas.availablePermits() < capacidade) {
+			try {
+				LancePendente primeiro = fila.poll(janelaEmMilis, TimeUnit.MILLISECONDS);
+				if(primeiro == null) {
+					continue;
+				}
+
+				lote.add(primeiro);
+				long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(janelaEmMilis);
+				while(lote.size() < tamanhoDoLote) {
+					long restante = limite - System.nanoTime();
+					LancePendente proximo = restante > 0 ? fila.poll(restante, TimeUnit.NANOSECONDS) : fila.poll();
+					if(proximo == null) {
+						break;
+					}
+					lote.add(proximo);
+				}
+
+				gravaLote(lote);
+			} catch (InterruptedException e) {
+				aberta = false;
+			} finally {
+				vagas.release(lote.size());
+				lote.clear();
+			}
+		}
+	}
+
+	private void gravaLote(List<LancePendente> lote) {
+		Map<Integer, List<LancePendente>> porLeilao = new LinkedHashMap<Integer, List<LancePendente>>();
+		for(LancePendente pendente : lote) {
+			porLeilao.computeIfAbsent(pendente.idDoLeilao, id -> new ArrayList<LancePendente>()).add(pendente);
+		}
+
+		if(porLeilao.size() > 1) {
+			try {
+				gravaNumaTransacao(porLeilao.values());
+				return;
+			} catch (RuntimeException e) {
+				// um leilao com problema nao derruba os outros do lote: cada um e regravado na sua transacao
+				log.log(Level.FINE, "Lote de " + lote.size() + " lances regravado por leilao", e);
+			}
+		}
+		for(List<LancePendente> lances : porLeilao.values()) {
+			try {
+				// mesmas retentativas das atualizacoes em conflito de versao do leilao
+				atualizador.comRetentativas(lances.get(0).idDoLeilao, () -> {
+					gravaNumaTransacao(Collections.singletonList(lances));
+					return null;
+				});
+			} catch (RuntimeException e) {
+				falha(lances, e);
+			}
+		}
+	}
+
+	private void gravaNumaTransacao(Collection<List<LancePendente>> porLeilao) {
+		Session session = criadorDeSessao.getSession();
+		try {
+			session.beginTransaction();
+			LeilaoDao leilaoDao = new LeilaoDao(session);
+
+			for(List<LancePendente> lances : porLeilao) {
+				int idDoLeilao = lances.get(0).idDoLeilao;
+				Leilao leilao = leilaoDao.porId(idDoLeilao);
+				if(leilao == null) {
+					IllegalStateException inexistente = new IllegalStateException("Leilao inexistente: " + idDoLeilao);
+					for(LancePendente pendente : lances) {
+						pendente.confirmacao.completeExceptionally(inexistente);
+					}
+					continue;
+				}
+
+				for(LancePendente pendente : lances) {
+					Usuario usuario = (Usuario) session.load(Usuario.class, pendente.idDoUsuario);
+					leilao.adicionaLance(new Lance(pendente.data, usuario, pendente.valor));
+				}
+			}
+
+			session.getTransaction().commit();
+			for(List<LancePendente> lances : porLeilao) {
+				for(LancePendente pendente : lances) {
+					pendente.confirmacao.complete(null);
+				}
+			}
+		} catch (RuntimeException e) {
+			if(session.getTransaction().isActive()) {
+				session.getTransaction().rollback();
+			}
+			throw e;
+		} finally {
+			session.close();
+		}
+	}
+
+	private void falha(List<LancePendente> lances, RuntimeException e) {
+		log.log(Level.SEVERE, "Falha ao gravar " + lances.size() + " lances do leilao " + lances.get(0).idDoLeilao, e);
+		for(LancePendente pendente : lances) {
+			pendente.confirmacao.completeExceptionally(e);
+		}
+	}
+
+	public class Vaga {
+
+		private boolean usada;
+
+		private Vaga() {
+		}
+
+		// nao bloqueia: a vaga ja foi reservada, entao pode ser chamado sob o lock do leilao
+		public synchronized CompletableFuture<Void> submete(int idDoLeilao, int idDoUsuario, double valor, Instant data) {
+			usa();
+			LancePendente pendente = new LancePendente(idDoLeilao, idDoUsuario, valor, data);
+			fila.add(pendente);
+			return pendente.confirmacao;
+		}
+
+		public synchronized void cancela() {
+			usa();
+			vagas.release();
+		}
+
+		private void usa() {
+			if(usada) {
+				throw new IllegalStateException("Vaga ja usada");
+			}
+			usada = true;
+		}
+	}
+
+	private static class LancePendente {
+		private final int idDoLeilao;
+		private final int idDoUsuario;
+		private final double valor;
+		private final Instant data;
+		private final CompletableFuture<Void> confirmacao = new CompletableFuture<Void>();
+
+		LancePendente(int idDoLeilao, int idDoUsuario, double valor, Instant data) {
+			this.idDoLeilao = idDoLeilao;
+			this.idDoUsuario = idDoUsuario;
+			this.valor = valor;
+			this.data = data;
+		}
+	}
+}
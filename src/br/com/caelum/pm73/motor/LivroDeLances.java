@@ -0,0 +1,128 @@
+package br.com.caelum.pm73.motor;
+
+import java.util.Arrays;
+
+class LivroDeLances {
+
+	private double[] valores = new double[8];
+	private int[] usuarios = new int[8];
+	private int quantidade;
+	// ultimo lance de cada usuario em enderecamento aberto, sem Integer e Double por lance
+	private int[] chaves = new int[16];
+	private double[] ultimos = new double[16];
+	private boolean[] ocupadas = new boolean[16];
+	private int usuariosDistintos;
+
+	synchronized ResultadoDoLance propoe(int usuario, double valor) {
+		if(quantidade > 0) {
+			if(valor <= valores[quantidade - 1]) {
+				return ResultadoDoLance.VALOR_INSUFICIENTE;
+			}
+			if(usuarios[quantidade - 1] == usuario) {
+				return ResultadoDoLance.LANCES_SEGUIDOS_DO_MESMO_USUARIO;
+			}
+		}
+
+		registra(usuario, valor);
+		return ResultadoDoLance.ACEITO;
+	}
+
+	synchronized void registra(int usuario, double valor) {
+		if(quantidade == valores.length) {
+			valores = Arrays.copyOf(valores, quantidade * 2);
+			usuarios = Arrays.copyOf(usuarios, quantidade * 2);
+		}
+		valores[quantidade] = valor;
+		usuarios[quantidade] = usuario;
+		quantidade++;
+		guardaUltimo(usuario, valor);
+	}
+
+	// tira um lance que nao chegou ao banco; os seguintes continuam valendo
+	synchronized void desfaz(int usuario, double valor) {
+		int posicao = Arrays.binarySearch(valores, 0, quantidade, valor);
+		if(posicao < 0 || usuarios[posicao] != usuario) {
+			return;
+		}
+		System.arraycopy(valores, posicao + 1, valores, posicao, quantidade - posicao - 1);
+		System.arraycopy(usuarios, posicao + 1, usuarios, posicao, quantidade - posicao - 1);
+		quantidade--;
+
+		double anterior = Double.NaN;
+		for(int i = quantidade - 1; i >= 0; i--) {
+			if(usuarios[i] == usuario) {
+				anterior = valores[i];
+				break;
+			}
+		}
+		guardaUltimo(usuario, anterior);
+	}
+
+	private void guardaUltimo(int usuario, double valor) {
+		int posicao = posicaoDe(usuario, chaves, ocupadas);
+		if(!ocupadas[posicao]) {
+			if((usuariosDistintos + 1) * 4 > chaves.length * 3) {
+				dobraUltimos();
+				posicao = posicaoDe(usuario, chaves, ocupadas);
+			}
+			chaves[posicao] = usuario;
+			ocupadas[posicao] = true;
+			usuariosDistintos++;
+		}
+		ultimos[posicao] = valor;
+	}
+
+	private void dobraUltimos() {
+		int[] novasChaves = new int[chaves.length * 2];
+		double[] novosUltimos = new double[chaves.length * 2];
+		boolean[] novasOcupadas = new boolean[chaves.length * 2];
+		for(int i = 0; i < chaves.length; i++) {
+			if(ocupadas[i]) {
+				int posicao = posicaoDe(chaves[i], novasChaves, novasOcupadas);
+				novasChaves[posicao] = chaves[i];
+				novosUltimos[posicao] = ultimos[i];
+				novasOcupadas[posicao] = true;
+			}
+		}
+		chaves = novasChaves;
+		ultimos = novosUltimos;
+		ocupadas = novasOcupadas;
+	}
+
+	private static int posicaoDe(int usuario, int[] chaves, boolean[] ocupadas) {
+		int mascara = chaves.length - 1;
+		int espalhado = usuario * 0x9E3779B9;
+		int posicao = (espalhado ^ espalhado >>> 16) & mascara;
+		while(ocupadas[posicao] && chaves[posicao] != usuario) {
+			posicao = (posicao + 1) & mascara;
+		}
+		return posicao;
+	}
+
+	synchronized double maiorLance() {
+		return quantidade == 0 ? 0 : valores[quantidade - 1];
+	}
+
+	synchronized double[] maioresLances(int limite) {
+		int tamanho = Math.min(limite, quantidade);
+		double[] maiores = new double[tamanho];
+		for(int i = 0; i < tamanho; i++) {
+			maiores[i] = valores[quantidade - 1 - i];
+		}
+		return maiores;
+	}
+
+	synchronized Double ultimoLanceDe(int usuario) {
+		int posicao = posicaoDe(usuario, chaves, ocupadas);
+		// NaN marca usuario cujos lances foram todos desfeitos
+		return ocupadas[posicao] && !Double.isNaN(ultimos[posicao]) ? ultimos[posicao] : null;
+	}
+
+	synchronized int[] usuariosEmOrdem() {
+		return Arrays.copyOf(usuarios, quantidade);
+	}
+
+	synchronized int getQuantidade() {
+		return quantidade;
+	}
+}
@@ -0,0 +1,106 @@
+package br.com.caelum.pm73.motor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+import br.com.caelum.pm73.dao.CriadorDeSessao;
+import br.com.caelum.pm73.dominio.Lance;
+import br.com.caelum.pm73.dominio.Leilao;
+import br.com.caelum.pm73.dominio.Usuario;
+
+public class MotorDeLances {
+
+	private final ConcurrentMap<Integer, LivroDeLances> livros = new ConcurrentHashMap<Integer, LivroDeLances>();
+	private final GravacaoAdiadaDeLances gravacao;
+
+	public MotorDeLances(CriadorDeSessao criadorDeSessao) {
+		this(new GravacaoAdiadaDeLances(criadorDeSessao));
+	}
+
+	public MotorDeLances(GravacaoAdiadaDeLances gravacao) {
+		this.gravacao = gravacao;
+	}
+
+	public void abre(Leilao leilao) {
+		LivroDeLances livro = new LivroDeLances();
+
+		List<Lance> existentes = new ArrayList<Lance>(leilao.getLances());
+		existentes.sort(Comparator.comparingDouble(Lance::getValor));
+		for(Lance lance : existentes) {
+			livro.registra(lance.getUsuario().getId(), lance.getValor());
+		}
+
+		livros.put(leilao.getId(), livro);
+	}
+
+	public void encerra(int idDoLeilao) {
+		livros.remove(idDoLeilao);
+	}
+
+	public ResultadoDoLance propoe(int idDoLeilao, Usuario usuario, double valor) {
+		return propoeComConfirmacao(idDoLeilao, usuario, valor, null);
+	}
+
+	public ResultadoDoLance propoeComConfirmacao(int idDoLeilao, Usuario usuario, double valor,
+			Consumer<CompletableFuture<Void>> confirmacao) {
+		LivroDeLances livro = livros.get(idDoLeilao);
+		if(livro == null) {
+			return ResultadoDoLance.LEILAO_FECHADO;
+		}
+
+		// a vaga na fila e reservada fora do lock do leilao: esperar por espaco nao segura os outros lances dele
+		GravacaoAdiadaDeLances.Vaga vaga = gravacao.reservaVaga();
+		CompletableFuture<Void> gravado = null;
+		ResultadoDoLance resultado;
+		try {
+			// sob o mesmo lock do livro a ordem de entrada na fila e a ordem dos lances do leilao
+			synchronized(livro) {
+				resultado = livro.propoe(usuario.getId(), valor);
+				if(resultado.foiAceito()) {
+					gravado = vaga.submete(idDoLeilao, usuario.getId(), valor, Instant.now());
+				}
+			}
+		} finally {
+			if(gravado == null) {
+				vaga.cancela();
+			}
+		}
+
+		if(gravado != null) {
+			gravado = gravado.whenComplete((nada, erro) -> {
+				if(erro != null) {
+					livro.desfaz(usuario.getId(), valor);
+				}
+			});
+			if(confirmacao != null) {
+				confirmacao.accept(gravado);
+			}
+		}
+		return resultado;
+	}
+
+	public double maiorLance(int idDoLeilao) {
+		LivroDeLances livro = livros.get(idDoLeilao);
+		return livro == null ? 0 : livro.maiorLance();
+	}
+
+	public double[] maioresLances(int idDoLeilao, int quantidade) {
+		LivroDeLances livro = livros.get(idDoLeilao);
+		return livro == null ? new double[0] : livro.maioresLances(quantidade);
+	}
+
+	public Double ultimoLanceDe(int idDoLeilao, Usuario usuario) {
+		LivroDeLances livro = livros.get(idDoLeilao);
+		return livro == null ? null : livro.ultimoLanceDe(usuario.getId());
+	}
+
+	public void fecha() throws InterruptedException {
+		gravacao.fecha();
+	}
+}
@@ -0,0 +1,13 @@
+package br.com.caelum.pm73.motor;
+
+public enum ResultadoDoLance {
+
+	ACEITO,
+	VALOR_INSUFICIENTE,
+	LANCES_SEGUIDOS_DO_MESMO_USUARIO,
+	LEILAO_FECHADO;
+
+	public boolean foiAceito() {
+		return this == ACEITO;
+	}
+}
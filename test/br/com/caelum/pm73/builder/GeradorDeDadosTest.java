@@ -0,0 +1,106 @@
+package br.com.caelum.pm73.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import br.com.caelum.pm73.dominio.Lance;
+import br.com.caelum.pm73.dominio.Leilao;
+import br.com.caelum.pm73.dominio.Usuario;
+
+public class GeradorDeDadosTest {
+
+	private static final Instant REFERENCIA = Instant.parse("2024-01-01T00:00:00Z");
+
+	@Test
+	public void mesmaSementeDeveGerarOsMesmosDados() {
+		List<String> primeira = gera(new GeradorDeDados(7).comReferencia(REFERENCIA));
+		List<String> segunda = gera(new GeradorDeDados(7).comReferencia(REFERENCIA));
+
+		assertEquals(primeira, segunda);
+	}
+
+	@Test
+	public void sementesDiferentesDevemGerarDadosDiferentes() {
+		List<String> primeira = gera(new GeradorDeDados(7).comReferencia(REFERENCIA));
+		List<String> segunda = gera(new GeradorDeDados(8).comReferencia(REFERENCIA));
+
+		assertNotEquals(primeira, segunda);
+	}
+
+	@Test
+	public void quantidadeDeLancesDeveTerCaudaLonga() {
+		final int[] total = new int[1];
+		final int[] maior = new int[1];
+		final int[] comPoucosLances = new int[1];
+		new GeradorDeDados(7).comUsuarios(100).comLeiloes(5000).comMediaDeLances(10).comReferencia(REFERENCIA)
+				.gera(new DestinoDosDados() {
+					public void usuario(int id, Usuario usuario) {
+					}
+
+					public void leilao(int id, Leilao leilao, int idDoDono, int[] idsDosCompradores) {
+						int quantidade = leilao.getQuantidadeDeLances();
+						assertTrue(leilao.getMaiorLance() <= leilao.getValorInicial() * (1 + 0.05 * quantidade) + quantidade);
+						total[0] += quantidade;
+						maior[0] = Math.max(maior[0], quantidade);
+						if(quantidade < 10) comPoucosLances[0]++;
+					}
+				});
+
+		double media = total[0] / 5000.0;
+		assertTrue("media " + media, media > 6 && media < 14);
+		assertTrue("maior " + maior[0], maior[0] > 100);
+		assertTrue(comPoucosLances[0] > 2500);
+	}
+
+	@Test
+	public void lancesDevemSerCrescentesEDeCompradoresAlternados() {
+		new GeradorDeDados(3).comUsuarios(10).comLeiloes(500).comReferencia(REFERENCIA)
+				.gera(new DestinoDosDados() {
+					public void usuario(int id, Usuario usuario) {
+					}
+
+					public void leilao(int id, Leilao leilao, int idDoDono, int[] idsDosCompradores) {
+						List<Lance> lances = leilao.getLances();
+						assertEquals(lances.size(), idsDosCompradores.length);
+						for(int i = 0; i < lances.size(); i++) {
+							assertNotEquals(idDoDono, idsDosCompradores[i]);
+							assertTrue(!lances.get(i).getInstante().isAfter(REFERENCIA));
+							if(i > 0) {
+								assertNotEquals(idsDosCompradores[i - 1], idsDosCompradores[i]);
+								assertTrue(lances.get(i).getValor() > lances.get(i - 1).getValor());
+								assertTrue(lances.get(i).getInstante().isAfter(lances.get(i - 1).getInstante()));
+							}
+						}
+						assertTrue(!leilao.getInstanteDeAbertura().isAfter(REFERENCIA));
+						assertNotNull(leilao.getDono());
+					}
+				});
+	}
+
+	private List<String> gera(GeradorDeDados gerador) {
+		final List<String> linhas = new ArrayList<String>();
+		gerador.comUsuarios(50).comLeiloes(200).gera(new DestinoDosDados() {
+			public void usuario(int id, Usuario usuario) {
+				linhas.add(id + ";" + usuario.getNome() + ";" + usuario.getEmail());
+			}
+
+			public void leilao(int id, Leilao leilao, int idDoDono, int[] idsDosCompradores) {
+				linhas.add(id + ";" + leilao.getNome() + ";" + idDoDono + ";" + leilao.getValorInicial() + ";"
+						+ leilao.getInstanteDeAbertura() + ";" + leilao.isUsado() + ";" + leilao.isEncerrado());
+				for(int i = 0; i < idsDosCompradores.length; i++) {
+					Lance lance = leilao.getLances().get(i);
+					linhas.add(idsDosCompradores[i] + ";" + lance.getValor() + ";" + lance.getInstante());
+				}
+			}
+		});
+		return linhas;
+	}
+}
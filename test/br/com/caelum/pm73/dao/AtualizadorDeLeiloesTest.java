@@ -0,0 +1,134 @@
+package br.com.caelum.pm73.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import br.com.caelum.pm73.builder.LeilaoBuilder;
+import br.com.caelum.pm73.dominio.Lance;
+import br.com.caelum.pm73.dominio.Leilao;
+import br.com.caelum.pm73.dominio.Usuario;
+
+public class AtualizadorDeLeiloesTest {
+
+	private static final int THREADS = 8;
+	private static final int LANCES_POR_THREAD = 25;
+
+	private static CriadorDeSessao criador;
+	private Usuario dono;
+	private List<Usuario> compradores;
+	private Leilao leilao;
+
+	@BeforeClass
+	public static void criaBanco() {
+		criador = CriadorDeSessao.isolado();
+	}
+
+	@AfterClass
+	public static void fechaBanco() {
+		criador.fecha();
+	}
+
+	@Before
+	public void antes() {
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			UsuarioDao usuarioDao = new UsuarioDao(session);
+			dono = new Usuario("Dono Disputado", "dono.disputado@email.com");
+			usuarioDao.salvar(dono);
+			compradores = new ArrayList<Usuario>();
+			for(int i = 0; i < THREADS; i++) {
+				Usuario comprador = new Usuario("Comprador " + i, "comprador" + i + ".disputado@email.com");
+				usuarioDao.salvar(comprador);
+				compradores.add(comprador);
+			}
+			leilao = new LeilaoBuilder().comDono(dono).comNome("Leilao disputado").constroi();
+			new LeilaoDao(session).salvar(leilao);
+			session.getTransaction().commit();
+		} finally {
+			session.close();
+		}
+	}
+	
+	@After
+	public void depois() {
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			session.createQuery("delete from Lance where leilao.id = :id").setParameter("id", leilao.getId()).executeUpdate();
+			session.createQuery("delete from Leilao where id = :id").setParameter("id", leilao.getId()).executeUpdate();
+			session.createQuery("delete from Usuario where email like '%.disputado@email.com'").executeUpdate();
+			session.getTransaction().commit();
+		} finally {
+			session.close();
+		}
+	}
+	
+	@Test
+	public void naoDevePerderLancesNumLeilaoDisputado() throws Exception {
+		AtualizadorDeLeiloes atualizador = new AtualizadorDeLeiloes(criador, 100, 1, 20);
+		ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+		List<Future<?>> resultados = new ArrayList<Future<?>>();
+		try {
+			for(Usuario comprador : compradores) {
+				resultados.add(threads.submit(() -> {
+					for(int i = 0; i < LANCES_POR_THREAD; i++) {
+						atualizador.atualiza(leilao.getId(), disputado ->
+								disputado.adicionaLance(new Lance(Instant.now(), comprador, disputado.getMaiorLance() + 1)));
+					}
+				}));
+			}
+			for(Future<?> resultado : resultados) {
+				resultado.get();
+			}
+		} finally {
+			threads.shutdown();
+		}
+		
+		Session session = criador.getSession();
+		try {
+			Leilao gravado = (Leilao) session.get(Leilao.class, leilao.getId());
+			long lances = (Long) session.createQuery("select count(la) from Lance la where la.leilao.id = :id")
+					.setParameter("id", leilao.getId())
+					.uniqueResult();
+			
+			assertEquals(THREADS * LANCES_POR_THREAD, lances);
+			assertEquals(THREADS * LANCES_POR_THREAD, gravado.getQuantidadeDeLances());
+			assertEquals(THREADS * LANCES_POR_THREAD, gravado.getMaiorLance(), 0.00001);
+		} finally {
+			session.close();
+		}
+		
+		ContencaoDoLeilao contencao = atualizador.getContencao(leilao.getId());
+		assertEquals(THREADS * LANCES_POR_THREAD, contencao.getAtualizacoes());
+		assertEquals(0L, contencao.getDesistencias());
+	}
+
+	@Test
+	public void deveEsquecerAContencaoDosLeiloesMaisAntigos() {
+		AtualizadorDeLeiloes atualizador = new AtualizadorDeLeiloes(criador, 10, 1, 20, 1);
+		atualizador.atualiza(leilao.getId(), disputado -> disputado.getNome());
+		try {
+			atualizador.atualiza(-1, disputado -> disputado.getNome());
+			fail();
+		} catch (IllegalArgumentException esperada) {
+		}
+
+		assertEquals(1, atualizador.getMaisDisputados(10).size());
+		assertEquals(0L, atualizador.getContencao(leilao.getId()).getAtualizacoes());
+	}
+}
@@ -0,0 +1,46 @@
+package br.com.caelum.pm73.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class CacheEmMemoriaTest {
+
+	@Test
+	public void deveDescartarOMenosUsadoRecentementeAoPassarDoLimite() {
+		CacheEmMemoria cache = new CacheEmMemoria("teste", 2, 0);
+		
+		cache.put(1, "um");
+		cache.put(2, "dois");
+		cache.get(1);
+		cache.put(3, "tres");
+		
+		assertEquals("um", cache.get(1));
+		assertNull(cache.get(2));
+		assertEquals(1L, cache.getEstatisticas().getRemocoes());
+	}
+	
+	@Test
+	public void deveExpirarEntradasAposOTtl() throws InterruptedException {
+		CacheEmMemoria cache = new CacheEmMemoria("teste", 10, 1);
+		
+		cache.put(1, "um");
+		Thread.sleep(5);
+		
+		assertNull(cache.get(1));
+		assertEquals(0L, cache.getElementCountInMemory());
+	}
+	
+	@Test
+	public void deveContarAcertosEFalhas() {
+		CacheEmMemoria cache = new CacheEmMemoria("teste", 10, 0);
+		
+		cache.put(1, "um");
+		cache.get(1);
+		cache.get(2);
+		
+		assertEquals(1L, cache.getEstatisticas().getAcertos());
+		assertEquals(1L, cache.getEstatisticas().getFalhas());
+	}
+}
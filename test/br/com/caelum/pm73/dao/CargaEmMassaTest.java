@@ -0,0 +1,137 @@
+package br.com.caelum.pm73.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import br.com.caelum.pm73.builder.DestinoDosDados;
+import br.com.caelum.pm73.builder.GeradorDeDados;
+import br.com.caelum.pm73.builder.LeilaoBuilder;
+import br.com.caelum.pm73.dominio.Lance;
+import br.com.caelum.pm73.dominio.Leilao;
+import br.com.caelum.pm73.dominio.Usuario;
+
+public class CargaEmMassaTest {
+
+	private static CriadorDeSessao criador;
+	private GeradorDeDados gerador;
+
+	@BeforeClass
+	public static void criaBanco() {
+		criador = CriadorDeSessao.isolado();
+	}
+
+	@AfterClass
+	public static void fechaBanco() {
+		criador.fecha();
+	}
+
+	@Before
+	public void antes() {
+		gerador = new GeradorDeDados(42)
+				.comUsuarios(200)
+				.comLeiloes(300)
+				.comReferencia(Instant.now().truncatedTo(ChronoUnit.DAYS));
+	}
+
+	@After
+	public void depois() {
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			session.createQuery("delete from Lance").executeUpdate();
+			session.createQuery("delete from Leilao").executeUpdate();
+			session.createQuery("delete from Usuario").executeUpdate();
+			session.getTransaction().commit();
+		} finally {
+			session.close();
+		}
+	}
+
+	@Test
+	public void deveCarregarTodasAsLinhasDoGerador() {
+		ResumoDaCarga resumo = carrega();
+		Contador esperado = new Contador();
+		gerador.gera(esperado);
+
+		assertEquals(200, resumo.getUsuarios());
+		assertEquals(300, resumo.getLeiloes());
+		assertEquals(esperado.lances, resumo.getLances());
+
+		Session session = criador.getSession();
+		try {
+			assertEquals(200L, session.createQuery("select count(u) from Usuario u").uniqueResult());
+			assertEquals(300L, session.createQuery("select count(l) from Leilao l").uniqueResult());
+			assertEquals((long) esperado.lances, session.createQuery("select count(l) from Lance l").uniqueResult());
+			assertEquals(Long.valueOf(esperado.abertos), new LeilaoDao(session).total());
+		} finally {
+			session.close();
+		}
+	}
+
+	@Test
+	public void deveContinuarAsSequenciasDepoisDosIdsCarregados() {
+		ResumoDaCarga resumo = carrega();
+
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			Usuario dono = new Usuario("Dono", "dono.carga@email.com");
+			Usuario comprador = new Usuario("Comprador", "comprador.carga@email.com");
+			Leilao leilao = new LeilaoBuilder()
+					.comDono(dono)
+					.comNome("Geladeira")
+					.comLance(new Lance(Instant.now(), comprador, 100.0))
+					.constroi();
+			UsuarioDao usuarioDao = new UsuarioDao(session);
+			usuarioDao.salvar(dono);
+			usuarioDao.salvar(comprador);
+			new LeilaoDao(session).salvar(leilao);
+			session.getTransaction().commit();
+
+			assertTrue(dono.getId() > resumo.getUsuarios());
+			assertTrue(comprador.getId() > resumo.getUsuarios());
+			assertTrue(leilao.getId() > resumo.getLeiloes());
+			assertTrue(leilao.getLances().get(0).getId() > resumo.getLances());
+		} finally {
+			session.close();
+		}
+	}
+
+	private ResumoDaCarga carrega() {
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			ResumoDaCarga resumo = new CargaEmMassa(session).carrega(gerador);
+			session.getTransaction().commit();
+			return resumo;
+		} finally {
+			session.close();
+		}
+	}
+
+	private static class Contador implements DestinoDosDados {
+
+		private int lances;
+		private int abertos;
+
+		public void usuario(int id, Usuario usuario) {
+		}
+
+		public void leilao(int id, Leilao leilao, int idDoDono, int[] idsDosCompradores) {
+			lances += leilao.getLances().size();
+			if(!leilao.isEncerrado()) {
+				abertos++;
+			}
+		}
+	}
+}
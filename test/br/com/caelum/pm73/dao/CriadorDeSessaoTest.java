@@ -0,0 +1,122 @@
+package br.com.caelum.pm73.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.cfg.Environment;
+import org.junit.Test;
+
+import br.com.caelum.pm73.dominio.Usuario;
+
+public class CriadorDeSessaoTest {
+
+	@Test
+	public void bancosIsoladosNaoDevemEnxergarOsDadosUmDoOutro() {
+		CriadorDeSessao primeiro = CriadorDeSessao.isolado();
+		CriadorDeSessao segundo = CriadorDeSessao.isolado();
+		try {
+			assertNotEquals(primeiro.getUrl(), segundo.getUrl());
+
+			Session session = primeiro.getSession();
+			try {
+				session.beginTransaction();
+				new UsuarioDao(session).salvar(new Usuario("Mauricio", "mauricio@aniche.com.br"));
+				session.getTransaction().commit();
+			} finally {
+				session.close();
+			}
+
+			assertEquals(1L, totalDeUsuarios(primeiro));
+			assertEquals(0L, totalDeUsuarios(segundo));
+		} finally {
+			primeiro.fecha();
+			segundo.fecha();
+		}
+	}
+
+	@Test
+	public void iniciaDeveCompilarTodasAsConsultasDosDaosEAquecerOPool() {
+		CriadorDeSessao criador = CriadorDeSessao.isolado();
+		try {
+			TemposDeInicializacao tempos = criador.inicia().join();
+
+			assertEquals(CriadorDeSessao.consultasNomeadas().size(), tempos.getConsultasCompiladas());
+			assertEquals(criador.getEstatisticasDoPool().getAbertas(), criador.getEstatisticasDoPool().getOciosas());
+			assertTrue(criador.getEstatisticasDoPool().getAbertas() > 1);
+		} finally {
+			criador.fecha();
+		}
+	}
+
+	@Test
+	public void todasAsConsultasDosDaosDevemEstarRegistradasComoNomeadas() {
+		CriadorDeSessao criador = CriadorDeSessao.isolado();
+		try {
+			Session session = criador.getSession();
+			try {
+				for(String nome : CriadorDeSessao.consultasNomeadas().keySet()) {
+					assertEquals(CriadorDeSessao.consultasNomeadas().get(nome), session.getNamedQuery(nome).getQueryString());
+				}
+			} finally {
+				session.close();
+			}
+		} finally {
+			criador.fecha();
+		}
+	}
+
+	@Test
+	public void cadaCriadorDeveTerASuaConfiguracao() {
+		CriadorDeSessao primeiro = CriadorDeSessao.isolado();
+		CriadorDeSessao segundo = CriadorDeSessao.isolado();
+		try {
+			assertNotSame(primeiro.getConfig(), segundo.getConfig());
+			assertEquals(primeiro.getUrl(), primeiro.getConfig().getProperty(Environment.URL));
+			assertEquals(segundo.getUrl(), segundo.getConfig().getProperty(Environment.URL));
+		} finally {
+			primeiro.fecha();
+			segundo.fecha();
+		}
+	}
+
+	@Test
+	public void validaEsquemaDeveFalharSemApagarOsDados() {
+		CriadorDeSessao criador = CriadorDeSessao.isolado();
+		try {
+			criador.validaEsquema();
+
+			Session session = criador.getSession();
+			try {
+				session.beginTransaction();
+				new UsuarioDao(session).salvar(new Usuario("Mauricio", "mauricio@aniche.com.br"));
+				session.createSQLQuery("drop table LanceArquivado").executeUpdate();
+				session.getTransaction().commit();
+			} finally {
+				session.close();
+			}
+
+			try {
+				criador.validaEsquema();
+				fail("deveria ter acusado a tabela que falta");
+			} catch (HibernateException e) {
+				assertEquals(1L, totalDeUsuarios(criador));
+			}
+		} finally {
+			criador.fecha();
+		}
+	}
+
+	private long totalDeUsuarios(CriadorDeSessao criador) {
+		Session session = criador.getSession();
+		try {
+			return (Long) session.createQuery("select count(u) from Usuario u").uniqueResult();
+		} finally {
+			session.close();
+		}
+	}
+}
@@ -0,0 +1,300 @@
+package br.com.caelum.pm73.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import br.com.caelum.pm73.builder.LeilaoBuilder;
+import br.com.caelum.pm73.dominio.Lance;
+import br.com.caelum.pm73.dominio.Leilao;
+import br.com.caelum.pm73.dominio.Usuario;
+
+public class LanceDaoTest {
+
+	private static CriadorDeSessao criador;
+	private Session session;
+	private UsuarioDao usuarioDao;
+	private LeilaoDao leilaoDao;
+	private LanceDao lanceDao;
+
+	@BeforeClass
+	public static void criaBanco() {
+		criador = CriadorDeSessao.isolado();
+	}
+
+	@AfterClass
+	public static void fechaBanco() {
+		criador.fecha();
+	}
+
+	@Before
+	public void antes() {
+		session = criador.getSession();
+		usuarioDao = new UsuarioDao(session);
+		leilaoDao = new LeilaoDao(session);
+		lanceDao = new LanceDao(session);
+		session.beginTransaction();
+	}
+	
+	@After
+	public void depois() {
+		session.getTransaction().rollback();
+		session.close();
+		
+		// o ddl da rotacao confirma a transacao no hsqldb, entao o rollback nao basta para esses testes
+		Session limpeza = criador.getSession();
+		try {
+			limpeza.beginTransaction();
+			LanceDao particoes = new LanceDao(limpeza);
+			for(String particao : particoes.particoes()) {
+				particoes.descarta(particao);
+			}
+			limpeza.createQuery("delete from LanceArquivado").executeUpdate();
+			limpeza.createQuery("delete from LeilaoArquivado").executeUpdate();
+			limpeza.createQuery("delete from Lance").executeUpdate();
+			limpeza.createQuery("delete from Leilao").executeUpdate();
+			limpeza.createQuery("delete from Usuario").executeUpdate();
+			limpeza.getTransaction().commit();
+		} finally {
+			limpeza.close();
+		}
+	}
+	
+	@Test
+	public void deveNomearAParticaoPeloMesDoLance() {
+		Calendar data = Calendar.getInstance();
+		data.set(2021, Calendar.MARCH, 15);
+		
+		assertEquals("LANCE_202103", LanceDao.particaoDe(data));
+	}
+	
+	@Test
+	public void deveBuscarLancesDeLeilaoAbertoNaTabelaQuente() {
+		Usuario dono = new Usuario("Mauricio", "m@a.com");
+		Usuario comprador = new Usuario("Victor", "v@v.com");
+		usuarioDao.salvar(dono);
+		usuarioDao.salvar(comprador);
+		
+		Leilao leilao = new LeilaoBuilder().comDono(dono)
+				.comLance(new Lance(Calendar.getInstance(), comprador, 1100.0))
+				.comLance(new Lance(Calendar.getInstance(), comprador, 1300.0))
+				.constroi();
+		leilaoDao.salvar(leilao);
+		
+		List<Lance> lances = lanceDao.doLeilao(leilao);
+		
+		assertEquals(2, lances.size());
+		assertEquals(1100.0, lances.get(0).getValor(), 0.00001);
+	}
+	
+	@Test
+	public void deveBuscarLancesDoUsuarioNoPeriodo() {
+		Usuario dono = new Usuario("Mauricio", "m@a.com");
+		Usuario comprador = new Usuario("Victor", "v@v.com");
+		usuarioDao.salvar(dono);
+		usuarioDao.salvar(comprador);
+		
+		Calendar mesPassado = Calendar.getInstance();
+		mesPassado.add(Calendar.MONTH, -1);
+		leilaoDao.salvar(new LeilaoBuilder().comDono(dono)
+				.comLance(new Lance(mesPassado, comprador, 900.0))
+				.comLance(new Lance(Calendar.getInstance(), comprador, 1100.0))
+				.constroi());
+		
+		Calendar inicio = Calendar.getInstance();
+		inicio.add(Calendar.DAY_OF_MONTH, -1);
+		List<Lance> lances = lanceDao.doUsuario(comprador, inicio, Calendar.getInstance());
+		
+		assertEquals(1, lances.size());
+		assertEquals(1100.0, lances.get(0).getValor(), 0.00001);
+	}
+
+	@Test
+	public void deveMoverParaAParticaoDoMesSoOsLancesDeLeiloesEncerrados() {
+		Calendar mes = mesRetrasado();
+		Leilao encerrado = leilaoComLances(true, mes);
+		Leilao aberto = leilaoComLances(false, mes);
+		
+		assertEquals(2, lanceDao.rotaciona(mes));
+		
+		assertEquals(Arrays.asList(LanceDao.particaoDe(mes)), lanceDao.particoes());
+		assertEquals(0L, lancesNaTabelaQuente(encerrado));
+		assertEquals(2L, lancesNaTabelaQuente(aberto));
+		assertEquals(2L, lancesNaParticao(mes));
+	}
+	
+	@Test
+	public void deveEnxergarOsLancesRotacionados() {
+		Calendar mes = mesRetrasado();
+		Leilao encerrado = leilaoComLances(true, mes);
+		lanceDao.rotaciona(mes);
+		session.clear();
+		
+		Leilao carregado = leilaoDao.porId(encerrado.getId());
+		
+		assertEquals(2, carregado.getLances().size());
+		assertEquals(2, lanceDao.doLeilao(carregado).size());
+		assertEquals(1300.0, leilaoDao.maioresLancesDo(carregado, 1).get(0).getValor(), 0.00001);
+		assertEquals(1300.0, leilaoDao.ultimosLancesDo(carregado, 1).get(0).getValor(), 0.00001);
+		assertEquals(1, leilaoDao.listaLeiloesDoUsuario(carregado.getLances().get(0).getUsuario()).size());
+	}
+	
+	@Test
+	public void deveContarOsLancesRotacionadosSemCarregarAColecao() {
+		Calendar mes = mesRetrasado();
+		Leilao encerrado = leilaoComLances(true, mes);
+		lanceDao.rotaciona(mes);
+		session.clear();
+		
+		Leilao carregado = leilaoDao.porId(encerrado.getId());
+		
+		assertEquals(2, carregado.getLances().size());
+		assertFalse(Hibernate.isInitialized(carregado.getLances()));
+	}
+	
+	@Test
+	public void devePlanoComLancesTrazerOsRotacionados() {
+		Calendar mes = mesRetrasado();
+		Leilao encerrado = leilaoComLances(true, mes);
+		lanceDao.rotaciona(mes);
+		session.clear();
+		
+		LeilaoDao comLances = leilaoDao.comPlano(PlanoDeBusca.COM_LANCES);
+		Leilao carregado = comLances.porId(encerrado.getId());
+		
+		assertTrue(Hibernate.isInitialized(carregado.getLances()));
+		assertEquals(2, carregado.getLances().size());
+		Usuario comprador = carregado.getLances().get(0).getUsuario();
+		session.clear();
+		
+		List<Leilao> doComprador = comLances.listaLeiloesDoUsuario(comprador);
+		assertEquals(1, doComprador.size());
+		assertTrue(Hibernate.isInitialized(doComprador.get(0).getLances()));
+		assertEquals(2, doComprador.get(0).getLances().size());
+	}
+	
+	@Test
+	public void deveDeletarLeilaoComLancesRotacionados() {
+		Calendar mes = mesRetrasado();
+		Leilao encerrado = leilaoComLances(true, mes);
+		lanceDao.rotaciona(mes);
+		session.clear();
+		
+		Leilao carregado = leilaoDao.porId(encerrado.getId());
+		Hibernate.initialize(carregado.getLances());
+		leilaoDao.deleta(carregado);
+		session.flush();
+		session.clear();
+		
+		assertNull(leilaoDao.porId(encerrado.getId()));
+		assertEquals(0L, lancesNaParticao(mes));
+	}
+	
+	@Test
+	public void naoDeveZerarOsAgregadosDeLeiloesRotacionados() {
+		Calendar mes = mesRetrasado();
+		Leilao encerrado = leilaoComLances(true, mes);
+		lanceDao.rotaciona(mes);
+		
+		leilaoDao.recalculaAgregados();
+		session.clear();
+		
+		Leilao recalculado = leilaoDao.porId(encerrado.getId());
+		assertEquals(2, recalculado.getQuantidadeDeLances());
+		assertEquals(1300.0, recalculado.getMaiorLance(), 0.00001);
+		assertEquals(2400.0, recalculado.getSomaDosLances(), 0.00001);
+	}
+	
+	@Test
+	public void deveDescartarAParticaoInteira() {
+		Calendar mes = mesRetrasado();
+		Leilao encerrado = leilaoComLances(true, mes);
+		lanceDao.rotaciona(mes);
+		
+		lanceDao.descarta(LanceDao.particaoDe(mes));
+		session.clear();
+		
+		Leilao carregado = leilaoDao.porId(encerrado.getId());
+		assertTrue(lanceDao.particoes().isEmpty());
+		assertTrue(lanceDao.doLeilao(carregado).isEmpty());
+		assertTrue(new ArrayList<Lance>(carregado.getLances()).isEmpty());
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void naoDeveDescartarParticaoInexistente() {
+		lanceDao.descarta("LANCE_190001");
+	}
+	
+	@Test
+	public void deveArquivarOsLancesDasParticoes() {
+		Calendar mes = mesRetrasado();
+		leilaoComLances(true, mes);
+		lanceDao.rotaciona(mes);
+		
+		ProgressoDoArquivamento progresso = leilaoDao.arquivaEncerrados(Integer.MAX_VALUE);
+		
+		assertEquals(2, progresso.getLancesArquivados());
+		assertEquals(0L, lancesNaParticao(mes));
+	}
+	
+	@Test
+	public void deveApagarOsLancesDasParticoesComOsLeiloesEncerrados() {
+		Calendar mes = mesRetrasado();
+		leilaoComLances(true, mes);
+		lanceDao.rotaciona(mes);
+		
+		leilaoDao.deletaEncerrados();
+		
+		assertEquals(0L, lancesNaParticao(mes));
+	}
+	
+	private Leilao leilaoComLances(boolean encerrado, Calendar mes) {
+		String sufixo = encerrado ? ".encerrado" : ".aberto";
+		Usuario dono = new Usuario("Mauricio", "m@a.com" + sufixo);
+		Usuario comprador = new Usuario("Victor", "v@v.com" + sufixo);
+		usuarioDao.salvar(dono);
+		usuarioDao.salvar(comprador);
+		
+		Calendar primeiro = (Calendar) mes.clone();
+		Calendar segundo = (Calendar) mes.clone();
+		segundo.add(Calendar.HOUR_OF_DAY, 1);
+		LeilaoBuilder builder = new LeilaoBuilder().comDono(dono).diasAtras(120)
+				.comLance(new Lance(primeiro, comprador, 1100.0))
+				.comLance(new Lance(segundo, dono, 1300.0));
+		Leilao leilao = encerrado ? builder.encerrado().constroi() : builder.constroi();
+		leilaoDao.salvar(leilao);
+		session.flush();
+		return leilao;
+	}
+	
+	private Calendar mesRetrasado() {
+		Calendar mes = Calendar.getInstance();
+		mes.add(Calendar.MONTH, -2);
+		mes.set(Calendar.DAY_OF_MONTH, 15);
+		return mes;
+	}
+	
+	private long lancesNaTabelaQuente(Leilao leilao) {
+		return (Long) session.createQuery("select count(l) from Lance l where l.leilao.id = :id")
+				.setParameter("id", leilao.getId())
+				.uniqueResult();
+	}
+	
+	private long lancesNaParticao(Calendar mes) {
+		return ((Number) session.createSQLQuery("select count(*) from " + LanceDao.particaoDe(mes)).uniqueResult()).longValue();
+	}
+}
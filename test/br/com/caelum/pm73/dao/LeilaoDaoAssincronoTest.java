@@ -0,0 +1,174 @@
+package br.com.caelum.pm73.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.Hibernate;
+import org.hibernate.LazyInitializationException;
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import br.com.caelum.pm73.builder.LeilaoBuilder;
+import br.com.caelum.pm73.dominio.Leilao;
+import br.com.caelum.pm73.dominio.Usuario;
+
+public class LeilaoDaoAssincronoTest {
+
+	private static CriadorDeSessao criador;
+	private ExecutorDeSessoes executor;
+	private LeilaoDaoAssincrono leilaoDao;
+
+	@BeforeClass
+	public static void criaBanco() {
+		criador = CriadorDeSessao.isolado();
+	}
+
+	@AfterClass
+	public static void fechaBanco() {
+		criador.fecha();
+	}
+
+	@Before
+	public void antes() {
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			Usuario dono = new Usuario("Mauricio", "mauricio@assincrono.com");
+			new UsuarioDao(session).salvar(dono);
+			LeilaoDao sincrono = new LeilaoDao(session);
+			sincrono.salvar(new LeilaoBuilder().comDono(dono).comNome("Geladeira").constroi());
+			sincrono.salvar(new LeilaoBuilder().comDono(dono).comNome("Xbox").constroi());
+			sincrono.salvar(new LeilaoBuilder().comDono(dono).comNome("Fogao").usado().constroi());
+			sincrono.salvar(new LeilaoBuilder().comDono(dono).comNome("Tv").encerrado().constroi());
+			session.getTransaction().commit();
+		} finally {
+			session.close();
+		}
+		
+		executor = new ExecutorDeSessoes(criador);
+		leilaoDao = new LeilaoDaoAssincrono(executor);
+	}
+	
+	@After
+	public void depois() {
+		executor.close();
+		
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			session.createQuery("delete from Leilao").executeUpdate();
+			session.createQuery("delete from Usuario").executeUpdate();
+			session.getTransaction().commit();
+		} finally {
+			session.close();
+		}
+	}
+	
+	@Test
+	public void deveExecutarConsultasEmParaleloComOMesmoResultadoDaVersaoSincrona() {
+		CompletableFuture<Long> total = leilaoDao.total();
+		CompletableFuture<List<Leilao>> novos = leilaoDao.novos();
+		CompletableFuture.allOf(total, novos).join();
+		
+		assertEquals(3L, (long) total.join());
+		assertEquals(3, novos.join().size());
+		
+		Session session = criador.getSession();
+		try {
+			LeilaoDao sincrono = new LeilaoDao(session);
+			assertEquals(sincrono.total(), total.join());
+			assertEquals(sincrono.novos().size(), novos.join().size());
+		} finally {
+			session.close();
+		}
+	}
+	
+	@Test
+	public void deveTrazerODonoJaCarregadoDepoisQueASessaoFecha() {
+		List<Leilao> novos = leilaoDao.novos().join();
+		
+		assertEquals(3, novos.size());
+		for(Leilao leilao : novos) {
+			assertEquals("Mauricio", leilao.getDono().getNome());
+			assertFalse(Hibernate.isInitialized(leilao.getLances()));
+		}
+		
+		Leilao porId = leilaoDao.porId(novos.get(0).getId()).join();
+		assertEquals("Mauricio", porId.getDono().getNome());
+	}
+	
+	@Test
+	public void deveFalharAoLerODonoNoPlanoResumoDepoisQueASessaoFecha() {
+		List<Leilao> novos = leilaoDao.comPlano(PlanoDeBusca.RESUMO).novos().join();
+		
+		try {
+			novos.get(0).getDono().getNome();
+			fail();
+		} catch (LazyInitializationException e) {
+		}
+	}
+	
+	@Test
+	public void deveDesfazerATransacaoDeUmaTarefaQueFalha() {
+		CompletableFuture<Void> falha = executor.executa(session -> {
+			new UsuarioDao(session).salvar(new Usuario("Fantasma", "fantasma@assincrono.com"));
+			session.flush();
+			throw new IllegalStateException("falha depois do insert");
+		});
+		
+		try {
+			falha.join();
+			fail();
+		} catch (CompletionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		
+		Session session = criador.getSession();
+		try {
+			assertNull(new UsuarioDao(session).porNomeEEmail("Fantasma", "fantasma@assincrono.com"));
+		} finally {
+			session.close();
+		}
+	}
+	
+	@Test
+	public void naoDeveAbrirMaisSessoesQueOMaximo() {
+		ExecutorService threads = Executors.newFixedThreadPool(8);
+		AtomicInteger abertas = new AtomicInteger();
+		AtomicInteger maximo = new AtomicInteger();
+		
+		try (ExecutorDeSessoes limitado = new ExecutorDeSessoes(criador, threads, 2)) {
+			List<CompletableFuture<Integer>> tarefas = new ArrayList<CompletableFuture<Integer>>();
+			for(int i = 0; i < 16; i++) {
+				tarefas.add(limitado.executa(session -> {
+					maximo.accumulateAndGet(abertas.incrementAndGet(), Math::max);
+					try {
+						Thread.sleep(20);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					abertas.decrementAndGet();
+					return 1;
+				}));
+			}
+			CompletableFuture.allOf(tarefas.toArray(new CompletableFuture<?>[0])).join();
+		}
+		
+		assertEquals(2, maximo.get());
+	}
+}
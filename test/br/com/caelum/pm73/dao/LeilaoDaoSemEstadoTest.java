@@ -0,0 +1,143 @@
+package br.com.caelum.pm73.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import br.com.caelum.pm73.builder.LeilaoBuilder;
+import br.com.caelum.pm73.dominio.Lance;
+import br.com.caelum.pm73.dominio.Leilao;
+import br.com.caelum.pm73.dominio.Usuario;
+
+public class LeilaoDaoSemEstadoTest {
+
+	private static CriadorDeSessao criador;
+	private Usuario dono;
+	private Usuario comprador;
+
+	@BeforeClass
+	public static void criaBanco() {
+		criador = CriadorDeSessao.isolado();
+	}
+
+	@AfterClass
+	public static void fechaBanco() {
+		criador.fecha();
+	}
+
+	@Before
+	public void antes() {
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			dono = new Usuario("Mauricio", "mauricio@semestado.com");
+			comprador = new Usuario("Judith", "judith@semestado.com");
+			UsuarioDao usuarioDao = new UsuarioDao(session);
+			usuarioDao.salvar(dono);
+			usuarioDao.salvar(comprador);
+
+			LeilaoDao leilaoDao = new LeilaoDao(session);
+			leilaoDao.salvar(new LeilaoBuilder().comDono(dono).comNome("Geladeira").comValor(800.0)
+					.comLance(new Lance(Calendar.getInstance(), comprador, 900.0))
+					.comLance(new Lance(Calendar.getInstance(), dono, 950.0))
+					.comLance(new Lance(Calendar.getInstance(), comprador, 1000.0))
+					.constroi());
+			leilaoDao.salvar(new LeilaoBuilder().comDono(dono).comNome("Xbox").comValor(1500.0)
+					.comLance(new Lance(Calendar.getInstance(), comprador, 2000.0))
+					.constroi());
+			leilaoDao.salvar(new LeilaoBuilder().comDono(dono).comNome("Fogao").usado().diasAtras(10).constroi());
+			leilaoDao.salvar(new LeilaoBuilder().comDono(dono).comNome("Tv").encerrado().diasAtras(20).constroi());
+			session.getTransaction().commit();
+		} finally {
+			session.close();
+		}
+	}
+
+	@After
+	public void depois() {
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			session.createQuery("delete from Lance").executeUpdate();
+			session.createQuery("delete from Leilao").executeUpdate();
+			session.createQuery("delete from Usuario").executeUpdate();
+			session.getTransaction().commit();
+		} finally {
+			session.close();
+		}
+	}
+
+	@Test
+	public void deveListarOsMesmosLeiloesQueOLeilaoDao() {
+		Calendar inicio = Calendar.getInstance();
+		inicio.add(Calendar.DAY_OF_MONTH, -30);
+		Calendar fim = Calendar.getInstance();
+		fim.add(Calendar.DAY_OF_MONTH, 1);
+
+		assertMesmosIds(LeilaoDao::novos, LeilaoDaoSemEstado::novos);
+		assertMesmosIds(LeilaoDao::antigos, LeilaoDaoSemEstado::antigos);
+		assertMesmosIds(dao -> dao.porPeriodo(inicio, fim), dao -> dao.porPeriodo(inicio, fim));
+		assertMesmosIds(dao -> dao.disputadosEntre(500, 1000), dao -> dao.disputadosEntre(500, 1000));
+		assertMesmosIds(dao -> dao.maisDisputados(2), dao -> dao.maisDisputados(2));
+		assertMesmosIds(dao -> dao.comMaioresLances(2), dao -> dao.comMaioresLances(2));
+		assertMesmosIds(dao -> dao.listaLeiloesDoUsuario(comprador), dao -> dao.listaLeiloesDoUsuario(comprador));
+		assertEquals(comEstado(LeilaoDao::total), semEstado(LeilaoDaoSemEstado::total));
+	}
+
+	@Test
+	public void deveTrazerODonoLegivelDepoisQueASessaoFecha() {
+		List<List<Leilao>> listagens = semEstado(dao -> Arrays.asList(
+				dao.novos(), dao.antigos(), dao.maisDisputados(10), dao.comMaioresLances(10),
+				dao.listaLeiloesDoUsuario(comprador)));
+
+		for(List<Leilao> leiloes : listagens) {
+			assertFalse(leiloes.isEmpty());
+			for(Leilao leilao : leiloes) {
+				assertEquals("Mauricio", leilao.getDono().getNome());
+			}
+		}
+	}
+
+	private void assertMesmosIds(Function<LeilaoDao, List<Leilao>> comEstado,
+			Function<LeilaoDaoSemEstado, List<Leilao>> semEstado) {
+		List<Integer> esperados = ids(comEstado(comEstado));
+		assertFalse(esperados.isEmpty());
+		assertEquals(esperados, ids(semEstado(semEstado)));
+	}
+
+	private <T> T comEstado(Function<LeilaoDao, T> consulta) {
+		Session session = criador.getSession();
+		try {
+			return consulta.apply(new LeilaoDao(session));
+		} finally {
+			session.close();
+		}
+	}
+
+	private <T> T semEstado(Function<LeilaoDaoSemEstado, T> consulta) {
+		StatelessSession session = criador.getStatelessSession();
+		try {
+			return consulta.apply(new LeilaoDaoSemEstado(session));
+		} finally {
+			session.close();
+		}
+	}
+
+	private static List<Integer> ids(List<Leilao> leiloes) {
+		// as listagens sem order by podem vir em qualquer ordem
+		return leiloes.stream().map(Leilao::getId).sorted().collect(Collectors.toList());
+	}
+}
@@ -1,14 +1,31 @@
 package br.com.caelum.pm73.dao;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.GregorianCalendar;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.hibernate.Hibernate;
 import org.hibernate.Session;
+import org.hibernate.stat.Statistics;
 import org.junit.After;
+import org.junit.AfterClass;
 import org.junit.Before;
+import org.junit.BeforeClass;
 import org.junit.Test;
 
 import br.com.caelum.pm73.builder.LeilaoBuilder;
@@ -18,14 +35,25 @@ import br.com.caelum.pm73.dominio.Usuario;
 
 public class LeilaoDaoTest {
 
+	private static CriadorDeSessao criador;
 	private Session session;
 	private UsuarioDao usuarioDao;
 	private LeilaoDao leilaoDao;
 	private Leilao leilao;
 
+	@BeforeClass
+	public static void criaBanco() {
+		criador = CriadorDeSessao.isolado();
+	}
+
+	@AfterClass
+	public static void fechaBanco() {
+		criador.fecha();
+	}
+
 	@Before
 	public void antes() {
-		session = new CriadorDeSessao().getSession();
+		session = criador.getSession();
 		usuarioDao = new UsuarioDao(session);
 		leilaoDao = new LeilaoDao(session);
 		leilao = new LeilaoBuilder().constroi();
@@ -38,6 +66,46 @@ public class LeilaoDaoTest {
 		session.close();
 	}
 	
+	@Test
+	public void deveSalvarLeilaoSemLances() {
+		Usuario judith = new Usuario("Judith", "judith@email.com");
+		Leilao semLances = new Leilao("RTX 3080", 5000.00, judith, false);
+
+		usuarioDao.salvar(judith);
+		leilaoDao.salvar(semLances);
+		session.flush();
+		session.clear();
+
+		Leilao salvo = leilaoDao.porId(semLances.getId());
+		assertEquals(0, salvo.getQuantidadeDeLances());
+		assertNull(salvo.getDataDoUltimoLance());
+	}
+
+	@Test
+	public void deveGuardarLanceNoInstanteZeroComoData() {
+		Usuario judith = new Usuario("Judith", "judith@email.com");
+		Leilao leilao = new LeilaoBuilder().comDono(judith)
+				.abertoEm(Instant.EPOCH)
+				.comLance(new Lance(Instant.EPOCH, judith, 100.0))
+				.constroi();
+
+		usuarioDao.salvar(judith);
+		leilaoDao.salvar(leilao);
+		session.flush();
+		session.clear();
+		session.getSessionFactory().getCache().evictEntity(Leilao.class, leilao.getId());
+
+		Leilao salvo = leilaoDao.porId(leilao.getId());
+		assertEquals(Instant.EPOCH, salvo.getInstanteDeAbertura());
+		assertEquals(Instant.EPOCH, salvo.getInstanteDoUltimoLance());
+		assertEquals(Instant.EPOCH, ((Lance) session.createQuery("from Lance").uniqueResult()).getInstante());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void naoDeveAceitarLanceSemData() {
+		new Lance((Calendar) null, new Usuario("Judith", "judith@email.com"), 100.0);
+	}
+
 	@Test
 	public void deveContarLeiloesNaoEncerrados() {
 		Usuario judith = new Usuario("Judith", "judith@email.com");
@@ -176,6 +244,21 @@ public class LeilaoDaoTest {
 		assertEquals("RTX 3080", leiloes.get(0).getNome());
 	}
 	
+	@Test
+	public void deveTrazerLeiloesDoPeriodoInformadoComInstantes() {
+		Usuario judith = new Usuario("Judith", "judith@email.com");
+		usuarioDao.salvar(judith);
+		leilaoDao.salvar(new LeilaoBuilder().comDono(judith).comNome("RTX 3080").diasAtras(2).constroi());
+		leilaoDao.salvar(new LeilaoBuilder().comDono(judith).comNome("RTX 2080").diasAtras(20).constroi());
+		
+		Instant agora = Instant.now();
+		List<Leilao> leiloes = leilaoDao.porPeriodo(agora.minus(10, ChronoUnit.DAYS), agora);
+		
+		assertEquals(1, leiloes.size());
+		assertEquals("RTX 3080", leiloes.get(0).getNome());
+		assertTrue(leiloes.get(0).getInstanteDeAbertura().isBefore(agora));
+	}
+	
 	@Test
 	public void naoDeveTrazerLeiloesEncerradosNoPeriodo() {
 		Calendar inicio = Calendar.getInstance();
@@ -336,4 +419,566 @@ public class LeilaoDaoTest {
     	
     	assertNull(leilaoDao.porId(leilao.getId()));
     }
+
+    @Test
+    public void deveSalvarLeiloesEmLote() {
+    	Usuario dono = new Usuario("Mauricio", "m@a.com");
+    	Usuario comprador = new Usuario("Victor", "v@v.com");
+    	usuarioDao.salvar(dono);
+    	usuarioDao.salvar(comprador);
+    	
+    	List<Leilao> leiloes = new ArrayList<Leilao>();
+    	for(int i = 0; i < 7; i++) {
+    		leiloes.add(new LeilaoBuilder()
+    			.comDono(dono)
+    			.comNome("Leilao " + i)
+    			.comLance(new Lance(Calendar.getInstance(), comprador, 100.0))
+    			.comLance(new Lance(Calendar.getInstance(), comprador, 200.0))
+    			.constroi());
+    	}
+    	
+    	leilaoDao.salvarTodos(leiloes, 4);
+    	
+    	assertEquals(7L, (long) leilaoDao.total());
+    	assertEquals(2, leilaoDao.porId(leiloes.get(6).getId()).getLances().size());
+    }
+    
+    @Test
+    public void deveManterAgregadosDeLances() {
+    	Usuario dono = new Usuario("Mauricio", "m@a.com");
+    	Usuario comprador = new Usuario("Victor", "v@v.com");
+    	
+    	Leilao disputado = new LeilaoBuilder()
+    		.comDono(dono)
+    		.comNome("RTX 3080")
+    		.comLance(new Lance(Calendar.getInstance(), comprador, 300.0))
+    		.comLance(new Lance(Calendar.getInstance(), comprador, 500.0))
+    		.comLance(new Lance(Calendar.getInstance(), comprador, 400.0))
+    		.constroi();
+    	Leilao tranquilo = new LeilaoBuilder()
+    		.comDono(dono)
+    		.comNome("RTX 2080")
+    		.comLance(new Lance(Calendar.getInstance(), comprador, 1000.0))
+    		.constroi();
+    	
+    	usuarioDao.salvar(dono);
+    	usuarioDao.salvar(comprador);
+    	leilaoDao.salvar(disputado);
+    	leilaoDao.salvar(tranquilo);
+    	
+    	assertEquals(3, disputado.getQuantidadeDeLances());
+    	assertEquals(500.0, disputado.getMaiorLance(), 0.00001);
+    	assertEquals("RTX 3080", leilaoDao.maisDisputados(1).get(0).getNome());
+    	assertEquals("RTX 2080", leilaoDao.comMaioresLances(1).get(0).getNome());
+    	
+    	session.clear();
+    	assertTrue(Hibernate.isInitialized(leilaoDao.maisDisputados(1).get(0).getDono()));
+    	assertTrue(Hibernate.isInitialized(leilaoDao.comMaioresLances(1).get(0).getDono()));
+    }
+    
+    @Test
+    public void deveRecalcularAgregadosDeLances() {
+    	Usuario dono = new Usuario("Mauricio", "m@a.com");
+    	Usuario comprador = new Usuario("Victor", "v@v.com");
+    	
+    	Leilao leilao = new LeilaoBuilder()
+    		.comDono(dono)
+    		.comLance(new Lance(Calendar.getInstance(), comprador, 300.0))
+    		.comLance(new Lance(Calendar.getInstance(), comprador, 500.0))
+    		.constroi();
+    	
+    	usuarioDao.salvar(dono);
+    	usuarioDao.salvar(comprador);
+    	leilaoDao.salvar(leilao);
+    	session.flush();
+    	session.createSQLQuery("update Leilao set quantidadeDeLances = 0, maiorLance = 0").executeUpdate();
+    	
+    	leilaoDao.recalculaAgregados();
+    	session.clear();
+    	
+    	Leilao recalculado = leilaoDao.porId(leilao.getId());
+    	assertEquals(2, recalculado.getQuantidadeDeLances());
+    	assertEquals(500.0, recalculado.getMaiorLance(), 0.00001);
+    }
+    
+    @Test
+    public void devePaginarLeiloesNovosPelaDataDeAbertura() {
+    	Usuario dono = new Usuario("Mauricio", "m@a.com");
+    	usuarioDao.salvar(dono);
+    	
+    	for(int dias = 5; dias > 0; dias--) {
+    		leilaoDao.salvar(new LeilaoBuilder().comDono(dono).comNome("Leilao " + dias).diasAtras(dias).constroi());
+    	}
+    	
+    	Pagina<Leilao> primeira = leilaoDao.novos(null, 2);
+    	Pagina<Leilao> segunda = leilaoDao.novos(primeira.getProxima(), 2);
+    	Pagina<Leilao> terceira = leilaoDao.novos(segunda.getProxima(), 2);
+    	
+    	assertEquals("Leilao 5", primeira.getItens().get(0).getNome());
+    	assertEquals("Leilao 3", segunda.getItens().get(0).getNome());
+    	assertTrue(segunda.temProxima());
+    	assertEquals(1, terceira.getItens().size());
+    	assertEquals("Leilao 1", terceira.getItens().get(0).getNome());
+    	assertFalse(terceira.temProxima());
+    }
+    
+    @Test
+    public void devePercorrerLeiloesDoUsuarioLiberandoASessao() {
+    	Usuario dono = new Usuario("Mauricio", "m@a.com");
+    	Usuario comprador = new Usuario("Victor", "v@v.com");
+    	usuarioDao.salvar(dono);
+    	usuarioDao.salvar(comprador);
+    	
+    	for(int dias = 3; dias > 0; dias--) {
+    		leilaoDao.salvar(new LeilaoBuilder()
+    			.comDono(dono)
+    			.comNome("Leilao " + dias)
+    			.diasAtras(dias)
+    			.comLance(new Lance(Calendar.getInstance(), comprador, 100.0))
+    			.constroi());
+    	}
+    	
+    	List<Leilao> percorridos;
+    	try(Stream<Leilao> leiloes = leilaoDao.fluxoDeLeiloesDoUsuario(comprador)) {
+    		percorridos = leiloes.collect(Collectors.toList());
+    	}
+    	
+    	assertEquals(3, percorridos.size());
+    	assertEquals("Leilao 3", percorridos.get(0).getNome());
+    	for(Leilao leilao : percorridos) {
+    		assertFalse(session.contains(leilao));
+    	}
+    }
+    
+    @Test
+    public void deveCarregarLeiloesComLancesEUsuariosNumaUnicaConsulta() {
+    	salvaLeiloesComLancesDeVariosUsuarios(10);
+    	Statistics estatisticas = session.getSessionFactory().getStatistics();
+    	estatisticas.clear();
+    	
+    	List<Leilao> leiloes = leilaoDao.comPlano(PlanoDeBusca.COM_LANCES_E_USUARIOS).novos();
+    	percorreDonosELances(leiloes);
+    	
+    	assertEquals(10, leiloes.size());
+    	assertEquals(1L, estatisticas.getPrepareStatementCount());
+    }
+    
+    @Test
+    public void deveCarregarPaginaDeLeiloesComNumeroLimitadoDeConsultas() {
+    	salvaLeiloesComLancesDeVariosUsuarios(10);
+    	Statistics estatisticas = session.getSessionFactory().getStatistics();
+    	estatisticas.clear();
+    	
+    	Pagina<Leilao> pagina = leilaoDao.comPlano(PlanoDeBusca.COM_LANCES_E_USUARIOS).novos(null, 8);
+    	percorreDonosELances(pagina.getItens());
+    	
+    	assertEquals(8, pagina.getItens().size());
+    	// a pagina e depois donos, lances e compradores dos seus ids numa consulta so
+    	assertEquals(2L, estatisticas.getPrepareStatementCount());
+    }
+    
+    private void salvaLeiloesComLancesDeVariosUsuarios(int quantidade) {
+    	for(int i = 0; i < quantidade; i++) {
+    		Usuario dono = new Usuario("Dono " + i, "dono" + i + "@email.com");
+    		Usuario comprador1 = new Usuario("Comprador A" + i, "a" + i + "@email.com");
+    		Usuario comprador2 = new Usuario("Comprador B" + i, "b" + i + "@email.com");
+    		usuarioDao.salvar(dono);
+    		usuarioDao.salvar(comprador1);
+    		usuarioDao.salvar(comprador2);
+    		
+    		leilaoDao.salvar(new LeilaoBuilder()
+    			.comDono(dono)
+    			.comNome("Leilao " + i)
+    			.diasAtras(i)
+    			.comLance(new Lance(Calendar.getInstance(), comprador1, 100.0))
+    			.comLance(new Lance(Calendar.getInstance(), comprador2, 200.0))
+    			.constroi());
+    	}
+    	session.flush();
+    	session.clear();
+    }
+    
+    private void percorreDonosELances(List<Leilao> leiloes) {
+    	for(Leilao leilao : leiloes) {
+    		leilao.getDono().getNome();
+    		for(Lance lance : leilao.getLances()) {
+    			lance.getUsuario().getNome();
+    		}
+    	}
+    }
+    
+    @Test
+    public void deveRegistrarMetricasDaChamada() {
+    	MetricasEmMemoria metricas = new MetricasEmMemoria();
+    	RegistroDeMetricas anterior = Metricas.getRegistro();
+    	Metricas.usa(metricas);
+    	try {
+    		usuarioDao.salvar(leilao.getDono());
+    		leilaoDao.salvar(leilao);
+    		leilaoDao.novos();
+    	} finally {
+    		Metricas.usa(anterior);
+    	}
+    	
+    	MetricaDeMetodo novos = metricas.getMetrica("LeilaoDao.novos");
+    	assertEquals(1L, novos.getChamadas());
+    	assertEquals(1L, novos.getLinhas());
+    	assertTrue(novos.getComandos() >= 1);
+    }
+    
+    @Test
+    public void deveAgruparEstatisticasPorEstadoDeUso() {
+    	Usuario dono = new Usuario("Mauricio", "m@a.com");
+    	Usuario comprador = new Usuario("Victor", "v@v.com");
+    	usuarioDao.salvar(dono);
+    	usuarioDao.salvar(comprador);
+    	
+    	leilaoDao.salvar(new LeilaoBuilder().comDono(dono).comValor(1000.0)
+    			.comLance(new Lance(Calendar.getInstance(), comprador, 1100.0))
+    			.comLance(new Lance(Calendar.getInstance(), comprador, 1300.0))
+    			.constroi());
+    	leilaoDao.salvar(new LeilaoBuilder().comDono(dono).comValor(3000.0).encerrado().constroi());
+    	leilaoDao.salvar(new LeilaoBuilder().comDono(dono).comValor(500.0).usado().constroi());
+    	
+    	List<EstatisticaDeLeiloes<Boolean>> estatisticas = leilaoDao.estatisticasPorEstadoDeUso();
+    	
+    	assertEquals(2, estatisticas.size());
+    	for(EstatisticaDeLeiloes<Boolean> estatistica : estatisticas) {
+    		if(estatistica.getChave()) {
+    			assertEquals(1L, estatistica.getTotal());
+    			assertEquals(500.0, estatistica.getValorInicialMedio(), 0.00001);
+    		} else {
+    			assertEquals(1L, estatistica.getAbertos());
+    			assertEquals(1L, estatistica.getEncerrados());
+    			assertEquals(2000.0, estatistica.getValorInicialMedio(), 0.00001);
+    			assertEquals(3000.0, estatistica.getValorInicialMaximo(), 0.00001);
+    			assertEquals(2L, estatistica.getLances());
+    			assertEquals(1200.0, estatistica.getLanceMedio(), 0.00001);
+    		}
+    	}
+    }
+    
+    @Test
+    public void deveAgruparEstatisticasPorDono() {
+    	Usuario mauricio = new Usuario("Mauricio", "m@a.com");
+    	Usuario judith = new Usuario("Judith", "j@j.com");
+    	Usuario comprador = new Usuario("Victor", "v@v.com");
+    	usuarioDao.salvar(mauricio);
+    	usuarioDao.salvar(judith);
+    	usuarioDao.salvar(comprador);
+    	
+    	leilaoDao.salvar(new LeilaoBuilder().comDono(mauricio).comValor(1000.0)
+    			.comLance(new Lance(Calendar.getInstance(), comprador, 1100.0))
+    			.comLance(new Lance(Calendar.getInstance(), comprador, 1500.0))
+    			.constroi());
+    	leilaoDao.salvar(new LeilaoBuilder().comDono(mauricio).comValor(2000.0).encerrado().constroi());
+    	leilaoDao.salvar(new LeilaoBuilder().comDono(judith).comValor(300.0)
+    			.comLance(new Lance(Calendar.getInstance(), comprador, 400.0))
+    			.constroi());
+    	
+    	Map<Integer, EstatisticaDeLeiloes<Integer>> porDono = leilaoDao.estatisticasPorDono().stream()
+    			.collect(Collectors.toMap(EstatisticaDeLeiloes::getChave, estatistica -> estatistica));
+    	
+    	assertEquals(2, porDono.size());
+    	EstatisticaDeLeiloes<Integer> doMauricio = porDono.get(mauricio.getId());
+    	assertEquals(1L, doMauricio.getAbertos());
+    	assertEquals(1L, doMauricio.getEncerrados());
+    	assertEquals(1500.0, doMauricio.getValorInicialMedio(), 0.00001);
+    	assertEquals(1000.0, doMauricio.getValorInicialMinimo(), 0.00001);
+    	assertEquals(2000.0, doMauricio.getValorInicialMaximo(), 0.00001);
+    	assertEquals(2L, doMauricio.getLances());
+    	assertEquals(1300.0, doMauricio.getLanceMedio(), 0.00001);
+    	
+    	EstatisticaDeLeiloes<Integer> daJudith = porDono.get(judith.getId());
+    	assertEquals(1L, daJudith.getTotal());
+    	assertEquals(1L, daJudith.getLances());
+    	assertEquals(400.0, daJudith.getLanceMedio(), 0.00001);
+    	assertNull(porDono.get(comprador.getId()));
+    }
+    
+    @Test
+    public void deveAgruparEstatisticasPorMesDentroDoPeriodo() {
+    	Usuario dono = new Usuario("Mauricio", "m@a.com");
+    	usuarioDao.salvar(dono);
+    	
+    	salvaAbertoEm(dono, 100.0, LocalDateTime.of(2019, 12, 31, 23, 59, 59));
+    	salvaAbertoEm(dono, 200.0, LocalDateTime.of(2020, 1, 1, 0, 0));
+    	salvaAbertoEm(dono, 400.0, LocalDateTime.of(2020, 1, 31, 23, 30));
+    	salvaAbertoEm(dono, 800.0, LocalDateTime.of(2020, 2, 1, 0, 0));
+    	salvaAbertoEm(dono, 1600.0, LocalDateTime.of(2020, 3, 31, 23, 59, 59));
+    	salvaAbertoEm(dono, 3200.0, LocalDateTime.of(2020, 4, 1, 0, 0));
+    	
+    	List<EstatisticaDeLeiloes<String>> estatisticas = leilaoDao.estatisticasPorMes(
+    			calendario(LocalDateTime.of(2020, 1, 1, 0, 0)), calendario(LocalDateTime.of(2020, 3, 31, 23, 59, 59)));
+    	
+    	// os extremos do periodo entram; o mes sem leiloes nao aparece
+    	assertEquals(Arrays.asList("2020-01", "2020-02", "2020-03"),
+    			estatisticas.stream().map(EstatisticaDeLeiloes::getChave).collect(Collectors.toList()));
+    	assertEquals(2L, estatisticas.get(0).getTotal());
+    	assertEquals(300.0, estatisticas.get(0).getValorInicialMedio(), 0.00001);
+    	assertEquals(1L, estatisticas.get(1).getTotal());
+    	assertEquals(800.0, estatisticas.get(1).getValorInicialMedio(), 0.00001);
+    	assertEquals(1L, estatisticas.get(2).getTotal());
+    	assertEquals(1600.0, estatisticas.get(2).getValorInicialMedio(), 0.00001);
+    }
+    
+    @Test
+    public void deveSepararOMesmoMesDeAnosDiferentes() {
+    	Usuario dono = new Usuario("Mauricio", "m@a.com");
+    	usuarioDao.salvar(dono);
+    	
+    	salvaAbertoEm(dono, 100.0, LocalDateTime.of(2019, 12, 10, 12, 0));
+    	salvaAbertoEm(dono, 200.0, LocalDateTime.of(2020, 1, 10, 12, 0));
+    	salvaAbertoEm(dono, 400.0, LocalDateTime.of(2020, 12, 10, 12, 0));
+    	
+    	List<EstatisticaDeLeiloes<String>> estatisticas = leilaoDao.estatisticasPorMes(
+    			calendario(LocalDateTime.of(2019, 1, 1, 0, 0)), calendario(LocalDateTime.of(2020, 12, 31, 23, 59)));
+    	
+    	assertEquals(Arrays.asList("2019-12", "2020-01", "2020-12"),
+    			estatisticas.stream().map(EstatisticaDeLeiloes::getChave).collect(Collectors.toList()));
+    	assertEquals(100.0, estatisticas.get(0).getValorInicialMedio(), 0.00001);
+    	assertEquals(400.0, estatisticas.get(2).getValorInicialMedio(), 0.00001);
+    }
+    
+    private void salvaAbertoEm(Usuario dono, double valor, LocalDateTime abertura) {
+    	leilaoDao.salvar(new LeilaoBuilder().comDono(dono).comValor(valor)
+    			.abertoEm(abertura.atZone(ZoneId.systemDefault()).toInstant())
+    			.constroi());
+    }
+    
+    private static Calendar calendario(LocalDateTime data) {
+    	// o year() e o month() do banco usam o fuso da jvm, entao as datas do teste tambem
+    	return GregorianCalendar.from(data.atZone(ZoneId.systemDefault()));
+    }
+    
+    @Test
+    public void deveDeletarEncerradosJuntoComSeusLances() {
+    	Usuario dono = new Usuario("Mauricio", "m@a.com");
+    	Usuario comprador = new Usuario("Victor", "v@v.com");
+    	usuarioDao.salvar(dono);
+    	usuarioDao.salvar(comprador);
+    	
+    	Leilao encerrado = new LeilaoBuilder().comDono(dono)
+    			.comLance(new Lance(Calendar.getInstance(), comprador, 1100.0))
+    			.encerrado().constroi();
+    	Leilao aberto = new LeilaoBuilder().comDono(dono)
+    			.comLance(new Lance(Calendar.getInstance(), comprador, 1200.0))
+    			.constroi();
+    	leilaoDao.salvar(encerrado);
+    	leilaoDao.salvar(aberto);
+    	
+    	leilaoDao.deletaEncerrados();
+    	
+    	assertEquals(0L, conta("select count(l) from Leilao l where l.id = :id", encerrado.getId()));
+    	assertEquals(0L, conta("select count(la) from Lance la where la.leilao.id = :id", encerrado.getId()));
+    	assertEquals(1L, conta("select count(la) from Lance la where la.leilao.id = :id", aberto.getId()));
+    }
+    
+    @Test
+    public void deveArquivarEncerradosJuntoComSeusLances() {
+    	Usuario dono = new Usuario("Mauricio", "m@a.com");
+    	Usuario comprador = new Usuario("Victor", "v@v.com");
+    	usuarioDao.salvar(dono);
+    	usuarioDao.salvar(comprador);
+    	
+    	Leilao vencido = new LeilaoBuilder().comDono(dono).diasAtras(40)
+    			.comLance(new Lance(Calendar.getInstance(), comprador, 1100.0))
+    			.comLance(new Lance(Calendar.getInstance(), comprador, 1300.0))
+    			.constroi();
+    	Leilao aberto = new LeilaoBuilder().comDono(dono).diasAtras(2).constroi();
+    	leilaoDao.salvar(vencido);
+    	leilaoDao.salvar(aberto);
+    	
+    	Calendar prazo = Calendar.getInstance();
+    	prazo.add(Calendar.DAY_OF_MONTH, -30);
+    	leilaoDao.encerraAbertosAntesDe(prazo, Integer.MAX_VALUE);
+    	ProgressoDoArquivamento progresso = leilaoDao.arquivaEncerrados(Integer.MAX_VALUE);
+    	
+    	assertEquals(1, progresso.getLotes());
+    	assertTrue(progresso.getLancesArquivados() >= 2);
+    	assertEquals(0L, conta("select count(l) from Leilao l where l.id = :id", vencido.getId()));
+    	assertEquals(0L, conta("select count(la) from Lance la where la.leilao.id = :id", vencido.getId()));
+    	assertEquals(1L, conta("select count(l) from LeilaoArquivado l where l.id = :id", vencido.getId()));
+    	assertEquals(2L, conta("select count(la) from LanceArquivado la where la.leilaoId = :id", vencido.getId()));
+    	assertEquals(1L, conta("select count(l) from Leilao l where l.id = :id and l.encerrado = false", aberto.getId()));
+    }
+    
+    @Test
+    public void deveListarEntidadesSomenteLeituraSemFlushAutomatico() {
+    	Session leitura = criador.getSessionSomenteLeitura();
+    	try {
+    		leitura.beginTransaction();
+    		Usuario dono = new Usuario("Mauricio", "m@a.com");
+    		new UsuarioDao(leitura).salvar(dono);
+    		new LeilaoDao(leitura).salvar(new LeilaoBuilder().comDono(dono).comNome("Geladeira").constroi());
+    		leitura.flush();
+    		leitura.clear();
+    		
+    		List<Leilao> novos = new LeilaoDao(leitura).novos();
+    		
+    		assertFalse(novos.isEmpty());
+    		for(Leilao novo : novos) {
+    			assertTrue(leitura.isReadOnly(novo));
+    			novo.setNome("alterado");
+    		}
+    		assertFalse(leitura.isDirty());
+    	} finally {
+    		leitura.getTransaction().rollback();
+    		leitura.close();
+    	}
+    }
+    
+    @Test
+    public void deveTrazerOsMaioresEOsUltimosLancesSemCarregarAColecao() {
+    	Usuario dono = new Usuario("Mauricio", "m@a.com");
+    	Usuario comprador = new Usuario("Victor", "v@v.com");
+    	usuarioDao.salvar(dono);
+    	usuarioDao.salvar(comprador);
+    	
+    	Instant agora = Instant.now();
+    	Leilao leilao = new LeilaoBuilder().comDono(dono)
+    			.comLance(new Lance(agora.minusSeconds(30), comprador, 300.0))
+    			.comLance(new Lance(agora.minusSeconds(20), comprador, 100.0))
+    			.comLance(new Lance(agora.minusSeconds(10), comprador, 200.0))
+    			.constroi();
+    	Leilao outro = new LeilaoBuilder().comDono(dono)
+    			.comLance(new Lance(agora, comprador, 50.0))
+    			.constroi();
+    	leilaoDao.salvar(leilao);
+    	leilaoDao.salvar(outro);
+    	session.flush();
+    	session.clear();
+    	
+    	Leilao carregado = leilaoDao.porId(leilao.getId());
+    	List<Lance> maiores = leilaoDao.maioresLancesDo(carregado, 2);
+    	List<Lance> ultimos = leilaoDao.ultimosLancesDo(carregado, 1);
+    	Map<Integer, List<Lance>> porLeilao = leilaoDao.maioresLancesDos(Arrays.asList(carregado, outro), 1);
+    	
+    	assertEquals(3, carregado.getLances().size());
+    	assertFalse(Hibernate.isInitialized(carregado.getLances()));
+    	assertEquals(300.0, maiores.get(0).getValor(), 0.00001);
+    	assertEquals(200.0, maiores.get(1).getValor(), 0.00001);
+    	assertEquals(2, maiores.size());
+    	assertEquals(200.0, ultimos.get(0).getValor(), 0.00001);
+    	assertEquals(300.0, porLeilao.get(leilao.getId()).get(0).getValor(), 0.00001);
+    	assertEquals(50.0, porLeilao.get(outro.getId()).get(0).getValor(), 0.00001);
+    }
+    
+    @Test
+    public void naoDeveLerDoCacheOLeilaoAtualizado() {
+    	int id = salvaEmOutraSessao(false);
+    	try {
+    		long total = aquece(id);
+    		
+    		naSessao(outra -> {
+    			LeilaoDao outroDao = new LeilaoDao(outra);
+    			Leilao alterado = outroDao.porId(id);
+    			alterado.setNome("Geladeira usada");
+    			alterado.adicionaLance(new Lance(Calendar.getInstance(), alterado.getLances().get(0).getUsuario(), 1200.0));
+    			alterado.encerra();
+    			outroDao.atualiza(alterado);
+    		});
+    		
+    		naSessao(outra -> {
+    			LeilaoDao outroDao = new LeilaoDao(outra);
+    			Leilao relido = outroDao.porId(id);
+    			assertEquals("Geladeira usada", relido.getNome());
+    			assertEquals(2, new ArrayList<Lance>(relido.getLances()).size());
+    			assertEquals(total - 1, outroDao.total().longValue());
+    			assertTrue(outroDao.novos().stream()
+    					.anyMatch(novo -> novo.getId() == id && novo.getNome().equals("Geladeira usada")));
+    		});
+    	} finally {
+    		apagaTudo();
+    	}
+    }
+    
+    @Test
+    public void naoDeveLerDoCacheOLeilaoDeletado() {
+    	int id = salvaEmOutraSessao(false);
+    	try {
+    		long total = aquece(id);
+    		
+    		naSessao(outra -> new LeilaoDao(outra).deleta(new LeilaoDao(outra).porId(id)));
+    		
+    		naSessao(outra -> {
+    			LeilaoDao outroDao = new LeilaoDao(outra);
+    			assertNull(outroDao.porId(id));
+    			assertEquals(total - 1, outroDao.total().longValue());
+    			assertTrue(outroDao.novos().stream().noneMatch(novo -> novo.getId() == id));
+    		});
+    	} finally {
+    		apagaTudo();
+    	}
+    }
+    
+    @Test
+    public void naoDeveLerDoCacheOsEncerradosDeletadosEmMassa() {
+    	int encerrado = salvaEmOutraSessao(true);
+    	try {
+    		naSessao(outra -> {
+    			Leilao leilao = new LeilaoDao(outra).porId(encerrado);
+    			Hibernate.initialize(leilao.getLances());
+    		});
+    		
+    		naSessao(outra -> new LeilaoDao(outra).deletaEncerrados());
+    		
+    		naSessao(outra -> {
+    			assertNull(new LeilaoDao(outra).porId(encerrado));
+    			assertEquals(0L, outra.createQuery("select count(l) from Lance l").uniqueResult());
+    		});
+    	} finally {
+    		apagaTudo();
+    	}
+    }
+    
+    private int salvaEmOutraSessao(boolean encerrado) {
+    	Leilao[] salvo = new Leilao[1];
+    	naSessao(outra -> {
+    		Usuario dono = new Usuario("Mauricio", "m@a.com");
+    		Usuario comprador = new Usuario("Victor", "v@v.com");
+    		new UsuarioDao(outra).salvar(dono);
+    		new UsuarioDao(outra).salvar(comprador);
+    		LeilaoBuilder builder = new LeilaoBuilder().comDono(dono).comNome("Geladeira")
+    				.comLance(new Lance(Calendar.getInstance(), comprador, 1100.0));
+    		salvo[0] = encerrado ? builder.encerrado().constroi() : builder.constroi();
+    		new LeilaoDao(outra).salvar(salvo[0]);
+    	});
+    	return salvo[0].getId();
+    }
+    
+    private long aquece(int id) {
+    	// entidade, colecao e consultas em cache antes da alteracao em outra sessao
+    	long[] total = new long[1];
+    	naSessao(outra -> {
+    		LeilaoDao outroDao = new LeilaoDao(outra);
+    		Hibernate.initialize(outroDao.porId(id).getLances());
+    		total[0] = outroDao.total();
+    		assertTrue(outroDao.novos().stream().anyMatch(novo -> novo.getId() == id));
+    	});
+    	return total[0];
+    }
+    
+    private void apagaTudo() {
+    	naSessao(outra -> {
+    		outra.createQuery("delete from Lance").executeUpdate();
+    		outra.createQuery("delete from Leilao").executeUpdate();
+    		outra.createQuery("delete from Usuario").executeUpdate();
+    	});
+    }
+    
+    private void naSessao(Consumer<Session> acao) {
+    	Session outra = criador.getSession();
+    	try {
+    		outra.beginTransaction();
+    		acao.accept(outra);
+    		outra.getTransaction().commit();
+    	} finally {
+    		outra.close();
+    	}
+    }
+    
+    private long conta(String hql, int id) {
+    	return (Long) session.createQuery(hql).setParameter("id", id).uniqueResult();
+    }
 }
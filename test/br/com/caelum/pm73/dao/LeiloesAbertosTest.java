@@ -0,0 +1,251 @@
+package br.com.caelum.pm73.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import br.com.caelum.pm73.builder.LeilaoBuilder;
+import br.com.caelum.pm73.dominio.Leilao;
+import br.com.caelum.pm73.dominio.Usuario;
+
+public class LeiloesAbertosTest {
+
+	private static CriadorDeSessao criador;
+	private LeiloesAbertos leiloesAbertos;
+	private Instant agora;
+
+	@BeforeClass
+	public static void criaBanco() {
+		criador = CriadorDeSessao.isolado();
+	}
+
+	@AfterClass
+	public static void fechaBanco() {
+		criador.fecha();
+	}
+
+	@Before
+	public void antes() {
+		agora = Instant.now();
+		leiloesAbertos = new LeiloesAbertos();
+		leiloesAbertos.carrega(Arrays.asList(
+				aberto(1, "Geladeira", 10, false),
+				aberto(2, "Fogao", 5, true),
+				aberto(3, "XBox", 1, false)));
+	}
+
+	@After
+	public void depois() {
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			session.createQuery("delete from Leilao").executeUpdate();
+			session.createQuery("delete from Usuario").executeUpdate();
+			session.getTransaction().commit();
+		} finally {
+			session.close();
+		}
+		criador.getLeiloesAbertos().invalida();
+	}
+
+	@Test
+	public void deveContarAbertosENovosSemConsultarOBanco() {
+		assertEquals(3, leiloesAbertos.total());
+		assertEquals(2, leiloesAbertos.totalDeNovos());
+	}
+
+	@Test
+	public void deveListarPorPeriodoEmOrdemDeAbertura() {
+		List<LeilaoAberto> leiloes = leiloesAbertos.porPeriodo(agora.minus(7, ChronoUnit.DAYS), agora);
+
+		assertEquals(2, leiloes.size());
+		assertEquals("Fogao", leiloes.get(0).getNome());
+		assertEquals("XBox", leiloes.get(1).getNome());
+	}
+
+	@Test
+	public void deveRetirarLeilaoRemovido() {
+		leiloesAbertos.remove(1);
+
+		assertNull(leiloesAbertos.porId(1));
+		assertEquals(2, leiloesAbertos.total());
+		assertEquals(1, leiloesAbertos.totalDeNovos());
+	}
+
+	@Test
+	public void deveReposicionarLeilaoAtualizado() {
+		leiloesAbertos.registra(aberto(3, "XBox", 20, true));
+
+		assertEquals(3, leiloesAbertos.total());
+		assertEquals(1, leiloesAbertos.totalDeNovos());
+		assertEquals("XBox", leiloesAbertos.porPeriodo(agora.minus(30, ChronoUnit.DAYS), agora).get(0).getNome());
+	}
+
+	@Test
+	public void deveReconstruirAVisaoAPartirDoBanco() {
+		Usuario dono = salvaDono();
+		salva(new LeilaoBuilder().comDono(dono).comNome("Geladeira").constroi());
+		salva(new LeilaoBuilder().comDono(dono).comNome("Fogao").usado().constroi());
+		salva(new LeilaoBuilder().comDono(dono).comNome("Tv").encerrado().constroi());
+		criador.getLeiloesAbertos().invalida();
+
+		LeiloesAbertos daFabrica = criador.getLeiloesAbertos();
+
+		assertTrue(daFabrica.isCarregado());
+		assertEquals(2, daFabrica.total());
+		assertEquals(1, daFabrica.totalDeNovos());
+		assertEquals("Geladeira", daFabrica.novos().get(0).getNome());
+	}
+
+	@Test
+	public void deveLevarParaAVisaoSoDepoisDoCommit() {
+		Usuario dono = salvaDono();
+		LeiloesAbertos daFabrica = criador.getLeiloesAbertos();
+
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			Leilao leilao = new LeilaoBuilder().comDono(dono).comNome("Geladeira").constroi();
+			new LeilaoDao(session).salvar(leilao);
+			session.flush();
+			assertEquals(0, daFabrica.total());
+
+			session.getTransaction().commit();
+			assertEquals(1, daFabrica.total());
+			assertEquals("Geladeira", daFabrica.porId(leilao.getId()).getNome());
+
+			session.beginTransaction();
+			leilao.encerra();
+			session.getTransaction().commit();
+			assertNull(daFabrica.porId(leilao.getId()));
+			assertEquals(0, daFabrica.total());
+		} finally {
+			session.close();
+		}
+	}
+
+	@Test
+	public void naoDeveLevarParaAVisaoOQueFoiDesfeito() {
+		Usuario dono = salvaDono();
+		LeiloesAbertos daFabrica = criador.getLeiloesAbertos();
+
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			Leilao leilao = new LeilaoBuilder().comDono(dono).comNome("Geladeira").constroi();
+			new LeilaoDao(session).salvar(leilao);
+			session.flush();
+			session.getTransaction().rollback();
+
+			assertNull(daFabrica.porId(leilao.getId()));
+			assertEquals(0, daFabrica.total());
+		} finally {
+			session.close();
+		}
+		assertTrue(criador.verificaLeiloesAbertos().isConsistente());
+	}
+
+	@Test
+	public void deveTirarDaVisaoOsEncerradosEmMassaSoDepoisDoCommit() {
+		Usuario dono = salvaDono();
+		Leilao antigo = salva(new LeilaoBuilder().comDono(dono).comNome("Geladeira").diasAtras(10).constroi());
+		Leilao recente = salva(new LeilaoBuilder().comDono(dono).comNome("Xbox").constroi());
+		LeiloesAbertos daFabrica = criador.getLeiloesAbertos();
+		Calendar prazo = Calendar.getInstance();
+		prazo.add(Calendar.DAY_OF_MONTH, -5);
+
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			assertEquals(1, new LeilaoDao(session).encerraAbertosAntesDe(prazo, 10));
+			session.getTransaction().rollback();
+			assertEquals(2, daFabrica.total());
+
+			session.beginTransaction();
+			assertEquals(1, new LeilaoDao(session).encerraAbertosAntesDe(prazo, 10));
+			assertEquals(2, daFabrica.total());
+			session.getTransaction().commit();
+		} finally {
+			session.close();
+		}
+
+		assertNull(daFabrica.porId(antigo.getId()));
+		assertEquals("Xbox", daFabrica.porId(recente.getId()).getNome());
+		assertTrue(criador.verificaLeiloesAbertos().isConsistente());
+	}
+
+	@Test
+	public void deveApontarOQueAVisaoNaoAcompanhou() {
+		Usuario dono = salvaDono();
+		Leilao ausente = salva(new LeilaoBuilder().comDono(dono).comNome("Geladeira").constroi());
+		Leilao encerrado = salva(new LeilaoBuilder().comDono(dono).comNome("Xbox").constroi());
+		Leilao desatualizado = salva(new LeilaoBuilder().comDono(dono).comNome("Fogao").constroi());
+		LeiloesAbertos daFabrica = criador.getLeiloesAbertos();
+		assertTrue(criador.verificaLeiloesAbertos().isConsistente());
+
+		// updates em massa nao disparam os listeners, entao a visao fica para tras
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			session.createQuery("update Leilao set encerrado = true where id = :id")
+					.setParameter("id", encerrado.getId()).executeUpdate();
+			session.createQuery("update Leilao set usado = true where id = :id")
+					.setParameter("id", desatualizado.getId()).executeUpdate();
+			session.getTransaction().commit();
+		} finally {
+			session.close();
+		}
+		daFabrica.remove(ausente.getId());
+
+		ConsistenciaDosLeiloesAbertos consistencia = criador.verificaLeiloesAbertos();
+
+		assertFalse(consistencia.isConsistente());
+		assertEquals(Collections.singletonList(ausente.getId()), consistencia.getAusentes());
+		assertEquals(Collections.singletonList(encerrado.getId()), consistencia.getSobrando());
+		assertEquals(Collections.singletonList(desatualizado.getId()), consistencia.getDesatualizados());
+	}
+
+	private Usuario salvaDono() {
+		Usuario dono = new Usuario("Mauricio", "mauricio@abertos.com");
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			new UsuarioDao(session).salvar(dono);
+			session.getTransaction().commit();
+		} finally {
+			session.close();
+		}
+		return dono;
+	}
+
+	private Leilao salva(Leilao leilao) {
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			new LeilaoDao(session).salvar(leilao);
+			session.getTransaction().commit();
+		} finally {
+			session.close();
+		}
+		return leilao;
+	}
+
+	private LeilaoAberto aberto(int id, String nome, int diasAtras, boolean usado) {
+		return new LeilaoAberto(id, nome, 100.0, null, agora.minus(diasAtras, ChronoUnit.DAYS).toEpochMilli(), usado);
+	}
+}
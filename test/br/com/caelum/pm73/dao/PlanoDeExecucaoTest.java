@@ -0,0 +1,134 @@
+package br.com.caelum.pm73.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.Session;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.jdbc.Work;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class PlanoDeExecucaoTest {
+
+	// o formato do EXPLAIN PLAN e as escolhas do otimizador mudam entre versoes
+	static final String VERSAO_DO_HSQLDB = "2.3.6";
+
+	// agregam a tabela inteira, entao a varredura e o plano certo
+	private static final Set<String> VARREM_A_TABELA = new HashSet<String>(Arrays.asList(
+			"LeilaoDao.estatisticasPorDono",
+			"LeilaoDao.estatisticasPorEstadoDeUso"));
+
+	private static CriadorDeSessao criador;
+	private Session session;
+
+	@BeforeClass
+	public static void criaBanco() {
+		criador = CriadorDeSessao.isolado();
+	}
+
+	@AfterClass
+	public static void fechaBanco() {
+		criador.fecha();
+	}
+
+	@Before
+	public void antes() {
+		session = criador.getSession();
+	}
+	
+	@After
+	public void depois() {
+		session.close();
+	}
+	
+	@Test
+	public void planosForamEscritosParaEstaVersaoDoHsqldb() {
+		session.doWork(new Work() {
+			public void execute(Connection conexao) throws SQLException {
+				assertEquals(VERSAO_DO_HSQLDB, conexao.getMetaData().getDatabaseProductVersion());
+			}
+		});
+	}
+	
+	@Test
+	public void consultasNomeadasDevemUsarIndice() {
+		List<String> varrem = new ArrayList<String>();
+		for(Map.Entry<String, String> consulta : CriadorDeSessao.consultasNomeadas().entrySet()) {
+			if(!VARREM_A_TABELA.contains(consulta.getKey()) && varreTabela(consulta.getValue())) {
+				varrem.add(consulta.getKey());
+			}
+		}
+		assertEquals(Collections.emptyList(), varrem);
+	}
+	
+	@Test
+	public void consultasQueVarremATabelaAindaExistem() {
+		assertTrue(CriadorDeSessao.consultasNomeadas().keySet().containsAll(VARREM_A_TABELA));
+	}
+	
+	private boolean varreTabela(String hql) {
+		for(String sql : sqlDe(hql)) {
+			String plano = planoDe(sql);
+			int tabelas = 0;
+			String tabela = null;
+			for(String linha : plano.split("\n")) {
+				linha = linha.trim();
+				if(linha.startsWith("table=")) {
+					tabela = linha.substring("table=".length());
+					tabelas++;
+				} else if(linha.startsWith("access=FULL SCAN") && !tabela.startsWith("SYSTEM_")) {
+					// subconsultas materializadas (SYSTEM_SUBQUERY) sao sempre varridas; o que importa sao as tabelas
+					return true;
+				}
+			}
+			assertTrue(hql + "\n" + plano, tabelas > 0);
+		}
+		return false;
+	}
+	
+	private String[] sqlDe(String hql) {
+		SessionFactoryImplementor fabrica = (SessionFactoryImplementor) session.getSessionFactory();
+		return fabrica.getQueryPlanCache()
+				.getHQLQueryPlan(hql, false, Collections.<String, Object>emptyMap())
+				.getSqlStrings();
+	}
+	
+	private String planoDe(final String sql) {
+		final StringBuilder plano = new StringBuilder();
+		session.doWork(new Work() {
+			public void execute(Connection conexao) throws SQLException {
+				PreparedStatement explicacao = conexao.prepareStatement("EXPLAIN PLAN FOR " + sql);
+				try {
+					int parametros = explicacao.getParameterMetaData().getParameterCount();
+					for(int i = 1; i <= parametros; i++) {
+						explicacao.setNull(i, explicacao.getParameterMetaData().getParameterType(i));
+					}
+					
+					ResultSet linhas = explicacao.executeQuery();
+					while(linhas.next()) {
+						plano.append(linhas.getString(1)).append('\n');
+					}
+				} finally {
+					explicacao.close();
+				}
+			}
+		});
+		return plano.toString();
+	}
+}
@@ -0,0 +1,105 @@
+package br.com.caelum.pm73.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import org.hibernate.cfg.Environment;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PoolDeConexoesTest {
+
+	private PoolDeConexoes pool;
+
+	@Before
+	public void antes() {
+		Properties props = new Properties();
+		props.setProperty(Environment.DRIVER, "org.hsqldb.jdbcDriver");
+		props.setProperty(Environment.URL, "jdbc:hsqldb:mem:pool");
+		props.setProperty(Environment.USER, "sa");
+		props.setProperty(Environment.PASS, "");
+		props.setProperty(PoolDeConexoes.MINIMO, "1");
+		props.setProperty(PoolDeConexoes.MAXIMO, "2");
+		props.setProperty(PoolDeConexoes.ESPERA_MAXIMA, "50");
+
+		pool = new PoolDeConexoes();
+		pool.configure(props);
+	}
+
+	@After
+	public void depois() {
+		pool.close();
+	}
+
+	@Test
+	public void deveReaproveitarConexaoDevolvida() throws SQLException {
+		Connection primeira = pool.getConnection();
+		pool.closeConnection(primeira);
+
+		Connection segunda = pool.getConnection();
+
+		assertSame(primeira, segunda);
+		assertEquals(1, pool.getEstatisticas().getAbertas());
+		assertEquals(1, pool.getEstatisticas().getEmUso());
+	}
+
+	@Test
+	public void naoDeveAbrirMaisConexoesQueOMaximo() throws SQLException {
+		pool.getConnection();
+		pool.getConnection();
+
+		try {
+			pool.getConnection();
+			fail("deveria ter esgotado o pool");
+		} catch (SQLException e) {
+			assertEquals(2, pool.getEstatisticas().getAbertas());
+			assertEquals(1L, pool.getEstatisticas().getEsgotamentos());
+		}
+	}
+
+	@Test
+	public void deveDescartarConexaoFechadaPeloUsuario() throws SQLException {
+		Connection conexao = pool.getConnection();
+		conexao.close();
+		pool.closeConnection(conexao);
+
+		assertEquals(0, pool.getEstatisticas().getAbertas());
+		assertEquals(1L, pool.getEstatisticas().getDescartadas());
+	}
+
+	@Test
+	public void deveReaproveitarComandoPreparadoComOMesmoSql() throws SQLException {
+		Connection conexao = pool.getConnection();
+		String sql = "select count(*) from INFORMATION_SCHEMA.SYSTEM_TABLES where TABLE_NAME = ?";
+
+		PreparedStatement primeiro = conexao.prepareStatement(sql);
+		primeiro.setString(1, "NAO_EXISTE");
+		primeiro.setMaxRows(1);
+		primeiro.close();
+		assertTrue(primeiro.isClosed());
+
+		PreparedStatement segundo = conexao.prepareStatement(sql);
+		assertFalse(segundo.isClosed());
+		assertEquals(0, segundo.getMaxRows());
+		segundo.setString(1, "SYSTEM_TABLES");
+		try (ResultSet resultado = segundo.executeQuery()) {
+			resultado.next();
+			assertTrue(resultado.getInt(1) > 0);
+		}
+		segundo.close();
+		pool.closeConnection(conexao);
+
+		assertEquals(1L, pool.getEstatisticas().getComandosPreparados());
+		assertEquals(1L, pool.getEstatisticas().getComandosReaproveitados());
+	}
+}
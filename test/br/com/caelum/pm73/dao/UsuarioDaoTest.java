@@ -2,22 +2,41 @@ package br.com.caelum.pm73.dao;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
 
 import org.hibernate.Session;
+import org.hibernate.stat.Statistics;
 import org.junit.After;
+import org.junit.AfterClass;
 import org.junit.Before;
+import org.junit.BeforeClass;
 import org.junit.Test;
 
 import br.com.caelum.pm73.dominio.Usuario;
 
 public class UsuarioDaoTest {
 
+	private static CriadorDeSessao criador;
 	private Session session;
 	private UsuarioDao usuarioDao;
 
+	@BeforeClass
+	public static void criaBanco() {
+		criador = CriadorDeSessao.isolado();
+	}
+
+	@AfterClass
+	public static void fechaBanco() {
+		criador.fecha();
+	}
+
 	@Before
 	public void antes() {
-		session = new CriadorDeSessao().getSession();
+		session = criador.getSession();
 		usuarioDao = new UsuarioDao(session);
 		session.beginTransaction();
 	}
@@ -42,7 +61,7 @@ public class UsuarioDaoTest {
 	
 	@Test
 	public void deveRetornarNulloCasoNaoEncontreUsuario() {
-		Session session = new CriadorDeSessao().getSession();
+		Session session = criador.getSession();
 		
 		UsuarioDao usuarioDao = new UsuarioDao(session);
 		
@@ -85,4 +104,81 @@ public class UsuarioDaoTest {
 		assertNull(antigo);
 		assertEquals("Supremo Durval", alterado.getNome());
 	}
+	
+	@Test
+	public void deveResolverExistentesECriarOsQueFaltam() {
+		Usuario existente = new Usuario("Tobias", "tobias@email.com");
+		usuarioDao.salvar(existente);
+		
+		List<Usuario> resolvidos = usuarioDao.resolveTodos(Arrays.asList(
+				new Usuario("Tobias", "tobias@email.com"),
+				new Usuario("Cleidi", "cleidi@email.com"),
+				new Usuario("Cleidi", "cleidi@email.com")));
+		
+		assertEquals(3, resolvidos.size());
+		assertSame(existente, resolvidos.get(0));
+		assertTrue(resolvidos.get(1).getId() != 0);
+		assertSame(resolvidos.get(1), resolvidos.get(2));
+		
+		session.flush();
+		session.clear();
+		assertEquals("Cleidi", usuarioDao.porNomeEEmail("Cleidi", "cleidi@email.com").getNome());
+	}
+	
+	@Test
+	public void deveResolverPeloCacheDeEmailsSemConsultarDeNovo() {
+		CacheEmMemoria idsPorEmail = new CacheEmMemoria("usuarios-por-email", 100, 0);
+		UsuarioDao comCache = usuarioDao.comCacheDeEmails(idsPorEmail);
+		List<Usuario> procurados = Arrays.asList(
+				new Usuario("Tobias", "tobias@email.com"),
+				new Usuario("Cleidi", "cleidi@email.com"),
+				new Usuario("Durval", "durval@email.com"));
+		for(Usuario procurado : procurados) {
+			usuarioDao.salvar(new Usuario(procurado.getNome(), procurado.getEmail()));
+		}
+		List<Usuario> primeiros = comCache.resolveTodos(procurados);
+		session.flush();
+		session.clear();
+		session.getSessionFactory().getCache().evictEntityRegion(Usuario.class);
+		Statistics estatisticas = session.getSessionFactory().getStatistics();
+		estatisticas.clear();
+		
+		List<Usuario> resolvidos = comCache.resolveTodos(procurados);
+		
+		for(int i = 0; i < procurados.size(); i++) {
+			assertEquals(primeiros.get(i).getId(), resolvidos.get(i).getId());
+		}
+		assertEquals(3L, idsPorEmail.getEstatisticas().getAcertos());
+		// os tres ids guardados voltam numa consulta so, sem um select por usuario
+		assertEquals(1L, estatisticas.getPrepareStatementCount());
+	}
+	
+	@Test
+	public void deveResolverSoPeloEmail() {
+		Usuario existente = new Usuario("Tobias", "tobias@email.com");
+		usuarioDao.salvar(existente);
+		
+		List<Usuario> resolvidos = usuarioDao.resolveTodos(Arrays.asList(new Usuario("Tobias Silva", "tobias@email.com")));
+		
+		assertSame(existente, resolvidos.get(0));
+		assertEquals("Tobias", resolvidos.get(0).getNome());
+	}
+	
+	@Test
+	public void deveEsquecerDoCacheOUsuarioApagadoPorFora() {
+		CacheEmMemoria idsPorEmail = new CacheEmMemoria("usuarios-por-email", 100, 0);
+		UsuarioDao comCache = usuarioDao.comCacheDeEmails(idsPorEmail);
+		Usuario existente = new Usuario("Tobias", "tobias@email.com");
+		usuarioDao.salvar(existente);
+		comCache.resolveTodos(Arrays.asList(new Usuario("Tobias", "tobias@email.com")));
+		
+		session.createQuery("delete from Usuario u where u.email = :email")
+				.setParameter("email", "tobias@email.com")
+				.executeUpdate();
+		session.clear();
+		List<Usuario> resolvidos = comCache.resolveTodos(Arrays.asList(new Usuario("Tobias", "tobias@email.com")));
+		
+		assertTrue(resolvidos.get(0).getId() != existente.getId());
+		assertNull(idsPorEmail.get("tobias@email.com"));
+	}
 }
@@ -0,0 +1,184 @@
+package br.com.caelum.pm73.motor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import br.com.caelum.pm73.builder.LeilaoBuilder;
+import br.com.caelum.pm73.dao.AtualizadorDeLeiloes;
+import br.com.caelum.pm73.dao.CriadorDeSessao;
+import br.com.caelum.pm73.dao.LeilaoDao;
+import br.com.caelum.pm73.dao.UsuarioDao;
+import br.com.caelum.pm73.dominio.Lance;
+import br.com.caelum.pm73.dominio.Leilao;
+import br.com.caelum.pm73.dominio.Usuario;
+
+public class GravacaoAdiadaDeLancesTest {
+
+	private static CriadorDeSessao criador;
+	private Usuario comprador;
+	private Leilao geladeira;
+	private Leilao xbox;
+
+	@BeforeClass
+	public static void criaBanco() {
+		criador = CriadorDeSessao.isolado();
+	}
+
+	@AfterClass
+	public static void fechaBanco() {
+		criador.fecha();
+	}
+
+	@Before
+	public void antes() {
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			comprador = new Usuario("Comprador", "comprador.gravacao@email.com");
+			new UsuarioDao(session).salvar(comprador);
+			LeilaoDao leilaoDao = new LeilaoDao(session);
+			geladeira = new LeilaoBuilder().comDono(comprador).comNome("Geladeira").constroi();
+			xbox = new LeilaoBuilder().comDono(comprador).comNome("Xbox").constroi();
+			leilaoDao.salvar(geladeira);
+			leilaoDao.salvar(xbox);
+			session.getTransaction().commit();
+		} finally {
+			session.close();
+		}
+	}
+
+	@After
+	public void depois() {
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			session.createQuery("delete from Lance").executeUpdate();
+			session.createQuery("delete from Leilao").executeUpdate();
+			session.createQuery("delete from Usuario").executeUpdate();
+			session.getTransaction().commit();
+		} finally {
+			session.close();
+		}
+	}
+
+	@Test
+	public void deveGravarTodosOsLancesPendentesAoFechar() throws InterruptedException {
+		GravacaoAdiadaDeLances gravacao = new GravacaoAdiadaDeLances(criador, 1000, 50, 20, 1000);
+		List<CompletableFuture<Void>> gravacoes = new ArrayList<CompletableFuture<Void>>();
+		for(int valor = 1; valor <= 500; valor++) {
+			gravacoes.add(gravacao.submete(geladeira.getId(), comprador.getId(), valor, Instant.now()));
+		}
+
+		gravacao.fecha();
+
+		for(CompletableFuture<Void> gravado : gravacoes) {
+			assertTrue(gravado.isDone() && !gravado.isCompletedExceptionally());
+		}
+		assertEquals(0, gravacao.getPendentes());
+		assertEquals(500L, lancesDo(geladeira));
+	}
+
+	@Test
+	public void naoDeveAceitarLancesDepoisDeFechada() throws InterruptedException {
+		GravacaoAdiadaDeLances gravacao = new GravacaoAdiadaDeLances(criador, 10, 10, 20, 1000);
+		gravacao.fecha();
+
+		try {
+			gravacao.reservaVaga();
+			fail();
+		} catch (RejectedExecutionException esperada) {
+		}
+	}
+
+	@Test
+	public void deveRecusarLancesQuandoAFilaEstaCheia() throws Exception {
+		// a janela longa segura o lote em montagem, e as vagas so voltam depois dele gravado
+		GravacaoAdiadaDeLances gravacao = new GravacaoAdiadaDeLances(criador, 2, 10, 1000, 50);
+		CompletableFuture<Void> primeiro = gravacao.submete(geladeira.getId(), comprador.getId(), 100.0, Instant.now());
+		CompletableFuture<Void> segundo = gravacao.submete(geladeira.getId(), comprador.getId(), 200.0, Instant.now());
+
+		try {
+			gravacao.submete(geladeira.getId(), comprador.getId(), 300.0, Instant.now());
+			fail();
+		} catch (RejectedExecutionException esperada) {
+		}
+
+		assertEquals(2, gravacao.getPendentes());
+
+		primeiro.get(10, TimeUnit.SECONDS);
+		segundo.get(10, TimeUnit.SECONDS);
+		gravacao.reservaVaga().cancela();
+		gravacao.fecha();
+		assertEquals(2L, lancesDo(geladeira));
+	}
+
+	@Test
+	public void umLeilaoComFalhaNaoDeveDerrubarOsOutrosDoLote() throws Exception {
+		GravacaoAdiadaDeLances gravacao = new GravacaoAdiadaDeLances(criador, 10, 10, 200, 1000);
+		CompletableFuture<Void> valido = gravacao.submete(geladeira.getId(), comprador.getId(), 100.0, Instant.now());
+		CompletableFuture<Void> semUsuario = gravacao.submete(xbox.getId(), -1, 100.0, Instant.now());
+
+		gravacao.fecha();
+
+		valido.get(10, TimeUnit.SECONDS);
+		try {
+			semUsuario.get(10, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException esperada) {
+		}
+		assertEquals(1L, lancesDo(geladeira));
+		assertEquals(0L, lancesDo(xbox));
+	}
+
+	@Test
+	public void deveRegravarOLoteQuandoOLeilaoMudaEmOutraTransacao() throws Exception {
+		GravacaoAdiadaDeLances gravacao = new GravacaoAdiadaDeLances(criador, 1000, 5, 1, 1000);
+		AtualizadorDeLeiloes atualizador = new AtualizadorDeLeiloes(criador, 100, 1, 20);
+		List<CompletableFuture<Void>> gravacoes = new ArrayList<CompletableFuture<Void>>();
+
+		Thread concorrente = new Thread(() -> {
+			for(int i = 0; i < 100; i++) {
+				atualizador.atualiza(geladeira.getId(), leilao ->
+						leilao.adicionaLance(new Lance(Instant.now(), comprador, leilao.getMaiorLance() + 1)));
+			}
+		});
+		concorrente.start();
+		for(int valor = 1; valor <= 200; valor++) {
+			gravacoes.add(gravacao.submete(geladeira.getId(), comprador.getId(), valor, Instant.now()));
+		}
+		concorrente.join();
+		gravacao.fecha();
+
+		for(CompletableFuture<Void> gravado : gravacoes) {
+			gravado.get(10, TimeUnit.SECONDS);
+		}
+		assertEquals(300L, lancesDo(geladeira));
+	}
+
+	private long lancesDo(Leilao leilao) {
+		Session session = criador.getSession();
+		try {
+			return (Long) session.createQuery("select count(l) from Lance l where l.leilao.id = :id")
+					.setParameter("id", leilao.getId())
+					.uniqueResult();
+		} finally {
+			session.close();
+		}
+	}
+}
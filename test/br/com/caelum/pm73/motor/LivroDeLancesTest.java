@@ -0,0 +1,83 @@
+package br.com.caelum.pm73.motor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class LivroDeLancesTest {
+
+	@Test
+	public void deveAceitarApenasLancesMaioresQueOAtual() {
+		LivroDeLances livro = new LivroDeLances();
+		
+		assertEquals(ResultadoDoLance.ACEITO, livro.propoe(1, 100.0));
+		assertEquals(ResultadoDoLance.VALOR_INSUFICIENTE, livro.propoe(2, 100.0));
+		assertEquals(ResultadoDoLance.ACEITO, livro.propoe(2, 150.0));
+		
+		assertEquals(150.0, livro.maiorLance(), 0.00001);
+		assertEquals(100.0, livro.ultimoLanceDe(1), 0.00001);
+	}
+	
+	@Test
+	public void naoDeveAceitarDoisLancesSeguidosDoMesmoUsuario() {
+		LivroDeLances livro = new LivroDeLances();
+		
+		livro.propoe(1, 100.0);
+		
+		assertEquals(ResultadoDoLance.LANCES_SEGUIDOS_DO_MESMO_USUARIO, livro.propoe(1, 200.0));
+	}
+	
+	@Test
+	public void deveManterOsLancesOrdenadosSobConcorrencia() throws InterruptedException {
+		final LivroDeLances livro = new LivroDeLances();
+		final AtomicInteger aceitos = new AtomicInteger();
+		List<Thread> threads = new ArrayList<Thread>();
+		
+		for(int t = 0; t < 8; t++) {
+			final int usuario = t;
+			Thread thread = new Thread(() -> {
+				for(int valor = 1; valor <= 10000; valor++) {
+					if(livro.propoe(usuario, valor).foiAceito()) {
+						aceitos.incrementAndGet();
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		
+		// quem chega atrasado perde o lance, entao so valem os invariantes do livro e nao o valor final
+		double[] maiores = livro.maioresLances(livro.getQuantidade());
+		int[] usuarios = livro.usuariosEmOrdem();
+		assertEquals(aceitos.get(), livro.getQuantidade());
+		assertEquals(aceitos.get(), usuarios.length);
+		for(int i = 1; i < maiores.length; i++) {
+			assertTrue(maiores[i - 1] > maiores[i]);
+			assertNotEquals(usuarios[i - 1], usuarios[i]);
+		}
+	}
+
+	@Test
+	public void deveGuardarOUltimoLanceDeCadaUsuario() {
+		LivroDeLances livro = new LivroDeLances();
+
+		for(int lance = 0; lance < 1000; lance++) {
+			livro.propoe(lance % 100 * 7919, lance + 1.0);
+		}
+
+		for(int usuario = 0; usuario < 100; usuario++) {
+			assertEquals(900.0 + usuario + 1, livro.ultimoLanceDe(usuario * 7919), 0.00001);
+		}
+		assertNull(livro.ultimoLanceDe(1));
+	}
+}
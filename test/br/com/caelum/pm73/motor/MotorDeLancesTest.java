@@ -0,0 +1,207 @@
+package br.com.caelum.pm73.motor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import br.com.caelum.pm73.builder.LeilaoBuilder;
+import br.com.caelum.pm73.dao.CriadorDeSessao;
+import br.com.caelum.pm73.dao.LeilaoDao;
+import br.com.caelum.pm73.dao.UsuarioDao;
+import br.com.caelum.pm73.dominio.Lance;
+import br.com.caelum.pm73.dominio.Leilao;
+import br.com.caelum.pm73.dominio.Usuario;
+
+public class MotorDeLancesTest {
+
+	private static CriadorDeSessao criador;
+	private Usuario dono;
+	private Usuario mauricio;
+	private Usuario marcelo;
+	private Leilao leilao;
+	private MotorDeLances motor;
+
+	@BeforeClass
+	public static void criaBanco() {
+		criador = CriadorDeSessao.isolado();
+	}
+
+	@AfterClass
+	public static void fechaBanco() {
+		criador.fecha();
+	}
+
+	@Before
+	public void antes() {
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			UsuarioDao usuarioDao = new UsuarioDao(session);
+			dono = new Usuario("Dono", "dono.motor@email.com");
+			mauricio = new Usuario("Mauricio", "mauricio.motor@email.com");
+			marcelo = new Usuario("Marcelo", "marcelo.motor@email.com");
+			usuarioDao.salvar(dono);
+			usuarioDao.salvar(mauricio);
+			usuarioDao.salvar(marcelo);
+			leilao = new LeilaoBuilder().comDono(dono).comNome("Geladeira").comValor(100.0).constroi();
+			new LeilaoDao(session).salvar(leilao);
+			session.getTransaction().commit();
+		} finally {
+			session.close();
+		}
+		motor = new MotorDeLances(criador);
+	}
+
+	@After
+	public void depois() throws InterruptedException {
+		motor.fecha();
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			session.createQuery("delete from Lance").executeUpdate();
+			session.createQuery("delete from Leilao").executeUpdate();
+			session.createQuery("delete from Usuario").executeUpdate();
+			session.getTransaction().commit();
+		} finally {
+			session.close();
+		}
+	}
+
+	@Test
+	public void deveRecusarLancesDeLeilaoQueNaoFoiAberto() {
+		assertEquals(ResultadoDoLance.LEILAO_FECHADO, motor.propoe(leilao.getId(), mauricio, 150.0));
+
+		motor.abre(leilao);
+		motor.encerra(leilao.getId());
+
+		assertEquals(ResultadoDoLance.LEILAO_FECHADO, motor.propoe(leilao.getId(), mauricio, 150.0));
+	}
+
+	@Test
+	public void deveAplicarAsRegrasDoLivroEGravarSoOsAceitos() throws Exception {
+		motor.abre(leilao);
+		List<CompletableFuture<Void>> gravacoes = new ArrayList<CompletableFuture<Void>>();
+
+		assertEquals(ResultadoDoLance.ACEITO, motor.propoeComConfirmacao(leilao.getId(), mauricio, 150.0, gravacoes::add));
+		assertEquals(ResultadoDoLance.LANCES_SEGUIDOS_DO_MESMO_USUARIO,
+				motor.propoeComConfirmacao(leilao.getId(), mauricio, 200.0, gravacoes::add));
+		assertEquals(ResultadoDoLance.VALOR_INSUFICIENTE,
+				motor.propoeComConfirmacao(leilao.getId(), marcelo, 150.0, gravacoes::add));
+		assertEquals(ResultadoDoLance.ACEITO, motor.propoeComConfirmacao(leilao.getId(), marcelo, 180.0, gravacoes::add));
+
+		assertEquals(2, gravacoes.size());
+		CompletableFuture.allOf(gravacoes.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+		assertEquals(180.0, motor.maiorLance(leilao.getId()), 0.00001);
+		assertArrayEquals(new double[] { 180.0, 150.0 }, motor.maioresLances(leilao.getId(), 5), 0.00001);
+		assertEquals(150.0, motor.ultimoLanceDe(leilao.getId(), mauricio), 0.00001);
+		assertNull(motor.ultimoLanceDe(leilao.getId(), dono));
+
+		Leilao gravado = recarrega();
+		assertEquals(2, gravado.getQuantidadeDeLances());
+		assertEquals(180.0, gravado.getMaiorLance(), 0.00001);
+	}
+
+	@Test
+	public void deveAbrirOLivroComOsLancesJaGravados() {
+		Session session = criador.getSession();
+		try {
+			session.beginTransaction();
+			Leilao existente = new LeilaoDao(session).porId(leilao.getId());
+			existente.adicionaLance(new Lance(Instant.now(), marcelo, 300.0));
+			existente.adicionaLance(new Lance(Instant.now(), mauricio, 200.0));
+			session.getTransaction().commit();
+			session.clear();
+
+			motor.abre(new LeilaoDao(session).porId(leilao.getId()));
+		} finally {
+			session.close();
+		}
+
+		assertEquals(300.0, motor.maiorLance(leilao.getId()), 0.00001);
+		assertEquals(ResultadoDoLance.LANCES_SEGUIDOS_DO_MESMO_USUARIO, motor.propoe(leilao.getId(), marcelo, 400.0));
+		assertEquals(ResultadoDoLance.VALOR_INSUFICIENTE, motor.propoe(leilao.getId(), mauricio, 250.0));
+	}
+
+	@Test
+	public void deveGravarOsLancesNaOrdemDoLivroSobConcorrencia() throws Exception {
+		motor.abre(leilao);
+		List<Thread> threads = new ArrayList<Thread>();
+		for(Usuario usuario : new Usuario[] { dono, mauricio, marcelo }) {
+			Thread thread = new Thread(() -> {
+				for(int valor = 101; valor <= 1000; valor++) {
+					motor.propoe(leilao.getId(), usuario, valor);
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		motor.fecha();
+
+		Session session = criador.getSession();
+		try {
+			@SuppressWarnings("unchecked")
+			List<Double> valores = session.createQuery("select l.valor from Lance l where l.leilao.id = :id order by l.id")
+					.setParameter("id", leilao.getId())
+					.list();
+			assertEquals(motor.maioresLances(leilao.getId(), Integer.MAX_VALUE).length, valores.size());
+			for(int i = 1; i < valores.size(); i++) {
+				assertTrue(valores.get(i - 1) < valores.get(i));
+			}
+		} finally {
+			session.close();
+		}
+	}
+
+	@Test
+	public void deveDesfazerNoLivroOLanceQueNaoFoiGravado() throws Exception {
+		Usuario fantasma = new Usuario("Fantasma", "fantasma.motor@email.com");
+		fantasma.setId(-1);
+		motor.abre(leilao);
+		List<CompletableFuture<Void>> gravacoes = new ArrayList<CompletableFuture<Void>>();
+
+		motor.propoeComConfirmacao(leilao.getId(), mauricio, 150.0, gravacoes::add);
+		gravacoes.get(0).get(10, TimeUnit.SECONDS);
+		assertEquals(ResultadoDoLance.ACEITO, motor.propoeComConfirmacao(leilao.getId(), fantasma, 200.0, gravacoes::add));
+
+		try {
+			gravacoes.get(1).get(10, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException esperada) {
+		}
+		assertEquals(150.0, motor.maiorLance(leilao.getId()), 0.00001);
+		assertNull(motor.ultimoLanceDe(leilao.getId(), fantasma));
+		assertEquals(ResultadoDoLance.ACEITO, motor.propoe(leilao.getId(), marcelo, 160.0));
+	}
+
+	private Leilao recarrega() {
+		Session session = criador.getSession();
+		try {
+			Leilao recarregado = new LeilaoDao(session).porId(leilao.getId());
+			Hibernate.initialize(recarregado.getLances());
+			return recarregado;
+		} finally {
+			session.close();
+		}
+	}
+}